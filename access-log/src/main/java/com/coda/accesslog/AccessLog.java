@@ -0,0 +1,320 @@
+package com.coda.accesslog;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One compact JSON line per request, written off the request path. {@link #log} claims a slot in a bounded
+ * lock-free ring (Vyukov's bounded queue with a single consumer), fills it in place and returns; a writer thread
+ * drains the ring, encodes records into a buffer and appends whole buffers to a {@link RollingFileWriter}. A full
+ * ring drops the record and counts it rather than waiting for the disk. Requests below status 500 are sampled at
+ * {@code sample-rate}; 500 and above are always kept. Written and dropped records are published as
+ * {@code access.log.records} tagged by {@code result}.
+ */
+@Slf4j
+public final class AccessLog implements AutoCloseable {
+
+    /** Logged for requests the client went away from before a response was sent, as nginx does. */
+    public static final int CLIENT_CLOSED_REQUEST = 499;
+
+    private static final int ALWAYS_LOGGED_STATUS = 500;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final double sampleRate;
+    private final Entry[] entries;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    /** Producers wake the writer every quarter of the ring, so it doesn't sleep through a burst. */
+    private final int wakeMask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final long flushIntervalNanos;
+    private final RollingFileWriter file;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // writer thread only
+    private long head;
+    private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    private int buffered;
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * Builds the log without starting its writer, so records only accumulate until {@link #start}. Use
+     * {@link #open}.
+     */
+    AccessLog(AccessLogProperties properties, MeterRegistry registry) {
+        if (!properties.isEnabled()) {
+            this.sampleRate = 0;
+            this.entries = null;
+            this.sequences = null;
+            this.mask = 0;
+            this.wakeMask = 0;
+            this.flushIntervalNanos = 0;
+            this.file = null;
+            this.writer = null;
+            return;
+        }
+        int capacity = Integer.highestOneBit(Math.max(4, properties.getBufferSize()) - 1) << 1;
+        this.sampleRate = properties.getSampleRate();
+        this.entries = new Entry[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new Entry();
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.wakeMask = capacity / 4 - 1;
+        this.flushIntervalNanos = properties.getFlushInterval().toNanos();
+        try {
+            this.file = new RollingFileWriter(properties.getFile(), properties.getMaxFileSize().toBytes(),
+                    properties.getMaxHistory());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open access log " + properties.getFile(), e);
+        }
+        this.writer = new Thread(this::run, "access-log-writer");
+        writer.setDaemon(true);
+        FunctionCounter.builder("access.log.records", written, LongAdder::sum)
+                .tag("result", "written")
+                .register(registry);
+        FunctionCounter.builder("access.log.records", dropped, LongAdder::sum)
+                .tag("result", "dropped")
+                .register(registry);
+    }
+
+    public static AccessLog open(AccessLogProperties properties, MeterRegistry registry) {
+        AccessLog accessLog = new AccessLog(properties, registry);
+        accessLog.start();
+        return accessLog;
+    }
+
+    void start() {
+        if (writer != null) {
+            writer.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Queues a record and returns without blocking. {@code upstream} may be null.
+     */
+    public void log(long timestampMillis, String method, String path, int status, long durationNanos,
+                    String upstream, int attempts) {
+        log(timestampMillis, method, path, status, durationNanos, upstream, attempts, false);
+    }
+
+    /**
+     * As {@link #log(long, String, String, int, long, String, int)}, with {@code "warmup":true} added to the line
+     * when {@code warmup} is set.
+     */
+    public void log(long timestampMillis, String method, String path, int status, long durationNanos,
+                    String upstream, int attempts, boolean warmup) {
+        if (writer == null) {
+            return;
+        }
+        if (status < ALWAYS_LOGGED_STATUS && sampleRate < 1.0
+                && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long sequence = sequences.getAcquire(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    entries[index].set(timestampMillis, method, path, status, durationNanos, upstream, attempts,
+                            warmup);
+                    sequences.setRelease(index, position + 1);
+                    if ((position & wakeMask) == 0) {
+                        LockSupport.unpark(writer);
+                    }
+                    return;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                // the writer hasn't freed this slot from the previous lap: the ring is full
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    public long written() {
+        return written.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the writer after it has written everything queued so far.
+     */
+    @Override
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            if (writer.isAlive()) {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } else {
+                drain();
+                flush();
+            }
+            file.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Failed to close access log: {}", e.getMessage());
+        }
+    }
+
+    private void run() {
+        while (running) {
+            if (drain() == 0) {
+                flush();
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+        drain();
+        flush();
+    }
+
+    /** Writes out up to one ring's worth of records, so a steady stream can't keep the writer from stopping. */
+    private int drain() {
+        int count = 0;
+        while (count < entries.length) {
+            int index = (int) head & mask;
+            if (sequences.getAcquire(index) != head + 1) {
+                break;
+            }
+            Entry entry = entries[index];
+            encode(entry);
+            entry.clear();
+            sequences.setRelease(index, head + entries.length);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    private void encode(Entry entry) {
+        line.setLength(0);
+        line.append("{\"ts\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(entry.timestampMillis), line);
+        line.append("\",\"method\":");
+        appendString(entry.method);
+        line.append(",\"path\":");
+        appendString(entry.path);
+        line.append(",\"status\":").append(entry.status)
+                .append(",\"duration_us\":").append(TimeUnit.NANOSECONDS.toMicros(entry.durationNanos));
+        if (entry.upstream != null) {
+            line.append(",\"upstream\":");
+            appendString(entry.upstream);
+            line.append(",\"attempts\":").append(entry.attempts);
+        }
+        if (entry.warmup) {
+            line.append(",\"warmup\":true");
+        }
+        line.append("}\n");
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            flush();
+        }
+        if (bytes.length > buffer.remaining()) {
+            // longer than the whole buffer; keep the log line-oriented rather than splitting it
+            dropped.increment();
+            return;
+        }
+        buffer.put(bytes);
+        buffered++;
+    }
+
+    private void appendString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private void flush() {
+        if (buffered == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            file.write(buffer);
+            written.add(buffered);
+        } catch (IOException e) {
+            dropped.add(buffered);
+            log.warn("Dropped {} access log records: {}", buffered, e.getMessage());
+        }
+        buffer.clear();
+        buffered = 0;
+    }
+
+    /** A ring slot, reused for every record that passes through it. */
+    private static final class Entry {
+        long timestampMillis;
+        String method;
+        String path;
+        int status;
+        long durationNanos;
+        String upstream;
+        int attempts;
+        boolean warmup;
+
+        void set(long timestampMillis, String method, String path, int status, long durationNanos,
+                 String upstream, int attempts, boolean warmup) {
+            this.timestampMillis = timestampMillis;
+            this.method = method;
+            this.path = path;
+            this.status = status;
+            this.durationNanos = durationNanos;
+            this.upstream = upstream;
+            this.attempts = attempts;
+            this.warmup = warmup;
+        }
+
+        void clear() {
+            method = null;
+            path = null;
+            upstream = null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.coda.accesslog;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Imported by each application to get an {@link AccessLog} bound to {@code access-log.*}. Its counters go to the
+ * application's {@link MeterRegistry}, or nowhere when there is none, as in a test slice.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(AccessLogProperties.class)
+public class AccessLogConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public AccessLog accessLog(AccessLogProperties properties, ObjectProvider<MeterRegistry> registry) {
+        return AccessLog.open(properties, registry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+}
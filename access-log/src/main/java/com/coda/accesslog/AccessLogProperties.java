@@ -0,0 +1,35 @@
+package com.coda.accesslog;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Structured access log. See {@code AccessLog}.
+ */
+@Data
+@ConfigurationProperties(prefix = "access-log")
+public class AccessLogProperties {
+
+    private boolean enabled = true;
+
+    private Path file = Path.of("logs/access.log");
+
+    /** Fraction of requests below status 500 that are logged; 500 and above are always logged. */
+    private double sampleRate = 1.0;
+
+    /** Records the ring holds before new ones are dropped, rounded up to a power of two. */
+    private int bufferSize = 8192;
+
+    /** Longest a record waits in memory before it is written when traffic is light. */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /** The file is rolled over to {@code <file>.1} once it would grow past this. */
+    private DataSize maxFileSize = DataSize.ofMegabytes(100);
+
+    /** Rolled-over files kept besides the current one. */
+    private int maxHistory = 5;
+}
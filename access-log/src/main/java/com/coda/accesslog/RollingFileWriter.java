@@ -0,0 +1,75 @@
+package com.coda.accesslog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends whole buffers to a file and rolls it over by size: {@code access.log} becomes {@code access.log.1},
+ * {@code .1} becomes {@code .2} and so on, and the file past {@code maxHistory} is deleted. Only ever used from
+ * the access log's writer thread.
+ */
+final class RollingFileWriter implements Closeable {
+
+    private final Path path;
+    private final long maxBytes;
+    private final int maxHistory;
+    private FileChannel channel;
+    private long size;
+
+    RollingFileWriter(Path path, long maxBytes, int maxHistory) throws IOException {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.maxHistory = maxHistory;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    void write(ByteBuffer buffer) throws IOException {
+        if (size > 0 && size + buffer.remaining() > maxBytes) {
+            rollOver();
+        }
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void rollOver() throws IOException {
+        channel.close();
+        if (maxHistory > 0) {
+            Files.deleteIfExists(rolled(maxHistory));
+            for (int i = maxHistory - 1; i >= 1; i--) {
+                if (Files.exists(rolled(i))) {
+                    Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(path, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(path);
+        }
+        open();
+    }
+
+    private Path rolled(int generation) {
+        return path.resolveSibling(path.getFileName() + "." + generation);
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+}
@@ -0,0 +1,127 @@
+package com.coda.accesslog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void writesOneJsonLinePerRequest() throws IOException {
+        AccessLog accessLog = AccessLog.open(properties(), registry);
+        accessLog.log(0, "POST", "/route", 200, 1_500_000, "http://localhost:8081", 2);
+        accessLog.log(1000, "GET", "/say \"hi\"", 404, 2_000, null, 0);
+        accessLog.log(2000, "POST", "/api/echo", 200, 0, null, 0, true);
+        accessLog.close();
+
+        assertEquals(List.of(
+                "{\"ts\":\"1970-01-01T00:00:00Z\",\"method\":\"POST\",\"path\":\"/route\",\"status\":200,"
+                        + "\"duration_us\":1500,\"upstream\":\"http://localhost:8081\",\"attempts\":2}",
+                "{\"ts\":\"1970-01-01T00:00:01Z\",\"method\":\"GET\",\"path\":\"/say \\\"hi\\\"\",\"status\":404,"
+                        + "\"duration_us\":2}",
+                "{\"ts\":\"1970-01-01T00:00:02Z\",\"method\":\"POST\",\"path\":\"/api/echo\",\"status\":200,"
+                        + "\"duration_us\":0,\"warmup\":true}"
+        ), Files.readAllLines(dir.resolve("access.log")));
+        assertEquals(3, accessLog.written());
+    }
+
+    @Test
+    void samplesSuccessesButKeepsServerErrors() throws IOException {
+        AccessLogProperties properties = properties();
+        properties.setSampleRate(0);
+        AccessLog accessLog = AccessLog.open(properties, registry);
+        for (int i = 0; i < 100; i++) {
+            accessLog.log(0, "POST", "/route", 200, 0, null, 0);
+        }
+        accessLog.log(0, "POST", "/route", 503, 0, null, 0);
+        accessLog.close();
+
+        List<String> lines = Files.readAllLines(dir.resolve("access.log"));
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"status\":503"));
+    }
+
+    @Test
+    void dropsAndCountsRecordsWhenTheRingIsFull() throws IOException {
+        AccessLogProperties properties = properties();
+        properties.setBufferSize(16);
+        AccessLog accessLog = new AccessLog(properties, registry);
+        for (int i = 0; i < 20; i++) {
+            accessLog.log(0, "POST", "/route", 200, 0, null, 0);
+        }
+        assertEquals(4, accessLog.dropped());
+
+        accessLog.start();
+        accessLog.close();
+        assertEquals(16, Files.readAllLines(dir.resolve("access.log")).size());
+        assertEquals(16, accessLog.written());
+    }
+
+    @Test
+    void keepsEveryRecordFromConcurrentProducersThatFits() throws Exception {
+        AccessLogProperties properties = properties();
+        properties.setBufferSize(1 << 16);
+        AccessLog accessLog = AccessLog.open(properties, registry);
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    accessLog.log(0, "POST", "/route", 200, i, null, 0);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        accessLog.close();
+
+        assertEquals(threads * perThread, accessLog.written() + accessLog.dropped());
+        assertEquals(accessLog.written(), Files.readAllLines(dir.resolve("access.log")).size());
+    }
+
+    @Test
+    void rollsOverBySize() throws IOException {
+        AccessLogProperties properties = properties();
+        properties.setMaxFileSize(DataSize.ofBytes(100));
+        properties.setMaxHistory(2);
+        AccessLog accessLog = new AccessLog(properties, registry);
+        for (int i = 0; i < 4; i++) {
+            accessLog.log(0, "POST", "/route", 200, 0, null, 0);
+            accessLog.close();
+            accessLog = new AccessLog(properties, registry);
+        }
+        accessLog.close();
+
+        assertTrue(Files.exists(dir.resolve("access.log")));
+        assertTrue(Files.exists(dir.resolve("access.log.1")));
+        assertTrue(Files.exists(dir.resolve("access.log.2")));
+        assertFalse(Files.exists(dir.resolve("access.log.3")));
+        assertEquals(1, Files.readAllLines(dir.resolve("access.log.2")).size());
+    }
+
+    private AccessLogProperties properties() {
+        AccessLogProperties properties = new AccessLogProperties();
+        properties.setFile(dir.resolve("access.log"));
+        return properties;
+    }
+}
@@ -1,9 +1,12 @@
 package com.coda.applicationapi;
 
+import com.coda.accesslog.AccessLogConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
+@Import(AccessLogConfiguration.class)
 public class ApplicationApiApplication {
 
     public static void main(String[] args) {
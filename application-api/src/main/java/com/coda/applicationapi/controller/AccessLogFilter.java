@@ -0,0 +1,48 @@
+package com.coda.applicationapi.controller;
+
+import com.coda.accesslog.AccessLog;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Hands one record per request to the {@link AccessLog} after the response has been produced. A request whose
+ * handler threw is logged as 500. Requests carrying {@value #WARMUP_HEADER}, as routing-api's startup warm-up sends
+ * them, are marked {@code "warmup":true} rather than left out: any caller can set the header, so it must not be a way
+ * to stay out of the log.
+ */
+@Component
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    static final String WARMUP_HEADER = "X-Warmup";
+
+    private final AccessLog accessLog;
+
+    public AccessLogFilter(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!accessLog.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        int status = 500;
+        try {
+            chain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            accessLog.log(timestamp, request.getMethod(), request.getRequestURI(), status,
+                    System.nanoTime() - startNanos, null, 0, request.getHeader(WARMUP_HEADER) != null);
+        }
+    }
+}
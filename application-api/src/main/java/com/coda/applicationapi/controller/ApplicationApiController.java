@@ -4,11 +4,13 @@ import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
 @RequestMapping("/api")
+@ConditionalOnProperty(name = "application.echo.streaming", havingValue = "false", matchIfMissing = true)
 public class ApplicationApiController {
 
     private static final Logger logger = LoggerFactory.getLogger(ApplicationApiController.class);
@@ -18,7 +20,16 @@ public class ApplicationApiController {
 
     @PostMapping("/echo")
     public ResponseEntity<JsonNode> echo(@RequestBody JsonNode payload) {
-        logger.info("[Instance Port: {}] Received payload: {}", port, payload);
+        logger.debug("[Instance Port: {}] Received payload: {}", port, payload);
         return ResponseEntity.ok(payload);
     }
+
+    /**
+     * Echoes a JSON array of documents back in one response, one result per document in the same order.
+     */
+    @PostMapping("/echo/batch")
+    public ResponseEntity<JsonNode> echoBatch(@RequestBody JsonNode payloads) {
+        logger.debug("[Instance Port: {}] Received batch of {} payloads", port, payloads.size());
+        return ResponseEntity.ok(payloads);
+    }
 }
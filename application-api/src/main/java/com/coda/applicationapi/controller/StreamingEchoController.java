@@ -0,0 +1,39 @@
+package com.coda.applicationapi.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Byte-level replacement for {@link ApplicationApiController}, enabled with {@code application.echo.streaming=true}.
+ * The request body is copied to the response through a small buffer as it arrives, so no JSON tree is built and
+ * a large document is never held in memory whole. Both endpoints echo their body unchanged, so one handler serves
+ * both. The body is not checked to be JSON.
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnProperty(name = "application.echo.streaming", havingValue = "true")
+public class StreamingEchoController {
+
+    @PostMapping({"/echo", "/echo/batch"})
+    public void echo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        long length = request.getContentLengthLong();
+        if (length >= 0) {
+            // a known length keeps the response out of chunked encoding
+            response.setContentLengthLong(length);
+        }
+        try (InputStream in = request.getInputStream()) {
+            OutputStream out = response.getOutputStream();
+            in.transferTo(out);
+        }
+    }
+}
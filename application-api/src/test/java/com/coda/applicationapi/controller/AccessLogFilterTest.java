@@ -0,0 +1,43 @@
+package com.coda.applicationapi.controller;
+
+import com.coda.accesslog.AccessLog;
+import com.coda.accesslog.AccessLogProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogFilterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testWarmUpRequestsAreLoggedAndMarked() throws Exception {
+        AccessLogProperties properties = new AccessLogProperties();
+        properties.setFile(dir.resolve("access.log"));
+        AccessLog accessLog = AccessLog.open(properties, new SimpleMeterRegistry());
+        AccessLogFilter filter = new AccessLogFilter(accessLog);
+
+        MockHttpServletRequest warmup = new MockHttpServletRequest("POST", "/api/echo");
+        warmup.addHeader(AccessLogFilter.WARMUP_HEADER, "true");
+        filter.doFilter(warmup, new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/echo"), new MockHttpServletResponse(),
+                new MockFilterChain());
+        accessLog.close();
+
+        // the header is the caller's word, so it only marks the line
+        List<String> lines = Files.readAllLines(dir.resolve("access.log"));
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith(",\"warmup\":true}"));
+        assertFalse(lines.get(1).contains("warmup"));
+    }
+}
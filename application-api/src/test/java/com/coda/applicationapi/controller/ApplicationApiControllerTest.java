@@ -0,0 +1,65 @@
+package com.coda.applicationapi.controller;
+
+import com.coda.accesslog.AccessLogConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Runs with application.properties as shipped, so the JsonNode echo has to be the default.
+ */
+@Import(AccessLogConfiguration.class)
+@WebMvcTest(value = {ApplicationApiController.class, StreamingEchoController.class},
+        properties = "access-log.enabled=false")
+class ApplicationApiControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void testJsonNodeEchoIsTheDefault() {
+        assertEquals(1, context.getBeanNamesForType(ApplicationApiController.class).length);
+        assertEquals(0, context.getBeanNamesForType(StreamingEchoController.class).length);
+        assertEquals("false", context.getEnvironment().getProperty("spring.threads.virtual.enabled"));
+    }
+
+    @Test
+    void testEchoReturnsThePayload() throws Exception {
+        mockMvc.perform(post("/api/echo").contentType(MediaType.APPLICATION_JSON).content("{\"key\": \"value\"}"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"key\":\"value\"}", true));
+    }
+
+    @Test
+    void testEchoBatchReturnsEveryDocumentInOrder() throws Exception {
+        String body = "[{\"id\":0},{\"id\":1},{\"id\":2}]";
+
+        mockMvc.perform(post("/api/echo/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(content().json(body, true));
+    }
+
+    @Test
+    void testEchoBatchRejectsMalformedJson() throws Exception {
+        mockMvc.perform(post("/api/echo/batch").contentType(MediaType.APPLICATION_JSON).content("[{\"id\":0},"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testMalformedJsonIsRejected() throws Exception {
+        mockMvc.perform(post("/api/echo").contentType(MediaType.APPLICATION_JSON).content("{not json"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,70 @@
+package com.coda.applicationapi.controller;
+
+import com.coda.accesslog.AccessLogConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@Import(AccessLogConfiguration.class)
+@WebMvcTest(value = StreamingEchoController.class, properties = {
+        "application.echo.streaming=true",
+        "access-log.enabled=false"
+})
+class StreamingEchoControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testEchoReturnsTheBytesAsSent() throws Exception {
+        // formatting and field order survive, as no tree is built
+        String body = "{ \"b\" : 2,\n  \"a\" : [1, 2, 3] }";
+
+        mockMvc.perform(post("/api/echo").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().longValue("Content-Length", body.getBytes(StandardCharsets.UTF_8).length))
+                .andExpect(content().string(body));
+    }
+
+    @Test
+    void testBatchIsEchoedByTheSameHandler() throws Exception {
+        String body = "[{\"id\":0},{\"id\":1},{\"id\":2}]";
+
+        mockMvc.perform(post("/api/echo/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(content().string(body));
+    }
+
+    @Test
+    void testLargeBodyIsCopiedWhole() throws Exception {
+        byte[] body = new byte[4 * 1024 * 1024];
+        Arrays.fill(body, (byte) 'x');
+        body[0] = '"';
+        body[body.length - 1] = '"';
+
+        MvcResult result = mockMvc.perform(post("/api/echo").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertArrayEquals(body, result.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    void testBodyIsNotCheckedToBeJson() throws Exception {
+        mockMvc.perform(post("/api/echo").contentType(MediaType.APPLICATION_JSON).content("{not json"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{not json"));
+    }
+}
@@ -1,13 +1,22 @@
 package com.coda.routingapi;
 
+import com.coda.accesslog.AccessLogConfiguration;
+import com.coda.routingapi.service.BackendRegistry;
+import com.coda.routingapi.service.HealthCheckService;
+import com.coda.routingapi.service.StartupWarmup;
+import org.springframework.boot.LazyInitializationExcludeFilter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.reactive.function.client.WebClient;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 @EnableScheduling
+@Import(AccessLogConfiguration.class)
 public class RoutingApiApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(RoutingApiApplication.class, args);
@@ -17,5 +26,15 @@ public class RoutingApiApplication {
 	public WebClient webClient(WebClient.Builder builder) {
 		return builder.build();
 	}
+
+	/**
+	 * Beans that start with the context even under {@code spring.main.lazy-initialization} (the fast-startup
+	 * profile): nothing asks for them, but health checks, the backends file watch and the warm-up must run.
+	 */
+	@Bean
+	static LazyInitializationExcludeFilter eagerBackendBeans() {
+		return LazyInitializationExcludeFilter.forBeanTypes(HealthCheckService.class, BackendRegistry.class,
+				StartupWarmup.class);
+	}
 }
 
@@ -0,0 +1,45 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Global admission gate in front of /route. See {@code AdmissionGate}.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+
+    /** Requests the router works on at once; anything above is shed without queueing. 0 means no global cap. */
+    private int maxInFlight = 2000;
+
+    /** Status for shed requests, 503 or 429. */
+    private int rejectStatus = 503;
+
+    /** Sent as {@code Retry-After} (whole seconds) on shed requests. */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    /**
+     * Request header a client may use to lower its own priority class, e.g. to {@code low} for background work.
+     * It never raises a request above the class its client was given in {@code client-priorities}.
+     */
+    private String priorityHeader = "X-Priority";
+
+    /**
+     * Priority class per client, keyed like the rate limit (the {@code X-Api-Key} value, else the remote address):
+     * critical, normal or low. Clients not listed are normal.
+     */
+    private Map<String, String> clientPriorities = new HashMap<>();
+
+    /** Share of {@code max-in-flight} that normal-priority requests may fill; the rest is kept for critical ones. */
+    private double normalShare = 0.9;
+
+    /** Share of {@code max-in-flight} that low-priority requests may fill, so they are the first to be shed. */
+    private double lowShare = 0.7;
+}
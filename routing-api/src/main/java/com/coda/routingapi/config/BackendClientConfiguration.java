@@ -0,0 +1,101 @@
+package com.coda.routingapi.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Replaces reactor-netty's default shared pool for every {@code WebClient.Builder} handed out by Spring. The
+ * provider keeps a separate pool per remote address, so each backend instance gets its own connections, pending
+ * queue and eviction under the limits in {@link BackendClientProperties}.
+ *
+ * <p>Health probes go through a pool of their own, {@link #HEALTH_CHECK_CONNECTOR}, so an instance whose request
+ * pool is saturated still gets probed instead of being marked down for want of a connection.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BackendClientConfiguration {
+
+    public static final String HEALTH_CHECK_CONNECTOR = "healthCheckConnector";
+
+    /** Per instance: a scheduled probe and a sweep may overlap, and nothing else uses the pool. */
+    private static final int HEALTH_CHECK_CONNECTIONS = 2;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider backendConnectionProvider(BackendClientProperties properties) {
+        return connectionProvider(properties);
+    }
+
+    @Bean
+    public WebClientCustomizer backendClientCustomizer(
+            @Qualifier("backendConnectionProvider") ConnectionProvider backendConnectionProvider,
+            BackendClientProperties properties) {
+        ReactorClientHttpConnector connector = connector(backendConnectionProvider, properties);
+        return builder -> builder.clientConnector(connector);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider healthCheckConnectionProvider(HealthCheckProperties healthCheck,
+                                                            BackendClientProperties properties) {
+        return connectionProvider(healthCheck, properties);
+    }
+
+    @Bean(HEALTH_CHECK_CONNECTOR)
+    public ClientHttpConnector healthCheckConnector(
+            @Qualifier("healthCheckConnectionProvider") ConnectionProvider healthCheckConnectionProvider,
+            BackendClientProperties properties) {
+        return connector(healthCheckConnectionProvider, properties);
+    }
+
+    public static ConnectionProvider connectionProvider(BackendClientProperties properties) {
+        return pool("backends", properties.getMaxConnections(), properties)
+                .pendingAcquireMaxCount(properties.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+                .build();
+    }
+
+    /**
+     * A probe that can't get a connection within the probe timeout fails like one the instance didn't answer.
+     */
+    public static ConnectionProvider connectionProvider(HealthCheckProperties healthCheck,
+                                                        BackendClientProperties properties) {
+        return pool("health-checks", HEALTH_CHECK_CONNECTIONS, properties)
+                .pendingAcquireTimeout(healthCheck.getTimeout())
+                .build();
+    }
+
+    private static ConnectionProvider.Builder pool(String name, int maxConnections,
+                                                   BackendClientProperties properties) {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder(name)
+                .maxIdleTime(properties.getMaxIdleTime())
+                .maxLifeTime(properties.getMaxLifeTime())
+                .evictInBackground(properties.getEvictInBackground())
+                .metrics(properties.isMetrics());
+        if (properties.getProtocol() == BackendClientProperties.Protocol.H2C) {
+            builder.allocationStrategy(Http2AllocationStrategy.builder()
+                    .maxConnections(maxConnections)
+                    .maxConcurrentStreams(properties.getMaxConcurrentStreams())
+                    .build());
+        } else {
+            builder.maxConnections(maxConnections);
+        }
+        return builder;
+    }
+
+    public static ReactorClientHttpConnector connector(ConnectionProvider provider,
+                                                       BackendClientProperties properties) {
+        HttpClient client = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .protocol(properties.getProtocol() == BackendClientProperties.Protocol.H2C
+                        ? HttpProtocol.H2C
+                        : HttpProtocol.HTTP11);
+        return new ReactorClientHttpConnector(client);
+    }
+}
@@ -0,0 +1,49 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * HTTP client used for routed requests and health probes. See {@code BackendClientConfiguration}. Pool limits
+ * apply to each backend instance separately.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.client")
+public class BackendClientProperties {
+
+    /** HTTP11, or H2C for cleartext HTTP/2 with prior knowledge (the backends must have h2c enabled). */
+    private Protocol protocol = Protocol.HTTP11;
+
+    /** Connections per instance; with H2C each one carries up to {@link #maxConcurrentStreams} requests. */
+    private int maxConnections = 200;
+
+    /** Requests that may wait for a connection per instance; -1 for no limit. */
+    private int pendingAcquireMaxCount = 1000;
+
+    /** How long a request may wait for a connection before it is shed. */
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(1);
+
+    /** Close connections idle for longer than this; keep it below the backends' keep-alive timeout. */
+    private Duration maxIdleTime = Duration.ofSeconds(15);
+
+    /** Close connections older than this, so traffic rebalances after a backend restarts or scales. */
+    private Duration maxLifeTime = Duration.ofMinutes(5);
+
+    /** Sweep idle and expired connections this often instead of only when they are next acquired. */
+    private Duration evictInBackground = Duration.ofSeconds(30);
+
+    private Duration connectTimeout = Duration.ofSeconds(1);
+
+    /** Concurrent requests on one H2C connection. */
+    private long maxConcurrentStreams = 100;
+
+    /** Publish reactor.netty.connection.provider.* gauges (active, idle, pending) per instance. */
+    private boolean metrics = true;
+
+    public enum Protocol {
+        HTTP11,
+        H2C
+    }
+}
@@ -0,0 +1,28 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Runtime changes to the backend fleet. See {@code BackendRegistry}. Plain numbers are milliseconds.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.backends")
+public class BackendRegistryProperties {
+
+    /**
+     * JSON list of {@code {"url": ..., "weight": ..., "metadata": {...}}}. When set, its contents replace
+     * {@code application.api.instances} at startup and every edit is applied while running. Unset means the
+     * fleet only changes through the admin endpoint.
+     */
+    private Path file;
+
+    /** How often the file is checked for changes. */
+    private Duration watchInterval = Duration.ofSeconds(2);
+
+    /** Longest a removed instance is given to finish its in-flight requests before it is dropped anyway. */
+    private Duration drainTimeout = Duration.ofSeconds(30);
+}
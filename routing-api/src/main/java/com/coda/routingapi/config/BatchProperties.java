@@ -0,0 +1,23 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * /route/batch and /route/stream. See {@code BatchRoutingController}.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.batch")
+public class BatchProperties {
+
+    /** Documents sent to a backend in one request. */
+    private int microBatchSize = 32;
+
+    /** A partial micro-batch is sent once its first document has waited this long, so slow streams keep moving. */
+    private Duration maxBatchDelay = Duration.ofMillis(10);
+
+    /** Micro-batches in flight per client request; the body is read no faster than they complete. */
+    private int maxConcurrency = 4;
+}
@@ -0,0 +1,26 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Every instance's circuit breaker. See {@code BackendInstance}.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.circuit-breaker")
+public class CircuitBreakerProperties {
+
+    /** Failure percentage over the sliding window at which the breaker opens. */
+    private float failureRateThreshold = 50;
+
+    /** Calls the failure rate is computed over. */
+    private int slidingWindowSize = 5;
+
+    /** Open this long before letting trial calls through. */
+    private Duration waitDurationInOpenState = Duration.ofSeconds(30);
+
+    /** Trial calls in half-open; the breaker closes again if they stay under the threshold. */
+    private int permittedNumberOfCallsInHalfOpenState = 2;
+}
@@ -0,0 +1,21 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Single-flight coalescing of identical concurrent /route requests. See {@code RequestCoalescer}. Like the
+ * response cache, only turn this on when identical payloads get identical answers.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.coalescing")
+public class CoalescingProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * JSON pointer (e.g. {@code /request/id}) to the part of the payload that identifies a request; empty keys on
+     * the whole payload. Passthrough requests are never parsed, so they always key on their exact bytes.
+     */
+    private String keyPointer = "";
+}
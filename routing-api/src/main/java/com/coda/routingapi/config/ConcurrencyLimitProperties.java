@@ -0,0 +1,45 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Per-instance adaptive concurrency limits. See {@code AdaptiveConcurrencyLimiter}.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    /**
+     * Off by default like the other opt-in policies: until the limits have learnt each instance's latency, every
+     * instance is held to {@code initial-limit}, which caps a fresh router at that many requests per instance.
+     */
+    private boolean enabled = false;
+
+    /** Limit every instance starts with; the latency gradient moves it from there as responses come back. */
+    private int initialLimit = 20;
+
+    private int minLimit = 2;
+
+    private int maxLimit = 500;
+
+    /** Latency may grow to this multiple of the no-load latency before the limit starts shrinking. */
+    private double rttTolerance = 2.0;
+
+    /** Requests allowed to queue at the backend on top of what the latency gradient says it can take. */
+    private int queueSize = 4;
+
+    /** Weight of each new estimate; lower is steadier but slower to react. */
+    private double smoothing = 0.2;
+
+    /** Multiplicative decrease applied on a timeout. */
+    private double backoffRatio = 0.9;
+
+    /**
+     * The no-load latency is the lowest seen in this interval and the one before, so a backend that got slower for
+     * good is picked up within two intervals.
+     */
+    private Duration minRttInterval = Duration.ofSeconds(30);
+}
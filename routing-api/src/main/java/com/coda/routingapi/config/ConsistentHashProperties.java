@@ -0,0 +1,30 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Sticky routing for {@code routing.load-balancer=consistent-hash}. See {@code ConsistentHashLoadBalancer}.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.consistent-hash")
+public class ConsistentHashProperties {
+
+    /** Header carrying the routing key (e.g. a tenant id). Takes precedence over {@link #keyPointer}. */
+    private String keyHeader = "X-Routing-Key";
+
+    /**
+     * JSON pointer (e.g. {@code /tenant/id}) to the routing key in the payload; empty means only the header is
+     * used. Passthrough requests are never parsed, so they can only be keyed by the header.
+     */
+    private String keyPointer = "";
+
+    /** Points on the ring per unit of instance weight; more points spread keys more evenly. */
+    private int virtualNodes = 160;
+
+    /**
+     * An instance takes a key's request only while its in-flight count is below this multiple of the fleet
+     * average; otherwise the request moves on along the ring. 0 turns the bound off.
+     */
+    private double loadFactor = 1.25;
+}
@@ -0,0 +1,26 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * End-to-end request deadlines on /route. See {@code Deadline}.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.deadline")
+public class DeadlineProperties {
+
+    /** Deadline for requests that don't send {@code X-Request-Timeout-Ms}. */
+    private Duration defaultTimeout = Duration.ofSeconds(5);
+
+    /** Upper bound on a client-supplied deadline. */
+    private Duration maxTimeout = Duration.ofSeconds(30);
+
+    /** No single attempt may take longer than this, even with more of the deadline left. */
+    private Duration perTryTimeout = Duration.ofSeconds(2);
+
+    /** Don't start another attempt with less than this left; it could only time out. */
+    private Duration minAttemptTime = Duration.ofMillis(10);
+}
@@ -0,0 +1,35 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Active health probing of application-api instances. Plain numbers are milliseconds, so the old
+ * {@code healthcheck.interval=60000} keeps working.
+ */
+@Data
+@ConfigurationProperties(prefix = "healthcheck")
+public class HealthCheckProperties {
+
+    /** Probe interval for an instance whose state is settled (healthy or unhealthy with no streak under way). */
+    private Duration interval = Duration.ofSeconds(60);
+
+    /** Probe interval while an instance is unhealthy or its last result disagreed with its state. */
+    private Duration unhealthyInterval = Duration.ofSeconds(5);
+
+    /** Each delay is randomised by +/- this fraction so instances never probe in lockstep. */
+    private double jitter = 0.2;
+
+    private Duration timeout = Duration.ofSeconds(2);
+
+    /** Probes in flight at once across all instances; the rest queue. */
+    private int maxConcurrency = 32;
+
+    /** Consecutive successes before an unhealthy instance is marked healthy. */
+    private int healthyThreshold = 2;
+
+    /** Consecutive failures before a healthy instance is marked unhealthy. */
+    private int unhealthyThreshold = 3;
+}
@@ -0,0 +1,32 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Hedged requests on /route. A hedged payload may be processed by two backends, so only requests that carry an
+ * idempotency key ({@code routing.cache.key-header}) are hedged.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.hedging")
+public class HedgingProperties {
+
+    private boolean enabled = false;
+
+    /** Fixed hedge delay, also used until enough latency samples exist for {@link #percentile}. */
+    private Duration delay = Duration.ofMillis(100);
+
+    /** Derive the delay from this percentile of observed latency instead (e.g. 95); 0 keeps the fixed delay. */
+    private double percentile = 0;
+
+    /** Lower bound for a percentile-derived delay, so a fast fleet doesn't hedge everything. */
+    private Duration minDelay = Duration.ofMillis(5);
+
+    /** Hedges allowed as a percentage of requests. */
+    private double budgetPercent = 10;
+
+    /** Hedges that can be saved up for a burst of slow responses. */
+    private int budgetBurst = 10;
+}
@@ -0,0 +1,47 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Passive outlier detection driven by live /route traffic. See {@code OutlierDetector}.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.outlier")
+public class OutlierDetectionProperties {
+
+    private boolean enabled = true;
+
+    /** Consecutive 5xx responses, timeouts or connect failures before an instance is ejected. */
+    private int consecutiveFailures = 5;
+
+    /**
+     * Consecutive connection refusals before ejection. Lower than {@link #consecutiveFailures} as a refusal fails
+     * fast and rarely means anything but a dead process, but above 1 so one reset during a restart or a full
+     * accept queue doesn't take an instance out.
+     */
+    private int consecutiveConnectFailures = 3;
+
+    /** First ejection lasts this long; each further ejection doubles it up to {@link #maxEjectionTime}. */
+    private Duration baseEjectionTime = Duration.ofSeconds(30);
+
+    private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+    /** Never eject more than this share of the configured instances, whatever the detector thinks. */
+    private int maxEjectionPercent = 50;
+
+    /**
+     * Success-rate ejection needs at least this many instances with enough traffic in the interval. With n hosts a
+     * single outlier is at most (n-1)/sqrt(n) standard deviations from the mean, so small fleets rely on the
+     * consecutive-failure checks instead.
+     */
+    private int successRateMinimumHosts = 5;
+
+    /** Requests an instance needs in one interval to take part in success-rate ejection. */
+    private int successRateRequestVolume = 20;
+
+    /** Ejected when success rate is below fleet mean minus this many standard deviations. */
+    private double successRateStdevFactor = 1.9;
+}
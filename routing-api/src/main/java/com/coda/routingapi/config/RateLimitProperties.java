@@ -0,0 +1,29 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Per-client rate limit on /route. See {@code ClientRateLimiter}.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = false;
+
+    /** Header identifying the client; requests without it are limited per remote address. */
+    private String clientHeader = "X-Api-Key";
+
+    /** Sustained requests per second allowed for each client. */
+    private double rate = 100;
+
+    /** Requests a client that has been quiet may send at once, on top of the sustained rate. */
+    private int burst = 200;
+
+    /**
+     * Clients tracked at once. Beyond this, clients not seen recently are forgotten (CLOCK, roughly LRU) and come
+     * back with a full burst.
+     */
+    private int maxClients = 100_000;
+}
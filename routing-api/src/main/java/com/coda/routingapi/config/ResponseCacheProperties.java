@@ -0,0 +1,30 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Response cache on /route. See {@code ResponseCache}. Only turn this on when the backends answer identical
+ * payloads with identical responses.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.cache")
+public class ResponseCacheProperties {
+
+    private boolean enabled = false;
+
+    /** Upper bound on cached response bytes (plus a small per-entry overhead). */
+    private DataSize maxSize = DataSize.ofMegabytes(64);
+
+    /** Responses larger than this are never cached, so one big body can't push out many small ones. */
+    private DataSize maxEntrySize = DataSize.ofKilobytes(256);
+
+    /** How long a response is served from the cache after it was fetched. */
+    private Duration ttl = Duration.ofSeconds(60);
+
+    /** Requests carrying this header are keyed on its value instead of a hash of the payload. */
+    private String keyHeader = "Idempotency-Key";
+}
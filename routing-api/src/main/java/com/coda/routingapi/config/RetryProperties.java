@@ -0,0 +1,18 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Router-wide budget for retrying a failed attempt on the next instance. See {@code RetryPolicy}.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.retry")
+public class RetryProperties {
+
+    /** Retries allowed as a percentage of requests. */
+    private double budgetPercent = 10;
+
+    /** Retries that can be saved up for a burst of failures. */
+    private int budgetBurst = 20;
+}
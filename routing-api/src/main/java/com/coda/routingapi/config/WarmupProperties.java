@@ -0,0 +1,35 @@
+package com.coda.routingapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Work done between the application starting and the router reporting ready. See {@code StartupWarmup}.
+ */
+@Data
+@ConfigurationProperties(prefix = "routing.warmup")
+public class WarmupProperties {
+
+    /**
+     * Off by default, as the warm-up requests reach the backends; the fast-startup profile turns it on. When off
+     * the router is ready as soon as it has started, before any backend has been probed.
+     */
+    private boolean enabled = false;
+
+    /** Connections opened ahead to each routable instance, so the first requests don't pay for the handshakes. */
+    private int connectionsPerInstance = 4;
+
+    /**
+     * Requests the router sends through its own /route to compile the request path; 0 skips this step. Each body
+     * is distinct, so they reach a backend rather than the response cache or the coalescer.
+     */
+    private int requests = 200;
+
+    /** Warm-up requests in flight at once. */
+    private int concurrency = 4;
+
+    /** Longest the router stays unready; past it, it reports ready with whatever warm-up has finished. */
+    private Duration timeout = Duration.ofSeconds(30);
+}
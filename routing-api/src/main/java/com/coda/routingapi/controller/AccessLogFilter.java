@@ -0,0 +1,64 @@
+package com.coda.routingapi.controller;
+
+import com.coda.accesslog.AccessLog;
+import com.coda.routingapi.service.StartupWarmup;
+import com.coda.routingapi.service.UpstreamTrace;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Hands one record per exchange to the {@link AccessLog} once the response is complete, along with the instance
+ * the routing service sent it to. An exchange that ends in an error the handlers didn't map is logged as 500; one
+ * the client abandoned before anything was sent as 499. The router's own {@link StartupWarmup} requests aren't
+ * logged, only marked so their backend calls carry the warm-up header.
+ */
+@Component
+public class AccessLogFilter implements WebFilter {
+
+    private final AccessLog accessLog;
+
+    public AccessLogFilter(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (StartupWarmup.isWarmup(exchange.getRequest())) {
+            return chain.filter(exchange).contextWrite(context -> context.put(StartupWarmup.HEADER, Boolean.TRUE));
+        }
+        if (!accessLog.isEnabled()) {
+            return chain.filter(exchange);
+        }
+        long timestamp = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        UpstreamTrace trace = new UpstreamTrace();
+        return chain.filter(exchange)
+                .contextWrite(context -> context.put(UpstreamTrace.class, trace))
+                .doFinally(signal -> {
+                    ServerHttpRequest request = exchange.getRequest();
+                    accessLog.log(timestamp, request.getMethod().name(), request.getPath().value(),
+                            status(exchange, signal), System.nanoTime() - startNanos,
+                            trace.upstream(), trace.attempts());
+                });
+    }
+
+    private static int status(ServerWebExchange exchange, SignalType signal) {
+        ServerHttpResponse response = exchange.getResponse();
+        if (signal == SignalType.CANCEL && !response.isCommitted()) {
+            return AccessLog.CLIENT_CLOSED_REQUEST;
+        }
+        if (signal == SignalType.ON_ERROR) {
+            return 500;
+        }
+        // the connection can close before the end of a response that was sent in full, which also cancels
+        HttpStatusCode status = response.getStatusCode();
+        return status != null ? status.value() : 200;
+    }
+}
@@ -0,0 +1,97 @@
+package com.coda.routingapi.controller;
+
+import com.coda.routingapi.service.BackendInstance;
+import com.coda.routingapi.service.BackendRegistry;
+import com.coda.routingapi.service.HealthCheckService;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code /actuator/backends}: lists the fleet, and adds, updates, drains and removes instances at runtime.
+ * <ul>
+ *     <li>{@code GET} lists every instance with its routing state.</li>
+ *     <li>{@code POST {"url": ..., "weight": 2, "metadata": "zone=eu-1,version=2", "draining": true}} registers
+ *     or updates one; everything but {@code url} is optional. Actuator reads the body as flat strings, hence
+ *     the metadata format.</li>
+ *     <li>{@code DELETE ?url=...} drains the instance and answers once it is gone.</li>
+ * </ul>
+ */
+@Component
+@Endpoint(id = "backends")
+public class BackendsEndpoint {
+
+    private final BackendRegistry registry;
+    private final HealthCheckService healthCheckService;
+
+    public BackendsEndpoint(BackendRegistry registry, HealthCheckService healthCheckService) {
+        this.registry = registry;
+        this.healthCheckService = healthCheckService;
+    }
+
+    public record BackendView(String url, int weight, Map<String, String> metadata, boolean healthy,
+                              boolean draining, boolean ejected, boolean routable, int inFlight,
+                              String circuitBreaker) {
+
+        static BackendView of(BackendInstance instance) {
+            return new BackendView(instance.baseUrl(), instance.weight(), instance.metadata(), instance.isHealthy(),
+                    instance.isDraining(), instance.outlierState().isEjected(), instance.isRoutable(),
+                    instance.inFlight(), instance.circuitBreaker().getState().name());
+        }
+    }
+
+    public record RemovalView(String url, BackendRegistry.Removal result) {
+    }
+
+    @ReadOperation
+    public List<BackendView> backends() {
+        return healthCheckService.getAllInstances().stream().map(BackendView::of).toList();
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<BackendView> register(String url, @Nullable Integer weight,
+                                                     @Nullable String metadata,
+                                                     @Nullable Boolean draining) {
+        BackendInstance instance;
+        try {
+            instance = registry.register(url, weight, metadata != null ? parseMetadata(metadata) : null);
+        } catch (IllegalArgumentException e) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+        if (draining != null) {
+            registry.setDraining(url, draining);
+        }
+        return new WebEndpointResponse<>(BackendView.of(instance));
+    }
+
+    @DeleteOperation
+    public Mono<WebEndpointResponse<RemovalView>> deregister(String url) {
+        return registry.deregister(url)
+                .map(removal -> new WebEndpointResponse<>(new RemovalView(url, removal)))
+                .defaultIfEmpty(new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND));
+    }
+
+    private static Map<String, String> parseMetadata(String metadata) {
+        Map<String, String> parsed = new LinkedHashMap<>();
+        for (String pair : metadata.split(",")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Metadata must be key=value pairs, got '" + pair + "'");
+            }
+            parsed.put(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim());
+        }
+        return parsed;
+    }
+}
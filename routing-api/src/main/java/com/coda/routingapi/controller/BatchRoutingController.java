@@ -0,0 +1,110 @@
+package com.coda.routingapi.controller;
+
+import com.coda.routingapi.config.BatchProperties;
+import com.coda.routingapi.service.AdmissionGate;
+import com.coda.routingapi.service.ClientRateLimiter;
+import com.coda.routingapi.service.Deadline;
+import com.coda.routingapi.service.RoutingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Many documents per client request: {@code /route/batch} takes a JSON array and answers with one, while
+ * {@code /route/stream} takes and returns {@code application/x-ndjson}. Either way the body is decoded one
+ * document at a time as it arrives, documents are grouped into micro-batches that each go to one backend's batch
+ * endpoint, and at most {@code max-concurrency} micro-batches are in flight, so a large body is read only as fast
+ * as the backends keep up. Results come back in request order, one per document; every document of a micro-batch
+ * that failed gets an error object in its place. The whole request has one deadline from {@link Deadline#HEADER},
+ * which every micro-batch draws on.
+ */
+@RestController
+public class BatchRoutingController {
+
+    private final RoutingService routingService;
+    private final AdmissionGate admissionGate;
+    private final ClientRateLimiter rateLimiter;
+    private final BatchProperties properties;
+
+    public BatchRoutingController(RoutingService routingService, AdmissionGate admissionGate,
+                                  ClientRateLimiter rateLimiter, BatchProperties properties) {
+        this.routingService = routingService;
+        this.admissionGate = admissionGate;
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+    }
+
+    @PostMapping(value = "/route/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<JsonNode> batch(@RequestBody Flux<JsonNode> items,
+                                @RequestHeader(name = Deadline.HEADER, required = false) String timeout,
+                                ServerHttpRequest request, ServerHttpResponse response) {
+        return route(items, timeout, request, response);
+    }
+
+    @PostMapping(value = "/route/stream", consumes = "application/x-ndjson", produces = "application/x-ndjson")
+    public Flux<JsonNode> stream(@RequestBody Flux<JsonNode> items,
+                                 @RequestHeader(name = Deadline.HEADER, required = false) String timeout,
+                                 ServerHttpRequest request, ServerHttpResponse response) {
+        return route(items, timeout, request, response);
+    }
+
+    /**
+     * The slot is taken when the response body is subscribed and released when that same subscription ends, by
+     * completion, error or cancellation, so a body that is never written never holds one. The status is set
+     * before the first document goes out, which is when the response is committed.
+     */
+    private Flux<JsonNode> route(Flux<JsonNode> items, String timeout, ServerHttpRequest request,
+                                 ServerHttpResponse response) {
+        return Flux.defer(() -> {
+            // the whole client request takes one token and holds one slot, however many documents it carries
+            String client = rateLimiter.clientKey(request);
+            long wait = rateLimiter.tryAcquire(client);
+            if (wait > 0) {
+                response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, ClientRateLimiter.retryAfter(wait));
+                return Flux.just(errorBody("Rate limit exceeded"));
+            }
+            if (!admissionGate.tryAcquire(admissionGate.priority(request, client))) {
+                response.setStatusCode(admissionGate.rejectStatus());
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, admissionGate.retryAfter());
+                return Flux.just(errorBody("Too many requests in flight"));
+            }
+            Deadline deadline = routingService.deadline(timeout);
+            return items
+                    .bufferTimeout(properties.getMicroBatchSize(), properties.getMaxBatchDelay(), true)
+                    .flatMapSequential(batch -> forward(batch, deadline), properties.getMaxConcurrency())
+                    .doFinally(signal -> admissionGate.release());
+        });
+    }
+
+    private Flux<JsonNode> forward(List<JsonNode> batch, Deadline deadline) {
+        return routingService.forwardBatch(batch, deadline)
+                .flatMapMany(results -> results.isArray() && results.size() == batch.size()
+                        ? Flux.fromIterable(results)
+                        : Flux.error(new IllegalStateException(
+                                "Backend returned " + results.size() + " results for " + batch.size() + " documents")))
+                .onErrorResume(ex -> {
+                    JsonNode error = errorBody(ex.getMessage());
+                    return Flux.range(0, batch.size()).map(i -> error);
+                });
+    }
+
+    private static ObjectNode errorBody(String message) {
+        return new ObjectNode(JsonNodeFactory.instance)
+                .put("status", "error")
+                .put("message", message);
+    }
+}
@@ -0,0 +1,168 @@
+package com.coda.routingapi.controller;
+
+import com.coda.routingapi.service.AdmissionGate;
+import com.coda.routingapi.service.ClientRateLimiter;
+import com.coda.routingapi.service.Deadline;
+import com.coda.routingapi.service.DeadlineExceededException;
+import com.coda.routingapi.service.OverloadedException;
+import com.coda.routingapi.service.PassthroughValidation;
+import com.coda.routingapi.service.PayloadKey;
+import com.coda.routingapi.service.RawPayload;
+import com.coda.routingapi.service.RequestCoalescer;
+import com.coda.routingapi.service.ResponseCache;
+import com.coda.routingapi.service.RoutingService;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte-level replacement for {@link RoutingController}, enabled with {@code routing.passthrough.enabled=true}.
+ * The body is joined into one pooled buffer and forwarded untouched, so no JSON tree is built on either side.
+ * Unless the response cache or coalescing needs the response as bytes, it is streamed back in the pooled buffers
+ * the backend's body was read into.
+ */
+@RestController
+@ConditionalOnProperty(name = "routing.passthrough.enabled", havingValue = "true")
+public class PassthroughRoutingController {
+
+    private static final DefaultDataBufferFactory BUFFER_FACTORY = DefaultDataBufferFactory.sharedInstance;
+
+    private final RoutingService routingService;
+    private final PassthroughValidation validation;
+    private final AdmissionGate admissionGate;
+    private final ClientRateLimiter rateLimiter;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer requestCoalescer;
+    private final String routingKeyHeader;
+
+    public PassthroughRoutingController(RoutingService routingService,
+                                        @Value("${routing.passthrough.validation:envelope}") PassthroughValidation validation,
+                                        AdmissionGate admissionGate,
+                                        ClientRateLimiter rateLimiter,
+                                        ResponseCache responseCache,
+                                        RequestCoalescer requestCoalescer,
+                                        @Value("${routing.consistent-hash.key-header:X-Routing-Key}")
+                                        String routingKeyHeader) {
+        this.routingService = routingService;
+        this.validation = validation;
+        this.admissionGate = admissionGate;
+        this.rateLimiter = rateLimiter;
+        this.responseCache = responseCache;
+        this.requestCoalescer = requestCoalescer;
+        this.routingKeyHeader = routingKeyHeader;
+    }
+
+    @PostMapping("/route")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> route(ServerHttpRequest request) {
+        return Mono.defer(() -> {
+            // checked before the body is read, so a limited or shed request costs no buffering
+            String client = rateLimiter.clientKey(request);
+            long wait = rateLimiter.tryAcquire(client);
+            if (wait > 0) {
+                return Mono.just(error(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, ClientRateLimiter.retryAfter(wait)), "Rate limit exceeded"));
+            }
+            if (!admissionGate.tryAcquire(admissionGate.priority(request, client))) {
+                return Mono.just(shed("Too many requests in flight"));
+            }
+            return relay(request).doFinally(signal -> admissionGate.release());
+        });
+    }
+
+    private Mono<ResponseEntity<Flux<DataBuffer>>> relay(ServerHttpRequest request) {
+        MediaType contentType = request.getHeaders().getContentType();
+        return DataBufferUtils.join(request.getBody())
+                .map(buffer -> RawPayload.of(buffer, contentType))
+                // the request owns the payload's first reference, dropped here and nowhere else
+                .flatMap(payload -> relay(request, payload).doFinally(signal -> payload.release()))
+                .switchIfEmpty(Mono.fromSupplier(() -> error(HttpStatus.BAD_REQUEST, "Payload is empty")));
+    }
+
+    private Mono<ResponseEntity<Flux<DataBuffer>>> relay(ServerHttpRequest request, RawPayload payload) {
+        if (!validation.accepts(payload.content())) {
+            return Mono.just(error(HttpStatus.BAD_REQUEST, "Payload is not a JSON document"));
+        }
+        String idempotencyKey = request.getHeaders().getFirst(responseCache.keyHeader());
+        PayloadKey key = responseCache.key(idempotencyKey, payload.content());
+        ResponseCache.CachedResponse cached = responseCache.get(key);
+        if (cached != null) {
+            return Mono.just(ok(cached.contentType(), cached.body()));
+        }
+        // like @RequestBody in RoutingController, the clock starts once the body is in
+        Deadline deadline = routingService.deadline(request.getHeaders().getFirst(Deadline.HEADER));
+        String routingKeyValue = request.getHeaders().getFirst(routingKeyHeader);
+        long routingKey = routingService.routingKey(routingKeyValue, null);
+        boolean idempotent = idempotencyKey != null;
+        Mono<ResponseEntity<Flux<DataBuffer>>> response;
+        if (!responseCache.isEnabled() && !requestCoalescer.isEnabled() && !routingService.hedges(idempotent)) {
+            // nothing else needs the bytes, so the backend's buffers go straight out to the client
+            response = routingService.streamRaw(payload, routingKey, deadline)
+                    .map(PassthroughRoutingController::streamed);
+        } else {
+            PayloadKey flight = requestCoalescer.key(payload.content(), routingKeyValue, idempotencyKey);
+            response = requestCoalescer.coalesce(flight, () -> {
+                        // a shared call may outlive this request, so it holds its own reference
+                        payload.retain();
+                        return routingService.forwardRaw(payload, routingKey, idempotent, deadline)
+                                .doOnNext(backend -> responseCache.put(key, backend.getBody(), contentType(backend)))
+                                .doFinally(signal -> payload.release());
+                    })
+                    .map(backend -> ok(contentType(backend), backend.getBody()));
+        }
+        return response
+                .onErrorResume(OverloadedException.class, ex -> Mono.just(shed(ex.getMessage())))
+                .onErrorResume(DeadlineExceededException.class,
+                        ex -> Mono.just(error(HttpStatus.GATEWAY_TIMEOUT, ex.getMessage())))
+                .onErrorResume(ex -> Mono.just(error(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage())));
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> streamed(ResponseEntity<Flux<DataBuffer>> backend) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(contentType(backend));
+        long length = backend.getHeaders().getContentLength();
+        if (length >= 0) {
+            response.contentLength(length);
+        }
+        return response.body(backend.getBody());
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> ok(MediaType contentType, byte[] body) {
+        return ResponseEntity.ok().contentType(contentType).body(Flux.just(BUFFER_FACTORY.wrap(body)));
+    }
+
+    private static MediaType contentType(ResponseEntity<?> response) {
+        MediaType type = response.getHeaders().getContentType();
+        return type != null ? type : MediaType.APPLICATION_JSON;
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> shed(String message) {
+        return error(ResponseEntity.status(admissionGate.rejectStatus())
+                .header(HttpHeaders.RETRY_AFTER, admissionGate.retryAfter()), message);
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> error(HttpStatus status, String message) {
+        return error(ResponseEntity.status(status), message);
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> error(ResponseEntity.BodyBuilder response, String message) {
+        ObjectNode body = new ObjectNode(JsonNodeFactory.instance)
+                .put("status", "error")
+                .put("message", message);
+        return response.contentType(MediaType.APPLICATION_JSON)
+                .body(Flux.just(BUFFER_FACTORY.wrap(body.toString().getBytes(StandardCharsets.UTF_8))));
+    }
+}
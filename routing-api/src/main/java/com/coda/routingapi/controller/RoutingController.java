@@ -1,32 +1,99 @@
 package com.coda.routingapi.controller;
 
+import com.coda.routingapi.service.AdmissionGate;
+import com.coda.routingapi.service.ClientRateLimiter;
+import com.coda.routingapi.service.Deadline;
+import com.coda.routingapi.service.DeadlineExceededException;
+import com.coda.routingapi.service.OverloadedException;
+import com.coda.routingapi.service.PayloadKey;
+import com.coda.routingapi.service.RequestCoalescer;
+import com.coda.routingapi.service.ResponseCache;
 import com.coda.routingapi.service.RoutingService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
 @RestController
+@ConditionalOnProperty(name = "routing.passthrough.enabled", havingValue = "false", matchIfMissing = true)
 public class RoutingController {
 
     private final RoutingService routingService;
+    private final AdmissionGate admissionGate;
+    private final ClientRateLimiter rateLimiter;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer requestCoalescer;
 
-    public RoutingController(RoutingService routingService) {
+    public RoutingController(RoutingService routingService, AdmissionGate admissionGate,
+                             ClientRateLimiter rateLimiter, ResponseCache responseCache,
+                             RequestCoalescer requestCoalescer) {
         this.routingService = routingService;
+        this.admissionGate = admissionGate;
+        this.rateLimiter = rateLimiter;
+        this.responseCache = responseCache;
+        this.requestCoalescer = requestCoalescer;
     }
 
     @PostMapping("/route")
     //As mentioned can be any JSON
-    public Mono<ResponseEntity<JsonNode>> route(@RequestBody JsonNode payload) {
-        return routingService.forward(payload)
-                .map(ResponseEntity::ok)
-                .onErrorResume(ex -> Mono.just(
-                        ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                                .body(createErrorResponse(ex.getMessage()))
-                ));
+    public Mono<ResponseEntity<Object>> route(@RequestBody JsonNode payload,
+                                              @RequestHeader(name = Deadline.HEADER, required = false) String timeout,
+                                              @RequestHeader(name = "${routing.cache.key-header:Idempotency-Key}",
+                                                      required = false) String idempotencyKey,
+                                              @RequestHeader(name = "${routing.consistent-hash.key-header:X-Routing-Key}",
+                                                      required = false) String routingKeyHeader,
+                                              ServerHttpRequest request) {
+        return Mono.defer(() -> {
+            // a client over its rate is turned away even when the answer is cached, so the limit means one thing
+            String client = rateLimiter.clientKey(request);
+            long wait = rateLimiter.tryAcquire(client);
+            if (wait > 0) {
+                return Mono.just(rateLimited(wait));
+            }
+            PayloadKey key = responseCache.key(idempotencyKey, payload);
+            ResponseCache.CachedResponse cached = responseCache.get(key);
+            if (cached != null) {
+                // served without touching a backend, so it doesn't need a slot at the gate either
+                return Mono.just(ResponseEntity.ok().contentType(cached.contentType()).<Object>body(cached.body()));
+            }
+            if (!admissionGate.tryAcquire(admissionGate.priority(request, client))) {
+                return Mono.just(shed("Too many requests in flight"));
+            }
+            Deadline deadline = routingService.deadline(timeout);
+            long routingKey = routingService.routingKey(routingKeyHeader, payload);
+            return requestCoalescer.coalesce(requestCoalescer.key(payload, routingKeyHeader, idempotencyKey),
+                            () -> routingService.forward(payload, routingKey, idempotencyKey != null, deadline)
+                                    .doOnNext(response -> responseCache.put(key, response)))
+                    .map(ResponseEntity::<Object>ok)
+                    .onErrorResume(OverloadedException.class, ex -> Mono.just(shed(ex.getMessage())))
+                    .onErrorResume(DeadlineExceededException.class, ex -> Mono.just(
+                            ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                                    .<Object>body(createErrorResponse(ex.getMessage()))
+                    ))
+                    .onErrorResume(ex -> Mono.just(
+                            ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                    .<Object>body(createErrorResponse(ex.getMessage()))
+                    ))
+                    .doFinally(signal -> admissionGate.release());
+        });
+    }
+
+    private ResponseEntity<Object> shed(String message) {
+        return ResponseEntity.status(admissionGate.rejectStatus())
+                .header(HttpHeaders.RETRY_AFTER, admissionGate.retryAfter())
+                .body(createErrorResponse(message));
+    }
+
+    private ResponseEntity<Object> rateLimited(long waitNanos) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, ClientRateLimiter.retryAfter(waitNanos))
+                .body(createErrorResponse("Rate limit exceeded"));
     }
 
     private JsonNode createErrorResponse(String message) {
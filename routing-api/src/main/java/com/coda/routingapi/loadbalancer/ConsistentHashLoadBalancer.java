@@ -0,0 +1,98 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.config.ConsistentHashProperties;
+import com.coda.routingapi.service.AdaptiveConcurrencyLimiter;
+import com.coda.routingapi.service.RoutingTable;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sticky routing: requests with the same key (a tenant id from the {@code key-header} or from {@code key-pointer}
+ * in the payload) go to the same instance, so per-key caches on the backends stay warm. Keys map to instances
+ * through a {@link ConsistentHashRing} rebuilt whenever the routing table changes; an instance leaving the table
+ * moves only the keys it owned, about 1/N of them.
+ *
+ * <p>Consistent hashing with bounded loads: an instance takes a key's request only while it has fewer than
+ * {@code load-factor} times the average in-flight requests, so one hot key spills onto the next instances along
+ * the ring instead of melting its owner. Requests without a key are spread round robin.
+ */
+@Component
+@ConditionalOnProperty(name = "routing.load-balancer", havingValue = "consistent-hash")
+public class ConsistentHashLoadBalancer implements LoadBalancer {
+
+    private static final long SEED = 0x2545f4914f6cdd1dL;
+
+    private final ConsistentHashProperties properties;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final JsonPointer keyPointer;
+    private final AtomicLong counter = new AtomicLong(0);
+    private volatile ConsistentHashRing ring = ConsistentHashRing.EMPTY;
+
+    public ConsistentHashLoadBalancer(ConsistentHashProperties properties,
+                                      AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.properties = properties;
+        this.concurrencyLimiter = concurrencyLimiter;
+        String pointer = properties.getKeyPointer();
+        this.keyPointer = pointer == null || pointer.isEmpty() ? null : JsonPointer.compile(pointer);
+    }
+
+    @Override
+    public int select(RoutingTable table) {
+        return (int) Math.floorMod(counter.getAndIncrement(), (long) table.size());
+    }
+
+    @Override
+    public int select(RoutingTable table, long routingKey) {
+        if (routingKey == NO_KEY) {
+            return select(table);
+        }
+        return ring(table).select(routingKey, maxLoad(table));
+    }
+
+    @Override
+    public long routingKey(String header, JsonNode payload) {
+        if (header != null && !header.isEmpty()) {
+            return hash(header);
+        }
+        if (keyPointer == null || payload == null) {
+            return NO_KEY;
+        }
+        JsonNode key = payload.at(keyPointer);
+        if (key.isMissingNode() || key.isNull()) {
+            return NO_KEY;
+        }
+        // a scalar hashes by its text, so {"tenant":42}, {"tenant":"42"} and the header 42 all stick together
+        return hash(key.isValueNode() ? key.asText() : key.toString());
+    }
+
+    private ConsistentHashRing ring(RoutingTable table) {
+        ConsistentHashRing current = ring;
+        if (current.table() != table) {
+            // new snapshot; racing rebuilds produce identical rings, so whichever is published last is fine
+            current = ConsistentHashRing.of(table, properties.getVirtualNodes());
+            ring = current;
+        }
+        return current;
+    }
+
+    /**
+     * In-flight cap for this request: {@code load-factor} times the average including this request, rounded up.
+     * With a factor above 1 the average is always below the cap, so some instance can always take it.
+     */
+    private int maxLoad(RoutingTable table) {
+        double loadFactor = properties.getLoadFactor();
+        if (loadFactor <= 0) {
+            return 0;
+        }
+        return (int) Math.ceil(loadFactor * (concurrencyLimiter.totalInFlight() + 1) / table.size());
+    }
+
+    private static long hash(String key) {
+        long hash = ConsistentHashRing.hash(key, SEED);
+        return hash == NO_KEY ? 1 : hash;
+    }
+}
@@ -0,0 +1,125 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.service.BackendInstance;
+import com.coda.routingapi.service.RoutingTable;
+
+import java.util.Arrays;
+
+/**
+ * Immutable hash ring over one {@link RoutingTable}: each instance owns {@code virtualNodes * weight} points,
+ * placed by hashing its base URL, and a key belongs to the first point at or after its hash. Points depend only
+ * on the instance, so when an instance leaves the table just the keys it owned move, to the next points along
+ * the ring, and an instance that comes back gets exactly those keys back.
+ *
+ * <p>Lookup is a binary search over two primitive arrays and allocates nothing.
+ */
+public final class ConsistentHashRing {
+
+    private static final long OWNER_MASK = 0xffff;
+
+    static final ConsistentHashRing EMPTY = new ConsistentHashRing(RoutingTable.EMPTY, new long[0], new int[0]);
+
+    private final RoutingTable table;
+    private final long[] points;
+    private final int[] owners;
+
+    private ConsistentHashRing(RoutingTable table, long[] points, int[] owners) {
+        this.table = table;
+        this.points = points;
+        this.owners = owners;
+    }
+
+    public static ConsistentHashRing of(RoutingTable table, int virtualNodes) {
+        if (table.size() > OWNER_MASK + 1) {
+            throw new IllegalArgumentException("A ring holds at most " + (OWNER_MASK + 1) + " instances");
+        }
+        int total = 0;
+        for (int i = 0; i < table.size(); i++) {
+            total += virtualNodes * table.get(i).weight();
+        }
+        // the owner rides in the low bits of its point, so one primitive sort orders both
+        long[] packed = new long[total];
+        int n = 0;
+        for (int i = 0; i < table.size(); i++) {
+            BackendInstance instance = table.get(i);
+            int replicas = virtualNodes * instance.weight();
+            for (int replica = 0; replica < replicas; replica++) {
+                packed[n++] = (hash(instance.baseUrl(), replica + 1L) & ~OWNER_MASK) | i;
+            }
+        }
+        Arrays.sort(packed);
+        long[] points = new long[total];
+        int[] owners = new int[total];
+        for (int i = 0; i < total; i++) {
+            points[i] = packed[i] & ~OWNER_MASK;
+            owners[i] = (int) (packed[i] & OWNER_MASK);
+        }
+        return new ConsistentHashRing(table, points, owners);
+    }
+
+    public RoutingTable table() {
+        return table;
+    }
+
+    /**
+     * @return index into {@link #table()} of the instance owning {@code key}
+     */
+    public int owner(long key) {
+        return owners[position(key)];
+    }
+
+    /**
+     * Bounded-load lookup: the key's owner if its in-flight count is below {@code maxLoad}, else the next
+     * instance along the ring that is. Overflow follows the ring, so a hot key spills onto the same few
+     * instances rather than everywhere.
+     *
+     * @param maxLoad 0 or less for plain {@link #owner}
+     */
+    public int select(long key, int maxLoad) {
+        int position = position(key);
+        int owner = owners[position];
+        if (maxLoad <= 0 || table.get(owner).inFlight() < maxLoad) {
+            return owner;
+        }
+        for (int step = 1; step < points.length; step++) {
+            int candidate = owners[(position + step) % points.length];
+            if (candidate != owner && table.get(candidate).inFlight() < maxLoad) {
+                return candidate;
+            }
+        }
+        return owner;
+    }
+
+    private int position(long key) {
+        // first point at or after the key, wrapping past the last one
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (points[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == points.length ? 0 : low;
+    }
+
+    /**
+     * 64-bit FNV-1a of {@code text} seeded with {@code seed}, finished with MurmurHash3's fmix64 so nearby
+     * inputs (URLs differing in a port digit, consecutive replica numbers) land far apart on the ring.
+     */
+    static long hash(CharSequence text, long seed) {
+        long h = 0xcbf29ce484222325L ^ (seed * 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,35 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.service.RoutingTable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the instance with the fewest in-flight requests. The scan starts at a rotating offset so ties
+ * (e.g. an idle fleet) still spread round robin instead of always landing on the first instance.
+ */
+@Component
+@ConditionalOnProperty(name = "routing.load-balancer", havingValue = "least-outstanding")
+public class LeastOutstandingLoadBalancer implements LoadBalancer {
+
+    private final AtomicLong counter = new AtomicLong(0);
+
+    @Override
+    public int select(RoutingTable table) {
+        int size = table.size();
+        int start = (int) Math.floorMod(counter.getAndIncrement(), (long) size);
+        int best = start;
+        int bestInFlight = table.get(start).inFlight();
+        for (int i = 1; i < size && bestInFlight > 0; i++) {
+            int index = (start + i) % size;
+            int inFlight = table.get(index).inFlight();
+            if (inFlight < bestInFlight) {
+                best = index;
+                bestInFlight = inFlight;
+            }
+        }
+        return best;
+    }
+}
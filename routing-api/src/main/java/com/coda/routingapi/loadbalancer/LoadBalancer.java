@@ -0,0 +1,63 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.service.BackendInstance;
+import com.coda.routingapi.service.RoutingTable;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Strategy used by {@code RoutingService} to pick the first instance to try for a request. Fallback attempts
+ * walk the table onward from that index. Implementations are called on the event loop for every request, so
+ * they must not block or allocate.
+ *
+ * <p>The active implementation is chosen with {@code routing.load-balancer}.
+ */
+public interface LoadBalancer {
+
+    /** Routing key of a request that has none. */
+    long NO_KEY = 0;
+
+    /**
+     * @param table the snapshot taken for this request, never empty
+     * @return index into {@code table}
+     */
+    int select(RoutingTable table);
+
+    /**
+     * Like {@link #select(RoutingTable)} for a request carrying a key from {@link #routingKey}. Only strategies
+     * that route by key override this.
+     */
+    default int select(RoutingTable table, long routingKey) {
+        return select(table);
+    }
+
+    /**
+     * Picks the instance for a hedged second attempt, which must not be the one the first attempt went to. By
+     * default this is this strategy's own pick, or the instance after it when that is the primary.
+     *
+     * @param table   the request's snapshot, with at least two instances
+     * @param primary index of the instance the first attempt went to
+     * @return index into {@code table} other than {@code primary}
+     */
+    default int selectHedge(RoutingTable table, int primary) {
+        int index = select(table);
+        return index != primary ? index : (index + 1) % table.size();
+    }
+
+    /**
+     * Extracts the request's routing key, called once per request before {@link #select(RoutingTable, long)}.
+     *
+     * @param header  value of the routing key header, or null
+     * @param payload the parsed body, or null on the passthrough path
+     * @return {@link #NO_KEY} unless this strategy routes by key
+     */
+    default long routingKey(String header, JsonNode payload) {
+        return NO_KEY;
+    }
+
+    /**
+     * Called once per completed attempt (not for cancelled ones) with the time from subscribing to the backend
+     * call until it produced a response or failed. Strategies that do not learn from latency ignore it.
+     */
+    default void onResponse(BackendInstance instance, long latencyNanos, boolean success) {
+    }
+}
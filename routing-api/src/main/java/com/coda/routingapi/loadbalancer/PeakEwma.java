@@ -0,0 +1,53 @@
+package com.coda.routingapi.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Peak-sensitive exponentially weighted moving average of response latency. A sample above the current
+ * estimate replaces it outright, so a degrading instance is penalised on the first slow response; lower samples
+ * are blended in with a weight that depends on the time since the last update, and the estimate decays towards
+ * zero while no samples arrive so an idle instance is eventually probed again.
+ *
+ * <p>The estimate lives in a single {@link AtomicLong} (raw double bits) updated with a CAS loop, so recording
+ * and reading never lock. The timestamp is a separate volatile; a concurrent update can pair a value with a
+ * slightly newer stamp, which only nudges the decay and is fine for a load-balancing heuristic.
+ */
+public final class PeakEwma {
+
+    private final AtomicLong costBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    private volatile long stamp = System.nanoTime();
+
+    /**
+     * @param rttNanos observed latency
+     * @param now      {@link System#nanoTime()} at completion
+     * @param tauNanos decay time constant, i.e. half-life / ln 2
+     */
+    public void observe(double rttNanos, long now, double tauNanos) {
+        while (true) {
+            long bits = costBits.get();
+            double cost = Double.longBitsToDouble(bits);
+            double next;
+            if (rttNanos > cost) {
+                next = rttNanos;
+            } else {
+                double weight = Math.exp(-Math.max(now - stamp, 0L) / tauNanos);
+                next = cost * weight + rttNanos * (1.0 - weight);
+            }
+            if (costBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                stamp = now;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the estimate decayed to {@code now}, in nanoseconds; 0 if nothing was ever observed
+     */
+    public double cost(long now, double tauNanos) {
+        double cost = Double.longBitsToDouble(costBits.get());
+        if (cost == 0.0) {
+            return 0.0;
+        }
+        return cost * Math.exp(-Math.max(now - stamp, 0L) / tauNanos);
+    }
+}
@@ -0,0 +1,61 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.service.BackendInstance;
+import com.coda.routingapi.service.RoutingTable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency-aware selection: each instance is scored as its {@link PeakEwma} latency times (in-flight + 1), and the
+ * better of two random instances wins. An instance that is slow from GC or a noisy neighbour but still passes
+ * its health probe quickly loses its share of traffic, and gets it back as the estimate decays.
+ *
+ * <p>Failed attempts (errors, timeouts) are recorded as at least {@code routing.peak-ewma.failure-penalty} so
+ * an instance that fails fast does not look fast.
+ */
+@Component
+@ConditionalOnProperty(name = "routing.load-balancer", havingValue = "peak-ewma")
+public class PeakEwmaLoadBalancer implements LoadBalancer {
+
+    private final double tauNanos;
+    private final double penaltyNanos;
+
+    public PeakEwmaLoadBalancer(@Value("${routing.peak-ewma.decay-half-life:10s}") Duration decayHalfLife,
+                                @Value("${routing.peak-ewma.failure-penalty:2s}") Duration failurePenalty) {
+        this.tauNanos = decayHalfLife.toNanos() / Math.log(2);
+        this.penaltyNanos = failurePenalty.toNanos();
+    }
+
+    @Override
+    public int select(RoutingTable table) {
+        int size = table.size();
+        if (size == 1) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = (first + 1 + random.nextInt(size - 1)) % size;
+        long now = System.nanoTime();
+        return score(table.get(second), now) < score(table.get(first), now) ? second : first;
+    }
+
+    @Override
+    public void onResponse(BackendInstance instance, long latencyNanos, boolean success) {
+        double sample = success ? latencyNanos : Math.max(latencyNanos, penaltyNanos);
+        instance.peakEwma().observe(sample, System.nanoTime(), tauNanos);
+    }
+
+    double score(BackendInstance instance, long now) {
+        double cost = instance.peakEwma().cost(now, tauNanos);
+        int inFlight = instance.inFlight();
+        if (cost == 0.0 && inFlight > 0) {
+            // never measured but already busy: don't let every request pile onto a cold instance
+            return penaltyNanos + inFlight;
+        }
+        return cost * (inFlight + 1);
+    }
+}
@@ -0,0 +1,30 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.service.RoutingTable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples two distinct instances at random and keeps the one with fewer in-flight requests. Nearly as good as
+ * a full least-outstanding scan, O(1) regardless of fleet size, and avoids the herd effect of every router
+ * chasing the same idlest instance.
+ */
+@Component
+@ConditionalOnProperty(name = "routing.load-balancer", havingValue = "power-of-two-choices")
+public class PowerOfTwoChoicesLoadBalancer implements LoadBalancer {
+
+    @Override
+    public int select(RoutingTable table) {
+        int size = table.size();
+        if (size == 1) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        // second pick from the remaining size - 1 slots so the two are always distinct
+        int second = (first + 1 + random.nextInt(size - 1)) % size;
+        return table.get(second).inFlight() < table.get(first).inFlight() ? second : first;
+    }
+}
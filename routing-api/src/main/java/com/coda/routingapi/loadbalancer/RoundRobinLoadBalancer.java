@@ -0,0 +1,20 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.service.RoutingTable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@ConditionalOnProperty(name = "routing.load-balancer", havingValue = "round-robin", matchIfMissing = true)
+public class RoundRobinLoadBalancer implements LoadBalancer {
+
+    // long so the sequence never wraps into negative indexes
+    private final AtomicLong counter = new AtomicLong(0);
+
+    @Override
+    public int select(RoutingTable table) {
+        return (int) Math.floorMod(counter.getAndIncrement(), (long) table.size());
+    }
+}
@@ -0,0 +1,27 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.service.RoutingTable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Smooth weighted round robin as done by nginx: weights 5,1,1 give a,a,b,a,c,a,a rather than five a's in a row.
+ * The cycle is precomputed on each {@link RoutingTable#weightedSchedule() routing table} and walked with a shared
+ * counter, so picking takes no lock, and requests still holding the previous table during a change each follow
+ * their own table's cycle instead of restarting one.
+ */
+@Component
+@ConditionalOnProperty(name = "routing.load-balancer", havingValue = "weighted-round-robin")
+public class WeightedRoundRobinLoadBalancer implements LoadBalancer {
+
+    // long so the sequence never wraps into negative indexes
+    private final AtomicLong counter = new AtomicLong(0);
+
+    @Override
+    public int select(RoutingTable table) {
+        int[] schedule = table.weightedSchedule();
+        return schedule[(int) Math.floorMod(counter.getAndIncrement(), (long) schedule.length)];
+    }
+}
@@ -0,0 +1,154 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the requests in flight to each instance at a limit learnt from measured latency, so a traffic spike is
+ * shed at the router instead of queueing inside a backend until everything times out.
+ *
+ * <p>Every instance starts at {@code initial-limit}. Its no-load latency ({@code minRtt}) is learnt from the live
+ * traffic: the lowest latency seen in the current and the previous {@code min-rtt-interval}, counting only
+ * requests completed while the instance was using at most half its limit, as a fuller instance may be queueing.
+ * A backend that got faster is picked up at once and one that got slower for good within two intervals. Every
+ * completed request moves the limit by the latency gradient {@code rtt-tolerance * minRtt / rtt}, clamped to
+ * [0.5, 1]: while latency stays within tolerance the limit grows by {@code queue-size}; once requests start
+ * queueing at the backend, latency rises and the limit shrinks in proportion. New estimates are smoothed in, a
+ * timeout cuts the limit by {@code backoff-ratio}, and the limit only grows while the instance uses at least half
+ * of it.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final ConcurrencyLimitProperties properties;
+    private final AtomicInteger totalInFlight = new AtomicInteger();
+
+    public AdaptiveConcurrencyLimiter(ConcurrencyLimitProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Takes an in-flight slot on the instance if it is under its limit. Every successful call must be paired
+     * with {@link #release}.
+     */
+    public boolean tryAcquire(BackendInstance instance) {
+        if (!properties.isEnabled()) {
+            instance.incrementInFlight();
+        } else if (!instance.tryIncrementInFlight(limit(instance))) {
+            return false;
+        }
+        totalInFlight.incrementAndGet();
+        return true;
+    }
+
+    public void release(BackendInstance instance) {
+        instance.decrementInFlight();
+        totalInFlight.decrementAndGet();
+    }
+
+    /**
+     * Requests in flight across all instances, read in O(1) for load-aware routing.
+     */
+    public int totalInFlight() {
+        return totalInFlight.get();
+    }
+
+    /**
+     * @return true if at least one instance in the table could take another request right now
+     */
+    public boolean hasCapacity(RoutingTable table) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        for (int i = 0; i < table.size(); i++) {
+            BackendInstance instance = table.get(i);
+            if (instance.inFlight() < limit(instance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int limit(BackendInstance instance) {
+        int limit = instance.concurrencyLimit().limit;
+        return limit > 0 ? limit : properties.getInitialLimit();
+    }
+
+    /**
+     * Feeds one completed call into the instance's limit. Called before the call's slot is released, so the
+     * in-flight count still includes it.
+     *
+     * @param dropped true for a timeout, i.e. the backend was too slow to answer at all
+     */
+    public void onSample(BackendInstance instance, long rttNanos, boolean dropped) {
+        onSample(instance, rttNanos, dropped, System.nanoTime());
+    }
+
+    void onSample(BackendInstance instance, long rttNanos, boolean dropped, long now) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        ConcurrencyLimit state = instance.concurrencyLimit();
+        int inFlight = instance.inFlight();
+        int previous;
+        int next;
+        synchronized (state) {
+            if (state.estimate == 0) {
+                state.estimate = properties.getInitialLimit();
+            }
+            previous = state.limit;
+            if (!dropped) {
+                trackMinRtt(state, Math.max(rttNanos, 1), inFlight, now);
+            }
+            adjust(state, rttNanos, dropped, inFlight);
+            next = (int) state.estimate;
+            state.limit = next;
+        }
+        if (next != previous && log.isDebugEnabled()) {
+            log.debug("Concurrency limit of {} changed {} -> {}", instance.baseUrl(), previous, next);
+        }
+    }
+
+    private void trackMinRtt(ConcurrencyLimit state, long rttNanos, int inFlight, long now) {
+        if (now - state.windowEndsAt >= 0 || state.minRttNanos == 0) {
+            state.previousWindowMinRttNanos = state.windowMinRttNanos;
+            state.windowMinRttNanos = Long.MAX_VALUE;
+            state.windowEndsAt = now + properties.getMinRttInterval().toNanos();
+        }
+        // the very first sample is taken whatever the load, so there is a baseline to compare against
+        if (inFlight <= state.estimate / 2 || state.minRttNanos == 0) {
+            state.windowMinRttNanos = Math.min(state.windowMinRttNanos, rttNanos);
+        }
+        long minRtt = Math.min(state.windowMinRttNanos, state.previousWindowMinRttNanos);
+        if (minRtt != Long.MAX_VALUE) {
+            state.minRttNanos = minRtt;
+        }
+    }
+
+    private void adjust(ConcurrencyLimit state, long rttNanos, boolean dropped, int inFlight) {
+        if (dropped) {
+            state.estimate = clamp(state.estimate * properties.getBackoffRatio());
+            return;
+        }
+        if (state.minRttNanos == 0) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0,
+                properties.getRttTolerance() * state.minRttNanos / Math.max(rttNanos, 1)));
+        // an instance that isn't using its limit says nothing about whether it could take more
+        if (gradient == 1.0 && inFlight < state.estimate / 2) {
+            return;
+        }
+        double target = state.estimate * gradient + properties.getQueueSize();
+        double smoothing = properties.getSmoothing();
+        state.estimate = clamp(state.estimate * (1 - smoothing) + target * smoothing);
+    }
+
+    private double clamp(double estimate) {
+        return Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), estimate));
+    }
+}
@@ -0,0 +1,124 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.AdmissionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Global cap on the requests the router works on at once. A request over the cap is rejected on the spot with
+ * {@link #rejectStatus()} and a {@code Retry-After}, never queued: queueing only moves the overload into the
+ * router and adds latency to the requests that do get through. Each {@link Priority} may only fill its share of
+ * the cap, so as the router fills up low-priority requests are shed first and the last slots stay free for
+ * critical ones. Rejections are counted in {@code routing.admission.shed}, tagged by priority.
+ *
+ * <p>The priority is the server's to give: a client is admitted at the class configured for it in
+ * {@code client-priorities}, and its own {@code priority-header} can only lower that, so a noisy client can't
+ * declare itself critical and take the slots kept for critical traffic.
+ */
+@Component
+public class AdmissionGate {
+
+    private final AdmissionProperties properties;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter[] shed = new Counter[Priority.values().length];
+    private final Map<String, Priority> clientPriorities = new HashMap<>();
+
+    public AdmissionGate(AdmissionProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        properties.getClientPriorities().forEach((client, priority) -> {
+            try {
+                clientPriorities.put(client, Priority.valueOf(priority.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("routing.admission.client-priorities for " + client
+                        + " must be critical, normal or low, not " + priority);
+            }
+        });
+        for (Priority priority : Priority.values()) {
+            shed[priority.ordinal()] = Counter.builder("routing.admission.shed")
+                    .tag("priority", priority.name().toLowerCase())
+                    .description("Requests shed by the admission gate")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * The class {@code request} from {@code client} is admitted at: the one configured for the client,
+     * {@link Priority#NORMAL} if none is, or lower if the request's {@code priority-header} asks for it.
+     *
+     * @param client the client's key, as {@link ClientRateLimiter#clientKey} gives it
+     */
+    public Priority priority(ServerHttpRequest request, String client) {
+        Priority granted = clientPriorities.getOrDefault(client, Priority.NORMAL);
+        String header = request.getHeaders().getFirst(properties.getPriorityHeader());
+        if (header == null) {
+            return granted;
+        }
+        Priority declared = Priority.of(header);
+        return declared.compareTo(granted) > 0 ? declared : granted;
+    }
+
+    /**
+     * {@link #tryAcquire(Priority)} at {@link Priority#NORMAL}.
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(Priority.NORMAL);
+    }
+
+    /**
+     * @return true if admitted, in which case {@link #release()} must follow once the request completes
+     */
+    public boolean tryAcquire(Priority priority) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        int max = properties.getMaxInFlight();
+        if (max <= 0) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        int limit = limit(priority, max);
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                shed[priority.ordinal()].increment();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    public void release() {
+        if (properties.isEnabled()) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private int limit(Priority priority, int max) {
+        return switch (priority) {
+            case CRITICAL -> max;
+            case NORMAL -> Math.max(1, (int) (max * properties.getNormalShare()));
+            case LOW -> Math.max(1, (int) (max * properties.getLowShare()));
+        };
+    }
+
+    public HttpStatus rejectStatus() {
+        return HttpStatus.valueOf(properties.getRejectStatus());
+    }
+
+    public String retryAfter() {
+        return String.valueOf(Math.max(1, properties.getRetryAfter().toSeconds()));
+    }
+}
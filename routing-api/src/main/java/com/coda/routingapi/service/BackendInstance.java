@@ -0,0 +1,225 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import com.coda.routingapi.loadbalancer.PeakEwma;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Long-lived state for one registered application-api instance. Created when the instance joins the fleet and
+ * shared by every {@link RoutingTable} it appears in, so its circuit breaker and counters survive health flips
+ * and changes to the rest of the fleet.
+ */
+@Slf4j
+public final class BackendInstance {
+
+    private final String baseUrl;
+    private final URI echoUri;
+    private final URI batchUri;
+    private final URI healthUri;
+    private volatile int weight;
+    private volatile Map<String, String> metadata = Map.of();
+    private final CircuitBreaker circuitBreaker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final PeakEwma peakEwma = new PeakEwma();
+    private final OutlierState outlierState = new OutlierState();
+    private final ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final InstanceMetrics metrics;
+    private volatile boolean healthy;
+    private volatile boolean draining;
+
+    /**
+     * @param registry where the instance's meters are registered; they are removed again when it leaves the fleet
+     */
+    public BackendInstance(String baseUrl, int weight, CircuitBreakerProperties circuitBreakerProperties,
+                           MeterRegistry registry) {
+        checkWeight(baseUrl, weight);
+        this.baseUrl = baseUrl;
+        this.weight = weight;
+        String root = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.echoUri = URI.create(root + "/api/echo");
+        this.batchUri = URI.create(root + "/api/echo/batch");
+        this.healthUri = URI.create(root + "/actuator/health");
+        this.circuitBreaker = createCircuitBreaker(baseUrl, circuitBreakerProperties);
+        this.metrics = new InstanceMetrics(registry, this);
+        circuitBreaker.getEventPublisher().onCallNotPermitted(event -> metrics.recordNotPermitted());
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    public URI echoUri() {
+        return echoUri;
+    }
+
+    public URI batchUri() {
+        return batchUri;
+    }
+
+    public URI healthUri() {
+        return healthUri;
+    }
+
+    public int weight() {
+        return weight;
+    }
+
+    void weight(int weight) {
+        checkWeight(baseUrl, weight);
+        this.weight = weight;
+    }
+
+    /** Free-form labels from the registry (zone, version, ...); not used for routing. */
+    public Map<String, String> metadata() {
+        return metadata;
+    }
+
+    void metadata(Map<String, String> metadata) {
+        this.metadata = Map.copyOf(metadata);
+    }
+
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * @return true if this call changed the health state, i.e. the routing table needs rebuilding
+     */
+    boolean markHealthy(boolean healthy) {
+        if (this.healthy == healthy) {
+            return false;
+        }
+        this.healthy = healthy;
+        return true;
+    }
+
+    /**
+     * Requests currently on the wire to this instance. Incremented when an attempt subscribes to the backend
+     * call and decremented on every terminal signal, including timeout and cancellation.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public void incrementInFlight() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Increments in-flight only if that keeps it within {@code limit}.
+     */
+    public boolean tryIncrementInFlight(int limit) {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    public void decrementInFlight() {
+        inFlight.decrementAndGet();
+    }
+
+    public PeakEwma peakEwma() {
+        return peakEwma;
+    }
+
+    public OutlierState outlierState() {
+        return outlierState;
+    }
+
+    public ConcurrencyLimit concurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public InstanceMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Draining instances get no new requests but keep serving the ones they have. See {@link BackendRegistry}.
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    void draining(boolean draining) {
+        this.draining = draining;
+    }
+
+    /**
+     * Routable means passing active health checks, not currently ejected by the {@link OutlierDetector} and not
+     * draining.
+     */
+    public boolean isRoutable() {
+        return healthy && !draining && !outlierState.isEjected();
+    }
+
+    public void recordRequest() {
+        requests.increment();
+    }
+
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl;
+    }
+
+    private static void checkWeight(String baseUrl, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight of " + baseUrl + " must be at least 1, was " + weight);
+        }
+    }
+
+    private static CircuitBreaker createCircuitBreaker(String baseUrl, CircuitBreakerProperties properties) {
+        CircuitBreaker circuitBreaker = CircuitBreaker.of(baseUrl, CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .waitDurationInOpenState(properties.getWaitDurationInOpenState())
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .permittedNumberOfCallsInHalfOpenState(properties.getPermittedNumberOfCallsInHalfOpenState())
+                // the caller's deadline ran out or the request never left the router, not the instance's fault
+                .ignoreExceptions(DeadlineExceededException.class, OverloadedException.class)
+                .build());
+
+        //just to log CB events here
+        circuitBreaker.getEventPublisher()
+                .onStateTransition(event ->
+                        log.info("CircuitBreaker '{}' transitioned from {} → {}",
+                                event.getCircuitBreakerName(),
+                                event.getStateTransition().getFromState(),
+                                event.getStateTransition().getToState()))
+                .onCallNotPermitted(event ->
+                        log.info("CircuitBreaker '{}' is OPEN, call not permitted", event.getCircuitBreakerName()))
+                .onError(event ->
+                        log.error("CircuitBreaker '{}' recorded error: {}", event.getCircuitBreakerName(), event.getThrowable().toString()));
+        return circuitBreaker;
+    }
+}
@@ -0,0 +1,194 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.BackendRegistryProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Changes the backend fleet while the router runs, through the {@code backends} actuator endpoint or the file at
+ * {@code routing.backends.file}. Weight and metadata changes keep the instance, so its circuit breaker, latency
+ * history and connection pool carry on. Removal drains first: the instance leaves the routing table at once and
+ * is dropped from the fleet when its in-flight requests have finished, or after {@code drain-timeout}. Every
+ * change goes out as a new {@link RoutingTable}, so the request path still reads a single volatile field.
+ */
+@Component
+@Slf4j
+public class BackendRegistry {
+
+    private static final Duration DRAIN_POLL_INTERVAL = Duration.ofMillis(50);
+
+    private final HealthCheckService healthCheckService;
+    private final BackendRegistryProperties properties;
+    private final ObjectMapper mapper;
+    private final Set<BackendInstance> removing = ConcurrentHashMap.newKeySet();
+    private FileTime fileModified;
+
+    /**
+     * One entry of the backends file. Weight defaults to 1.
+     */
+    public record Backend(String url, Integer weight, Map<String, String> metadata) {
+    }
+
+    public enum Removal {
+        /** Every in-flight request finished before the instance was dropped. */
+        DRAINED,
+        /** Dropped at {@code drain-timeout} with requests still in flight; they run to completion regardless. */
+        DRAIN_TIMEOUT,
+        /** Registered again while draining, so it stayed. */
+        CANCELLED
+    }
+
+    public BackendRegistry(HealthCheckService healthCheckService, BackendRegistryProperties properties,
+                           ObjectMapper mapper) {
+        this.healthCheckService = healthCheckService;
+        this.properties = properties;
+        this.mapper = mapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        watchFile();
+    }
+
+    /**
+     * Adds an instance, or updates a registered one; a null weight or metadata leaves it as it is. Registering an
+     * instance that is being removed cancels the removal. A new instance takes traffic once its first health probe
+     * passes.
+     */
+    public synchronized BackendInstance register(String url, Integer weight, Map<String, String> metadata) {
+        BackendInstance instance = healthCheckService.add(url, weight != null ? weight : 1);
+        if (weight != null && instance.weight() != weight) {
+            instance.weight(weight);
+        }
+        if (metadata != null) {
+            instance.metadata(metadata);
+        }
+        if (removing.remove(instance)) {
+            instance.draining(false);
+            log.info("Cancelled removal of {}", url);
+        }
+        healthCheckService.refreshRoutingTable();
+        return instance;
+    }
+
+    /**
+     * Takes an instance out of rotation, or puts it back, without removing it.
+     *
+     * @return false if no such instance is registered
+     */
+    public synchronized boolean setDraining(String url, boolean draining) {
+        BackendInstance instance = healthCheckService.getInstance(url);
+        if (instance == null) {
+            return false;
+        }
+        if (instance.isDraining() != draining) {
+            instance.draining(draining);
+            if (!draining) {
+                removing.remove(instance);
+            }
+            healthCheckService.refreshRoutingTable();
+            log.info("{} {}", draining ? "Draining" : "Undrained", url);
+        }
+        return true;
+    }
+
+    /**
+     * Drains an instance and then drops it from the fleet. Empty if no such instance is registered.
+     */
+    public Mono<Removal> deregister(String url) {
+        BackendInstance instance;
+        synchronized (this) {
+            instance = healthCheckService.getInstance(url);
+            if (instance == null) {
+                return Mono.empty();
+            }
+            removing.add(instance);
+            instance.draining(true);
+            healthCheckService.refreshRoutingTable();
+        }
+        log.info("Removing {} after {} in-flight requests finish", url, instance.inFlight());
+        return Flux.interval(Duration.ZERO, DRAIN_POLL_INTERVAL)
+                .filter(tick -> instance.inFlight() == 0 || !removing.contains(instance))
+                .next()
+                .map(tick -> true)
+                .timeout(properties.getDrainTimeout(), Mono.just(false))
+                .map(drained -> finishRemoval(instance, drained));
+    }
+
+    /**
+     * Applies the backends file if it changed since the last look: listed instances are registered with the
+     * listed weight and metadata, and instances missing from it are removed. A file that can't be read or parsed
+     * is ignored until it changes again.
+     */
+    @Scheduled(fixedDelayString = "${routing.backends.watch-interval:2000}")
+    public synchronized void watchFile() {
+        Path file = properties.getFile();
+        if (file == null) {
+            return;
+        }
+        List<Backend> backends;
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.equals(fileModified)) {
+                return;
+            }
+            fileModified = modified;
+            backends = mapper.readValue(file.toFile(), new TypeReference<List<Backend>>() { });
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            log.warn("Ignoring backends file {}: {}", file, e.getMessage());
+            return;
+        }
+        apply(backends);
+    }
+
+    private void apply(List<Backend> backends) {
+        Set<String> listed = new HashSet<>();
+        for (Backend backend : backends) {
+            if (backend.url() == null || backend.url().isBlank()) {
+                log.warn("Ignoring backend without a url in {}", properties.getFile());
+                continue;
+            }
+            listed.add(backend.url());
+            try {
+                register(backend.url(), backend.weight() != null ? backend.weight() : 1,
+                        backend.metadata() != null ? backend.metadata() : Map.of());
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring backend {}: {}", backend.url(), e.getMessage());
+            }
+        }
+        for (BackendInstance instance : healthCheckService.getAllInstances()) {
+            if (!listed.contains(instance.baseUrl()) && !removing.contains(instance)) {
+                deregister(instance.baseUrl())
+                        .subscribe(removal -> log.info("Removed {}: {}", instance.baseUrl(), removal));
+            }
+        }
+    }
+
+    private synchronized Removal finishRemoval(BackendInstance instance, boolean drained) {
+        if (!removing.remove(instance)) {
+            return Removal.CANCELLED;
+        }
+        healthCheckService.remove(instance);
+        return drained ? Removal.DRAINED : Removal.DRAIN_TIMEOUT;
+    }
+}
@@ -0,0 +1,244 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Opt-in per-client rate limit, so one noisy client can't use up the router before the admission gate and circuit
+ * breakers react. Each client gets a token bucket of {@code burst} requests refilled at {@code rate} per second,
+ * kept as a single theoretical arrival time (GCRA) rather than a token count and a refill stamp.
+ *
+ * <p>Clients are spread over {@value #STRIPES} independently locked stripes, each an open-addressing table of
+ * primitive slots bounded at its share of {@code max-clients}. A full stripe evicts by CLOCK, an approximation of
+ * LRU that only sets a bit on a hit instead of relinking a list, so a check for a known client is one short lock
+ * hold over a couple of cache lines and allocates nothing. Rejections are counted in {@code routing.rate.limited}.
+ */
+@Component
+public class ClientRateLimiter {
+
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final String UNKNOWN_CLIENT = "unknown";
+
+    private final RateLimitProperties properties;
+    private final LongSupplier nanoClock;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final Stripe[] stripes;
+    private final Counter limited;
+
+    @Autowired
+    public ClientRateLimiter(RateLimitProperties properties, MeterRegistry registry) {
+        this(properties, registry, System::nanoTime);
+    }
+
+    ClientRateLimiter(RateLimitProperties properties, MeterRegistry registry, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        if (!properties.isEnabled()) {
+            this.intervalNanos = 0;
+            this.toleranceNanos = 0;
+            this.stripes = null;
+            this.limited = null;
+            return;
+        }
+        if (properties.getRate() <= 0 || properties.getBurst() < 1 || properties.getMaxClients() < 1) {
+            throw new IllegalArgumentException("routing.rate-limit needs rate > 0, burst >= 1 and max-clients >= 1");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / properties.getRate()));
+        this.toleranceNanos = intervalNanos * (properties.getBurst() - 1);
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(Math.max(1, properties.getMaxClients() / STRIPES));
+        }
+        this.limited = Counter.builder("routing.rate.limited")
+                .description("Requests rejected by the per-client rate limit")
+                .register(registry);
+        Gauge.builder("routing.rate.limit.clients", this, ClientRateLimiter::trackedClients)
+                .description("Clients the rate limiter is tracking")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return stripes != null;
+    }
+
+    /**
+     * The client a request is counted against: the {@code client-header} value, else the remote address.
+     */
+    public String clientKey(ServerHttpRequest request) {
+        String header = request.getHeaders().getFirst(properties.getClientHeader());
+        if (header != null && !header.isEmpty()) {
+            return header;
+        }
+        InetSocketAddress remote = request.getRemoteAddress();
+        if (remote == null) {
+            return UNKNOWN_CLIENT;
+        }
+        return remote.getAddress() != null ? remote.getAddress().getHostAddress() : remote.getHostString();
+    }
+
+    /**
+     * {@link #tryAcquire(String)} for the request's {@link #clientKey client}.
+     */
+    public long tryAcquire(ServerHttpRequest request) {
+        return stripes == null ? 0 : tryAcquire(clientKey(request));
+    }
+
+    /**
+     * Takes one request from the client's bucket.
+     *
+     * @return 0 if admitted, otherwise how long until the client's next request would be, in nanoseconds
+     */
+    public long tryAcquire(String client) {
+        if (stripes == null) {
+            return 0;
+        }
+        int hash = spread(client.hashCode());
+        long wait = stripes[hash >>> (32 - STRIPE_BITS)]
+                .acquire(client, hash, nanoClock.getAsLong(), intervalNanos, toleranceNanos);
+        if (wait > 0) {
+            limited.increment();
+        }
+        return wait;
+    }
+
+    /**
+     * {@code Retry-After} value, in whole seconds, for a rejection {@link #tryAcquire} returned.
+     */
+    public static String retryAfter(long waitNanos) {
+        return String.valueOf(Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000));
+    }
+
+    long trackedClients() {
+        long clients = 0;
+        for (Stripe stripe : stripes) {
+            clients += stripe.size();
+        }
+        return clients;
+    }
+
+    /** MurmurHash3's fmix32: String hashes of similar keys differ only in their low bits. */
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Linear-probing table of at most {@code capacity} clients, kept at most half full. Slot {@code i} is
+     * {@code keys[i]} plus two longs in {@code slots}: the key's hash with the CLOCK reference bit, then its
+     * theoretical arrival time, so a probe reads the hash and the bucket from the same cache line.
+     */
+    private static final class Stripe {
+
+        private static final long REFERENCED = 1;
+
+        private final int capacity;
+        private final int mask;
+        private final String[] keys;
+        private final long[] slots;
+        private int size;
+        private int hand;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            int length = Integer.highestOneBit(2 * capacity - 1) << 1;
+            this.mask = length - 1;
+            this.keys = new String[length];
+            this.slots = new long[2 * length];
+        }
+
+        synchronized long acquire(String client, int hash, long now, long intervalNanos, long toleranceNanos) {
+            int i = find(client, hash);
+            if (i >= 0) {
+                slots[2 * i] |= REFERENCED;
+            } else {
+                if (size == capacity) {
+                    evict();
+                }
+                i = insert(client, hash);
+            }
+            long start = Math.max(slots[2 * i + 1], now);
+            long ahead = start - now;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            slots[2 * i + 1] = start + intervalNanos;
+            return 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private int find(String client, int hash) {
+            for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+                if ((int) (slots[2 * i] >>> 32) == hash && keys[i].equals(client)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** New clients start unreferenced, so a burst of one-off keys is the first to go. */
+        private int insert(String client, int hash) {
+            int i = hash & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = client;
+            slots[2 * i] = (long) hash << 32;
+            slots[2 * i + 1] = Long.MIN_VALUE;
+            size++;
+            return i;
+        }
+
+        /** CLOCK: clears reference bits as the hand passes and evicts the first client found without one. */
+        private void evict() {
+            while (true) {
+                int i = hand;
+                hand = (hand + 1) & mask;
+                if (keys[i] == null) {
+                    continue;
+                }
+                if ((slots[2 * i] & REFERENCED) != 0) {
+                    slots[2 * i] &= ~REFERENCED;
+                    continue;
+                }
+                remove(i);
+                return;
+            }
+        }
+
+        /** Backward-shift deletion, so probe chains stay unbroken without tombstones. */
+        private void remove(int gap) {
+            for (int j = (gap + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+                int home = (int) (slots[2 * j] >>> 32) & mask;
+                // the client at j may fill the gap only if the gap lies between its home slot and j
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    slots[2 * gap] = slots[2 * j];
+                    slots[2 * gap + 1] = slots[2 * j + 1];
+                    gap = j;
+                }
+            }
+            keys[gap] = null;
+            slots[2 * gap] = 0;
+            slots[2 * gap + 1] = 0;
+            size--;
+        }
+    }
+}
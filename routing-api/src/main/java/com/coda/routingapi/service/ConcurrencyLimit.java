@@ -0,0 +1,28 @@
+package com.coda.routingapi.service;
+
+/**
+ * Per-instance state the {@link AdaptiveConcurrencyLimiter} keeps for one {@link BackendInstance}. The limit is
+ * published through a volatile for the admission check; everything behind it is guarded by this object.
+ */
+public final class ConcurrencyLimit {
+
+    // 0 until the limiter first touches the instance and applies the configured initial limit
+    volatile int limit;
+
+    double estimate;
+    // 0 until the first sample
+    long minRttNanos;
+
+    // minRtt is the lower of the current window's minimum and the one before it
+    long windowMinRttNanos = Long.MAX_VALUE;
+    long previousWindowMinRttNanos = Long.MAX_VALUE;
+    long windowEndsAt;
+
+    public int limit() {
+        return limit;
+    }
+
+    public long minRttNanos() {
+        return minRttNanos;
+    }
+}
@@ -0,0 +1,31 @@
+package com.coda.routingapi.service;
+
+import java.time.Duration;
+
+/**
+ * Point in time by which a request must be answered, fixed when it arrives and shared by every attempt made for
+ * it. Travels between services as the remaining time in milliseconds, so clocks never need to agree.
+ */
+public final class Deadline {
+
+    /** Remaining time in milliseconds, read from clients and sent on to backends. */
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(expiresAtNanos - System.nanoTime(), 0));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+}
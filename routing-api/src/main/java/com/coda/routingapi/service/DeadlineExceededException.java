@@ -0,0 +1,11 @@
+package com.coda.routingapi.service;
+
+/**
+ * The request's {@link Deadline} passed before any instance answered.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
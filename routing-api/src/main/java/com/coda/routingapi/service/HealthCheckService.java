@@ -1,58 +1,391 @@
 package com.coda.routingapi.service;
 
+import com.coda.routingapi.config.BackendClientConfiguration;
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import com.coda.routingapi.config.HealthCheckProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.client.reactive.ClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Active health checking. Every instance runs its own probe schedule: the slow {@code healthcheck.interval} while
+ * it is healthy and agreeing, the fast {@code unhealthy-interval} while it is unhealthy or a failure streak is
+ * under way, each delay jittered so instances never probe in lockstep. Probes from all instances go through one
+ * queue drained with at most {@code max-concurrency} in flight. State only flips after
+ * {@code healthy-threshold} / {@code unhealthy-threshold} consecutive results (the very first result is taken as
+ * is), and each flip is published as an {@link InstanceHealthChangedEvent}.
+ *
+ * <p>The fleet starts as {@code application.api.instances} and changes through {@link BackendRegistry}. Every
+ * change replaces the instance list and lookup map as a whole, so readers never lock. {@link #firstSweep()} tells
+ * when every instance has had its first result, which readiness waits for.
+ */
 @Component
 @Slf4j
 public class HealthCheckService {
 
     private final WebClient webClient;
-    private final List<String> allInstances;
+    private final HealthCheckProperties properties;
+    private final CircuitBreakerProperties circuitBreakerProperties;
+    private final MeterRegistry registry;
+    private final ApplicationEventPublisher eventPublisher;
+    // Replaced as a whole under the service's lock whenever an instance joins or leaves
+    private volatile List<BackendInstance> allInstances;
+    private volatile Map<String, Prober> probers;
+
+    private final Sinks.Many<Prober> probeQueue = Sinks.many().unicast().onBackpressureBuffer();
+    private final Disposable probeWorker;
+    private volatile boolean running;
 
-    //TODO: do i need concurrency right now
-    private final Set<String> healthyInstances = new ConcurrentSkipListSet<>();
+    // Rebuilt only on health transitions; readers never lock or copy
+    private volatile RoutingTable routingTable = RoutingTable.EMPTY;
 
+    private final Sinks.Empty<Void> firstSweep = Sinks.empty();
+    private volatile boolean swept;
+
+    /**
+     * Probes through {@code connector} rather than the builder's own, so they don't queue behind routed requests
+     * for a connection.
+     */
+    @Autowired
     public HealthCheckService(WebClient.Builder builder,
-                              @Value("#{'${application.api.instances}'.split(',')}") List<String> instances) {
-        this.webClient = builder.build();
-        this.allInstances = instances;
+                              @Qualifier(BackendClientConfiguration.HEALTH_CHECK_CONNECTOR)
+                              ClientHttpConnector connector,
+                              @Value("#{'${application.api.instances}'.split(',')}") List<String> instances,
+                              @Value("${application.api.weights:}") List<Integer> weights,
+                              HealthCheckProperties properties,
+                              CircuitBreakerProperties circuitBreakerProperties,
+                              ApplicationEventPublisher eventPublisher,
+                              MeterRegistry registry) {
+        this(builder.clone().clientConnector(connector).build(), instances, weights, properties,
+                circuitBreakerProperties, eventPublisher, registry);
+    }
+
+    /**
+     * @param weights optional, one per instance in the same order; missing entries default to 1
+     */
+    public HealthCheckService(WebClient webClient,
+                              List<String> instances,
+                              List<Integer> weights,
+                              HealthCheckProperties properties,
+                              CircuitBreakerProperties circuitBreakerProperties,
+                              ApplicationEventPublisher eventPublisher,
+                              MeterRegistry registry) {
+        this.webClient = webClient;
+        this.properties = properties;
+        this.circuitBreakerProperties = circuitBreakerProperties;
+        this.eventPublisher = eventPublisher;
+        this.registry = registry;
+        List<BackendInstance> backends = new ArrayList<>(instances.size());
+        for (int i = 0; i < instances.size(); i++) {
+            backends.add(new BackendInstance(instances.get(i), i < weights.size() ? weights.get(i) : 1,
+                    circuitBreakerProperties, registry));
+        }
+        this.allInstances = List.copyOf(backends);
+        Map<String, Prober> initialProbers = new LinkedHashMap<>();
+        for (BackendInstance instance : allInstances) {
+            initialProbers.put(instance.baseUrl(), new Prober(instance));
+        }
+        this.probers = Collections.unmodifiableMap(initialProbers);
+        Gauge.builder("routing.instances.routable", this, service -> service.routingTable.size())
+                .description("Instances currently in the routing table: healthy, not ejected and not draining")
+                .register(registry);
+        Gauge.builder("routing.instances.configured", this, service -> service.allInstances.size())
+                .description("Instances in the backend registry")
+                .register(registry);
+        this.probeWorker = probeQueue.asFlux()
+                .flatMap(prober -> prober.probe(true), properties.getMaxConcurrency())
+                .subscribe();
     }
 
+    /**
+     * Starts every instance's schedule with an immediate first probe.
+     */
     @PostConstruct
-    @Scheduled(fixedDelayString = "${healthcheck.interval:60000}")
-    public void init() {
-        for (String baseUrl : allInstances) {
-            String healthUrl = baseUrl + "/actuator/health";
-            webClient.get()
-                    .uri(healthUrl)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(2))
-                    .subscribe(
-                            response -> {
-                                healthyInstances.add(baseUrl);
-                                log.info("{} is healthy", baseUrl);
-                            },
-                            error -> {
-                                healthyInstances.remove(baseUrl);
-                                log.error("{} is unhealthy: {}", baseUrl, error.getMessage());
-                            }
-                    );
+    public void start() {
+        running = true;
+        for (Prober prober : probers.values()) {
+            prober.schedule(Duration.ZERO);
         }
+        checkFirstSweep();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        probers.values().forEach(Prober::cancel);
+        probeWorker.dispose();
+    }
+
+    /**
+     * Probes every instance once, outside the regular schedules.
+     */
+    public void init() {
+        sweep().subscribe();
+    }
+
+    /**
+     * One probe of every instance with at most {@code max-concurrency} in flight; completes when all results
+     * are applied.
+     */
+    public Mono<Void> sweep() {
+        return Flux.fromIterable(probers.values())
+                .flatMap(prober -> prober.probe(false), properties.getMaxConcurrency())
+                .then();
+    }
+
+    /**
+     * Completes once every instance in the fleet has had its first probe result, healthy or not, so the routing
+     * table reflects the backends rather than the empty table the service starts with. Instances that join later
+     * hold it back only until then; one removed before its first result no longer counts.
+     */
+    public Mono<Void> firstSweep() {
+        return firstSweep.asMono();
     }
 
     public List<String> getHealthyInstances() {
-        return List.copyOf(healthyInstances);
+        return routingTable.baseUrls();
+    }
+
+    public RoutingTable getRoutingTable() {
+        return routingTable;
+    }
+
+    public List<BackendInstance> getAllInstances() {
+        return allInstances;
+    }
+
+    public BackendInstance getInstance(String baseUrl) {
+        Prober prober = probers.get(baseUrl);
+        return prober != null ? prober.instance : null;
     }
-}
 
+    /**
+     * Adds an instance to the fleet. It gets its first probe straight away and only becomes routable once that
+     * succeeds. Returns the existing instance if one with this URL is already registered.
+     */
+    synchronized BackendInstance add(String baseUrl, int weight) {
+        Prober existing = probers.get(baseUrl);
+        if (existing != null) {
+            return existing.instance;
+        }
+        BackendInstance instance = new BackendInstance(baseUrl, weight, circuitBreakerProperties, registry);
+        Prober prober = new Prober(instance);
+        Map<String, Prober> updated = new LinkedHashMap<>(probers);
+        updated.put(baseUrl, prober);
+        List<BackendInstance> instances = new ArrayList<>(allInstances);
+        instances.add(instance);
+        probers = Collections.unmodifiableMap(updated);
+        allInstances = List.copyOf(instances);
+        prober.schedule(Duration.ZERO);
+        return instance;
+    }
+
+    /**
+     * Takes an instance out of the fleet and the routing table at once, stops its probes and unregisters its
+     * meters. Requests already sent to it run to completion; {@link BackendRegistry} drains it first.
+     */
+    synchronized boolean remove(BackendInstance instance) {
+        Prober prober = probers.get(instance.baseUrl());
+        if (prober == null || prober.instance != instance) {
+            return false;
+        }
+        Map<String, Prober> updated = new LinkedHashMap<>(probers);
+        updated.remove(instance.baseUrl());
+        List<BackendInstance> instances = new ArrayList<>(allInstances);
+        instances.remove(instance);
+        probers = Collections.unmodifiableMap(updated);
+        allInstances = List.copyOf(instances);
+        prober.retire();
+        publishRoutingTable();
+        instance.metrics().close();
+        checkFirstSweep();
+        return true;
+    }
+
+    /**
+     * Rebuilds the routing table after routability changed outside the active probes, e.g. an outlier ejection.
+     */
+    public void refreshRoutingTable() {
+        publishRoutingTable();
+    }
 
+    private synchronized void publishRoutingTable() {
+        List<BackendInstance> instances = allInstances;
+        List<BackendInstance> routable = new ArrayList<>(instances.size());
+        for (BackendInstance instance : instances) {
+            if (instance.isRoutable()) {
+                routable.add(instance);
+            }
+        }
+        routingTable = RoutingTable.of(routable);
+    }
+
+    private void checkFirstSweep() {
+        if (swept || !probers.values().stream().allMatch(prober -> prober.probed)) {
+            return;
+        }
+        synchronized (this) {
+            if (!swept) {
+                swept = true;
+                firstSweep.tryEmitEmpty();
+            }
+        }
+    }
+
+    private Duration jittered(Duration base) {
+        double jitter = properties.getJitter();
+        if (jitter <= 0) {
+            return base;
+        }
+        double factor = 1.0 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return Duration.ofNanos((long) (base.toNanos() * factor));
+    }
+
+    /**
+     * Schedule and consecutive-result bookkeeping for one instance. Results are applied under the prober's lock,
+     * which only contends when a manual sweep overlaps a scheduled probe.
+     */
+    private final class Prober {
+
+        private final BackendInstance instance;
+        private volatile boolean probed;
+        private int consecutiveSuccesses;
+        private int consecutiveFailures;
+        private volatile Disposable scheduled;
+        private volatile boolean retired;
+
+        Prober(BackendInstance instance) {
+            this.instance = instance;
+        }
+
+        void schedule(Duration delay) {
+            if (!running || retired) {
+                return;
+            }
+            scheduled = Schedulers.parallel().schedule(
+                    () -> probeQueue.emitNext(this, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1))),
+                    delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        void cancel() {
+            Disposable task = scheduled;
+            if (task != null) {
+                task.dispose();
+            }
+        }
+
+        /**
+         * Stops the schedule for good; a probe already in flight finishes but changes nothing.
+         */
+        void retire() {
+            retired = true;
+            cancel();
+        }
+
+        /**
+         * @param rearm true for the probe fired by this instance's schedule, which books the next one
+         */
+        Mono<Void> probe(boolean rearm) {
+            return Mono.defer(() -> {
+                long startNanos = System.nanoTime();
+                return webClient.get()
+                        .uri(instance.healthUri())
+                        .retrieve()
+                        .toBodilessEntity()
+                        .timeout(properties.getTimeout())
+                        .thenReturn(ProbeResult.SUCCESS)
+                        .onErrorResume(error -> Mono.just(new ProbeResult(false, error.getMessage())))
+                        // only the probe's own outcome counts; applying it never fails the probe
+                        .doOnNext(result -> {
+                            instance.metrics().recordProbe(result.success(), System.nanoTime() - startNanos);
+                            onResult(result.success(), result.reason(), rearm);
+                        })
+                        .then();
+            });
+        }
+
+        private void onResult(boolean success, String reason, boolean rearm) {
+            boolean settled;
+            InstanceHealthChangedEvent event = null;
+            synchronized (this) {
+                if (success) {
+                    consecutiveSuccesses++;
+                    consecutiveFailures = 0;
+                } else {
+                    consecutiveFailures++;
+                    consecutiveSuccesses = 0;
+                }
+                boolean healthy = instance.isHealthy();
+                if (!probed) {
+                    probed = true;
+                    event = transition(success, reason);
+                } else if (success && !healthy && consecutiveSuccesses >= properties.getHealthyThreshold()) {
+                    event = transition(true, null);
+                } else if (!success && healthy && consecutiveFailures >= properties.getUnhealthyThreshold()) {
+                    event = transition(false, reason);
+                }
+                settled = success && instance.isHealthy();
+            }
+            log.debug("Probe of {} {}", instance.baseUrl(), success ? "succeeded" : "failed: " + reason);
+            if (event != null) {
+                publish(event);
+            }
+            checkFirstSweep();
+            if (rearm) {
+                schedule(jittered(settled ? properties.getInterval() : properties.getUnhealthyInterval()));
+            }
+        }
+
+        /**
+         * Flips the instance and its routing table entry; the event is left for the caller to publish once the
+         * prober's lock is released.
+         */
+        private InstanceHealthChangedEvent transition(boolean healthy, String reason) {
+            if (retired || !instance.markHealthy(healthy)) {
+                return null;
+            }
+            publishRoutingTable();
+            return new InstanceHealthChangedEvent(instance, healthy, reason);
+        }
+
+        /**
+         * A failing listener is logged and otherwise ignored: it must not count against the instance nor stop the
+         * probe schedules, which all run on the one worker.
+         */
+        private void publish(InstanceHealthChangedEvent event) {
+            try {
+                eventPublisher.publishEvent(event);
+            } catch (RuntimeException e) {
+                log.warn("Listener failed on {} going {}", instance.baseUrl(), event.healthy() ? "UP" : "DOWN", e);
+            }
+        }
+    }
+
+    private record ProbeResult(boolean success, String reason) {
+
+        static final ProbeResult SUCCESS = new ProbeResult(true, null);
+    }
+}
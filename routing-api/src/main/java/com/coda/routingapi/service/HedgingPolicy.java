@@ -0,0 +1,76 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.HedgingProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Decides when {@link RoutingService} may send a hedged copy of a request and how long to wait before doing so.
+ * The delay is either fixed or the configured percentile of recent successful attempt latency; the number of
+ * hedges is capped by a {@link RequestBudget} so hedging cannot double the load on an already slow fleet.
+ */
+@Component
+public class HedgingPolicy {
+
+    private static final long MIN_SAMPLES = 100;
+    private static final long DELAY_REFRESH_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final HedgingProperties properties;
+    private final RequestBudget budget;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    private volatile Duration delay;
+    private volatile long delayComputedAt;
+
+    public HedgingPolicy(HedgingProperties properties) {
+        this.properties = properties;
+        this.budget = new RequestBudget(properties.getBudgetPercent() / 100.0, properties.getBudgetBurst());
+        this.delay = properties.getDelay();
+        this.delayComputedAt = System.nanoTime();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /** Every hedge-eligible request earns a fraction of a hedge. */
+    public void onRequest() {
+        budget.deposit();
+    }
+
+    public boolean tryAcquireHedge() {
+        return budget.tryWithdraw();
+    }
+
+    public void recordLatency(long nanos) {
+        if (properties.isEnabled() && properties.getPercentile() > 0) {
+            latencies.record(nanos);
+        }
+    }
+
+    public Duration delay() {
+        if (properties.getPercentile() <= 0) {
+            return properties.getDelay();
+        }
+        long now = System.nanoTime();
+        if (now - delayComputedAt > DELAY_REFRESH_NANOS) {
+            // benign race: two threads may both recompute, each writes a valid value
+            Duration observed = latencies.percentile(properties.getPercentile() / 100.0, MIN_SAMPLES);
+            delay = observed == null ? properties.getDelay()
+                    : observed.compareTo(properties.getMinDelay()) < 0 ? properties.getMinDelay() : observed;
+            delayComputedAt = now;
+        }
+        return delay;
+    }
+
+    public double availableHedges() {
+        return budget.available();
+    }
+
+    @Scheduled(fixedDelay = 5000)
+    public void decayLatencies() {
+        latencies.decay();
+    }
+}
@@ -0,0 +1,10 @@
+package com.coda.routingapi.service;
+
+/**
+ * Published by {@link HealthCheckService} when an instance's active health state flips. Instances start out
+ * unhealthy, so the first successful probe after startup is a transition too.
+ *
+ * @param reason probe error message when going unhealthy, {@code null} otherwise
+ */
+public record InstanceHealthChangedEvent(BackendInstance instance, boolean healthy, String reason) {
+}
@@ -0,0 +1,122 @@
+package com.coda.routingapi.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for one {@link BackendInstance}, registered once when the instance is created and held by it, so
+ * recording is a field read and an increment with no registry lookup per request. The only tag that varies is
+ * {@code instance}, bounded by the fleet: an instance's meters are removed when it leaves the registry.
+ *
+ * <p>Latency timers publish cumulative buckets at fixed SLO boundaries rather than client-side percentiles, so
+ * they aggregate across routers in Prometheus ({@code histogram_quantile}).
+ */
+public final class InstanceMetrics {
+
+    static final Duration[] LATENCY_SLOS = {
+            Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50),
+            Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1),
+            Duration.ofMillis(2500), Duration.ofSeconds(5)
+    };
+
+    private final Timer success;
+    private final Timer failure;
+    private final Counter skipped;
+    private final Counter fallbacks;
+    private final Counter notPermitted;
+    private final Timer probeUp;
+    private final Timer probeDown;
+    private final MeterRegistry registry;
+    private final List<Meter> meters = new ArrayList<>();
+
+    InstanceMetrics(MeterRegistry registry, BackendInstance instance) {
+        this.registry = registry;
+        Tags tags = Tags.of("instance", instance.baseUrl());
+        this.success = latency("routing.backend.requests", "Attempts sent to the instance, by outcome",
+                tags.and("outcome", "success"));
+        this.failure = latency("routing.backend.requests", "Attempts sent to the instance, by outcome",
+                tags.and("outcome", "failure"));
+        this.skipped = track(Counter.builder("routing.backend.skipped")
+                .description("Attempts not sent because the instance was at its concurrency limit or out of connections")
+                .tags(tags)
+                .register(registry));
+        this.fallbacks = track(Counter.builder("routing.backend.fallbacks")
+                .description("Attempts that reached the instance after another instance failed or was skipped")
+                .tags(tags)
+                .register(registry));
+        this.notPermitted = track(Counter.builder("routing.circuit.breaker.not.permitted")
+                .description("Attempts rejected by the instance's open circuit breaker")
+                .tags(tags)
+                .register(registry));
+        this.probeUp = latency("routing.health.probes", "Active health probes, by result",
+                tags.and("result", "up"));
+        this.probeDown = latency("routing.health.probes", "Active health probes, by result",
+                tags.and("result", "down"));
+        track(Gauge.builder("routing.backend.in.flight", instance, BackendInstance::inFlight)
+                .description("Requests on the wire to the instance")
+                .tags(tags)
+                .register(registry));
+        for (CircuitBreaker.State state : new CircuitBreaker.State[]{
+                CircuitBreaker.State.CLOSED, CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN}) {
+            track(Gauge.builder("routing.circuit.breaker.state", instance,
+                            i -> i.circuitBreaker().getState() == state ? 1 : 0)
+                    .description("1 for the circuit breaker's current state, 0 for the others")
+                    .tags(tags.and("state", state.name().toLowerCase()))
+                    .register(registry));
+        }
+    }
+
+    void recordSuccess(long latencyNanos) {
+        success.record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordFailure(long latencyNanos) {
+        failure.record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordSkipped() {
+        skipped.increment();
+    }
+
+    void recordFallback() {
+        fallbacks.increment();
+    }
+
+    void recordNotPermitted() {
+        notPermitted.increment();
+    }
+
+    void recordProbe(boolean up, long latencyNanos) {
+        (up ? probeUp : probeDown).record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Unregisters every meter, so an instance that left the fleet stops being exported.
+     */
+    void close() {
+        meters.forEach(registry::remove);
+    }
+
+    private Timer latency(String name, String description, Tags tags) {
+        return track(Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .serviceLevelObjectives(LATENCY_SLOS)
+                .register(registry));
+    }
+
+    private <M extends Meter> M track(M meter) {
+        meters.add(meter);
+        return meter;
+    }
+}
@@ -0,0 +1,72 @@
+package com.coda.routingapi.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Small lock-free log-linear histogram of latencies in microseconds: power-of-two ranges split into four
+ * sub-buckets, so any value is reported within ~25%. Good enough to derive a hedging delay from a percentile;
+ * {@link #decay()} halves all counts so old traffic fades out.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(nanos / 1000, 0)));
+    }
+
+    /**
+     * @param quantile e.g. 0.95
+     * @return upper bound of the bucket holding that quantile, or {@code null} with fewer than {@code minSamples}
+     */
+    public Duration percentile(double quantile, long minSamples) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total < Math.max(minSamples, 1)) {
+            return null;
+        }
+        long target = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Duration.ofNanos(upperBoundMicros(i) * 1000);
+            }
+        }
+        return Duration.ofNanos(upperBoundMicros(BUCKETS - 1) * 1000);
+    }
+
+    public void decay() {
+        for (int i = 0; i < BUCKETS; i++) {
+            long current;
+            do {
+                current = counts.get(i);
+            } while (current != 0 && !counts.compareAndSet(i, current, current >> 1));
+        }
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+    }
+
+    static long upperBoundMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+}
@@ -0,0 +1,168 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.OutlierDetectionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ejects instances from the routing table based on the outcome of real requests instead of waiting for the next
+ * active health probe. An instance is ejected after too many consecutive failures (5xx, timeouts, connect
+ * errors) or, once per interval, when its success rate falls well below the fleet's. Ejections last
+ * {@code base-ejection-time * 2^(n-1)} for the n-th ejection, and never take out more than
+ * {@code max-ejection-percent} of the instances.
+ *
+ * <p>4xx responses are the caller's problem and count as successes here. Errors that say nothing about the
+ * backend, such as a response that doesn't decode, are ignored: they neither count nor reset a failure streak.
+ */
+@Component
+@Slf4j
+public class OutlierDetector {
+
+    private final HealthCheckService healthCheckService;
+    private final OutlierDetectionProperties properties;
+
+    public OutlierDetector(HealthCheckService healthCheckService, OutlierDetectionProperties properties) {
+        this.healthCheckService = healthCheckService;
+        this.properties = properties;
+    }
+
+    public void onSuccess(BackendInstance instance) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        OutlierState state = instance.outlierState();
+        state.intervalSuccesses.increment();
+        // plain read first so the common all-good path doesn't write a shared cache line
+        if (state.consecutiveFailures.get() != 0) {
+            state.consecutiveFailures.set(0);
+        }
+        if (state.consecutiveConnectFailures.get() != 0) {
+            state.consecutiveConnectFailures.set(0);
+        }
+    }
+
+    public void onFailure(BackendInstance instance, Throwable error) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (error instanceof WebClientResponseException response && !response.getStatusCode().is5xxServerError()) {
+            // it answered, just not with a 2xx
+            onSuccess(instance);
+            return;
+        }
+        if (!isBackendFailure(error)) {
+            return;
+        }
+        OutlierState state = instance.outlierState();
+        state.intervalFailures.increment();
+        int failures = state.consecutiveFailures.incrementAndGet();
+        int connectFailures = isConnectFailure(error) ? state.consecutiveConnectFailures.incrementAndGet() : 0;
+
+        if (failures >= properties.getConsecutiveFailures()) {
+            eject(instance, failures + " consecutive failures");
+        } else if (connectFailures >= properties.getConsecutiveConnectFailures()) {
+            eject(instance, connectFailures + " consecutive connect failures");
+        }
+    }
+
+    /**
+     * Success-rate ejection over the last interval, and decay of the ejection multiplier for instances that
+     * stayed in.
+     */
+    @Scheduled(fixedDelayString = "${routing.outlier.interval:10000}")
+    public void evaluate() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        List<BackendInstance> candidates = new ArrayList<>();
+        List<Double> rates = new ArrayList<>();
+        for (BackendInstance instance : healthCheckService.getAllInstances()) {
+            OutlierState state = instance.outlierState();
+            long successes = state.intervalSuccesses.sumThenReset();
+            long failures = state.intervalFailures.sumThenReset();
+            if (!state.ejected) {
+                synchronized (this) {
+                    if (state.ejectionCount > 0 && failures == 0) {
+                        state.ejectionCount--;
+                    }
+                }
+                if (successes + failures >= properties.getSuccessRateRequestVolume()) {
+                    candidates.add(instance);
+                    rates.add((double) successes / (successes + failures));
+                }
+            }
+        }
+        if (candidates.size() < properties.getSuccessRateMinimumHosts()) {
+            return;
+        }
+
+        double mean = rates.stream().mapToDouble(Double::doubleValue).average().orElse(1.0);
+        double variance = rates.stream().mapToDouble(rate -> (rate - mean) * (rate - mean)).average().orElse(0.0);
+        double threshold = mean - properties.getSuccessRateStdevFactor() * Math.sqrt(variance);
+        for (int i = 0; i < candidates.size(); i++) {
+            if (rates.get(i) < threshold) {
+                eject(candidates.get(i), String.format("success rate %.2f below fleet threshold %.2f", rates.get(i), threshold));
+            }
+        }
+    }
+
+    private synchronized void eject(BackendInstance instance, String reason) {
+        OutlierState state = instance.outlierState();
+        if (state.ejected) {
+            return;
+        }
+        List<BackendInstance> all = healthCheckService.getAllInstances();
+        long ejected = all.stream().filter(backend -> backend.outlierState().ejected).count();
+        if ((ejected + 1) * 100 > (long) properties.getMaxEjectionPercent() * all.size()) {
+            log.warn("Not ejecting {} ({}): already at max-ejection-percent", instance.baseUrl(), reason);
+            return;
+        }
+
+        state.ejectionCount++;
+        Duration ejectionTime = ejectionTime(state.ejectionCount);
+        state.ejected = true;
+        state.consecutiveFailures.set(0);
+        state.consecutiveConnectFailures.set(0);
+        healthCheckService.refreshRoutingTable();
+        log.warn("Ejected {} for {}: {}", instance.baseUrl(), ejectionTime, reason);
+
+        Mono.delay(ejectionTime).subscribe(tick -> readmit(instance));
+    }
+
+    private synchronized void readmit(BackendInstance instance) {
+        instance.outlierState().ejected = false;
+        healthCheckService.refreshRoutingTable();
+        log.info("Re-admitted {} after ejection", instance.baseUrl());
+    }
+
+    private Duration ejectionTime(int ejectionCount) {
+        Duration time = properties.getBaseEjectionTime().multipliedBy(1L << Math.min(ejectionCount - 1, 20));
+        return time.compareTo(properties.getMaxEjectionTime()) > 0 ? properties.getMaxEjectionTime() : time;
+    }
+
+    private static boolean isBackendFailure(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return error instanceof TimeoutException || error instanceof WebClientRequestException;
+    }
+
+    private static boolean isConnectFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
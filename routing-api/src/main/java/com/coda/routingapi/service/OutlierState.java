@@ -0,0 +1,28 @@
+package com.coda.routingapi.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-instance counters the {@link OutlierDetector} keeps for one {@link BackendInstance}. Written on every
+ * completed request, read by the detector; ejection state itself is guarded by the detector.
+ */
+public final class OutlierState {
+
+    final AtomicInteger consecutiveFailures = new AtomicInteger();
+    final AtomicInteger consecutiveConnectFailures = new AtomicInteger();
+    final LongAdder intervalSuccesses = new LongAdder();
+    final LongAdder intervalFailures = new LongAdder();
+
+    volatile boolean ejected;
+    // guarded by OutlierDetector
+    int ejectionCount;
+
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    public int ejectionCount() {
+        return ejectionCount;
+    }
+}
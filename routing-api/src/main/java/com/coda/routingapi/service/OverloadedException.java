@@ -0,0 +1,12 @@
+package com.coda.routingapi.service;
+
+/**
+ * A request was shed because the router or every routable instance is at its concurrency limit. Nothing was
+ * sent to a backend, so the caller can safely retry later.
+ */
+public class OverloadedException extends RuntimeException {
+
+    public OverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,72 @@
+package com.coda.routingapi.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * How much checking the passthrough mode does before forwarding raw bytes. None of the modes build a tree.
+ */
+public enum PassthroughValidation {
+
+    /** Forward whatever was sent. */
+    NONE {
+        @Override
+        public boolean accepts(ByteBuf content) {
+            return true;
+        }
+    },
+
+    /** First and last non-whitespace bytes must be a matching {} or [] pair. */
+    ENVELOPE {
+        @Override
+        public boolean accepts(ByteBuf content) {
+            int start = content.readerIndex();
+            int end = content.writerIndex() - 1;
+            while (start <= end && isWhitespace(content.getByte(start))) {
+                start++;
+            }
+            while (end >= start && isWhitespace(content.getByte(end))) {
+                end--;
+            }
+            if (start >= end) {
+                return false;
+            }
+            byte first = content.getByte(start);
+            byte last = content.getByte(end);
+            return (first == '{' && last == '}') || (first == '[' && last == ']');
+        }
+    },
+
+    /** Full syntax check with a streaming parser; tokens are skipped, never materialised. */
+    STRICT {
+        @Override
+        public boolean accepts(ByteBuf content) {
+            // ByteBufInputStream is also a DataInput, so pick the InputStream overload explicitly
+            InputStream in = new ByteBufInputStream(content.duplicate());
+            try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+                JsonToken first = parser.nextToken();
+                if (first != JsonToken.START_OBJECT && first != JsonToken.START_ARRAY) {
+                    return false;
+                }
+                parser.skipChildren();
+                return parser.nextToken() == null;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    };
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public abstract boolean accepts(ByteBuf content);
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
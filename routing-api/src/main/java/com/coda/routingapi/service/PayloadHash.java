@@ -0,0 +1,203 @@
+package com.coda.routingapi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 128-bit MurmurHash3 (x64 variant) of request payloads for {@link ResponseCache} keys. Raw bytes are hashed in
+ * place. A {@link JsonNode} is hashed canonically: formatting is gone once parsed, and object fields are combined
+ * order-independently, so {@code {"a":1,"b":2}} and {@code {"b":2,"a":1}} get the same key. Numbers keep their
+ * type, since {@code 1} and {@code 1.0} may well produce different responses.
+ */
+final class PayloadHash {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final long TAG_OBJECT = 1;
+    private static final long TAG_ARRAY = 2;
+    private static final long TAG_STRING = 3;
+    private static final long TAG_INTEGER = 4;
+    private static final long TAG_DECIMAL = 5;
+    private static final long TAG_BIG = 6;
+    private static final long TAG_BOOLEAN = 7;
+    private static final long TAG_NULL = 8;
+    private static final long TAG_OTHER = 9;
+
+    private PayloadHash() {
+    }
+
+    static PayloadKey of(ByteBuf content, long seed) {
+        int index = content.readerIndex();
+        int length = content.readableBytes();
+        Hasher hasher = new Hasher(seed);
+        int end = index + (length & ~15);
+        for (int i = index; i < end; i += 16) {
+            hasher.block(content.getLongLE(i), content.getLongLE(i + 8));
+        }
+        long k1 = 0;
+        long k2 = 0;
+        int remaining = length & 15;
+        for (int i = remaining - 1; i >= 8; i--) {
+            k2 ^= (content.getByte(end + i) & 0xffL) << ((i - 8) * 8);
+        }
+        for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+            k1 ^= (content.getByte(end + i) & 0xffL) << (i * 8);
+        }
+        return hasher.finish(k1, k2, length);
+    }
+
+    static PayloadKey of(CharSequence text, long seed) {
+        Hasher hasher = new Hasher(seed);
+        hasher.string(text);
+        return hasher.finish(0, 0, text.length());
+    }
+
+    static PayloadKey of(JsonNode node, long seed) {
+        Hasher hasher = new Hasher(seed);
+        hasher.node(node);
+        return hasher.finish(0, 0, hasher.blocks);
+    }
+
+    private static final class Hasher {
+
+        private final long seed;
+        private long h1;
+        private long h2;
+        private long blocks;
+
+        Hasher(long seed) {
+            this.seed = seed;
+            this.h1 = seed;
+            this.h2 = seed;
+        }
+
+        void block(long k1, long k2) {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+            blocks++;
+        }
+
+        /** Four UTF-16 chars per long, length first so adjacent strings can't run into each other. */
+        void string(CharSequence text) {
+            int length = text.length();
+            block(TAG_STRING, length);
+            int i = 0;
+            for (; i + 8 <= length; i += 8) {
+                block(pack(text, i), pack(text, i + 4));
+            }
+            if (i < length) {
+                long k1 = 0;
+                long k2 = 0;
+                for (int j = 0; i + j < length; j++) {
+                    long c = text.charAt(i + j);
+                    if (j < 4) {
+                        k1 |= c << (j * 16);
+                    } else {
+                        k2 |= c << ((j - 4) * 16);
+                    }
+                }
+                block(k1, k2);
+            }
+        }
+
+        void node(JsonNode node) {
+            switch (node.getNodeType()) {
+                case OBJECT -> {
+                    // field hashes are summed, which makes the result independent of field order
+                    long sum1 = 0;
+                    long sum2 = 0;
+                    Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                    while (fields.hasNext()) {
+                        Map.Entry<String, JsonNode> field = fields.next();
+                        Hasher child = new Hasher(seed);
+                        child.string(field.getKey());
+                        child.node(field.getValue());
+                        PayloadKey key = child.finish(0, 0, child.blocks);
+                        sum1 += key.high();
+                        sum2 += key.low();
+                    }
+                    block(TAG_OBJECT, node.size());
+                    block(sum1, sum2);
+                }
+                case ARRAY -> {
+                    block(TAG_ARRAY, node.size());
+                    for (JsonNode element : node) {
+                        node(element);
+                    }
+                }
+                case STRING -> string(node.textValue());
+                case NUMBER -> {
+                    if (node.isIntegralNumber() && node.canConvertToLong()) {
+                        block(TAG_INTEGER, node.longValue());
+                    } else if (node.isDouble() || node.isFloat()) {
+                        block(TAG_DECIMAL, Double.doubleToLongBits(node.doubleValue()));
+                    } else {
+                        block(TAG_BIG, 0);
+                        string(node.asText());
+                    }
+                }
+                case BOOLEAN -> block(TAG_BOOLEAN, node.booleanValue() ? 1 : 0);
+                case NULL -> block(TAG_NULL, 0);
+                default -> {
+                    block(TAG_OTHER, 0);
+                    string(node.toString());
+                }
+            }
+        }
+
+        PayloadKey finish(long k1, long k2, long length) {
+            long a = h1;
+            long b = h2;
+            if (k2 != 0) {
+                b ^= mixK2(k2);
+            }
+            if (k1 != 0) {
+                a ^= mixK1(k1);
+            }
+            a ^= length;
+            b ^= length;
+            a += b;
+            b += a;
+            a = fmix(a);
+            b = fmix(b);
+            a += b;
+            b += a;
+            return new PayloadKey(a, b);
+        }
+
+        private static long pack(CharSequence text, int from) {
+            return text.charAt(from)
+                    | (long) text.charAt(from + 1) << 16
+                    | (long) text.charAt(from + 2) << 32
+                    | (long) text.charAt(from + 3) << 48;
+        }
+
+        private static long mixK1(long k1) {
+            return Long.rotateLeft(k1 * C1, 31) * C2;
+        }
+
+        private static long mixK2(long k2) {
+            return Long.rotateLeft(k2 * C2, 33) * C1;
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.coda.routingapi.service;
+
+/**
+ * 128-bit identity of a request payload, see {@link PayloadHash}. Shared by {@link ResponseCache} and
+ * {@link RequestCoalescer}.
+ */
+public record PayloadKey(long high, long low) {
+}
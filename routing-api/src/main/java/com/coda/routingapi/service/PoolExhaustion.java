@@ -0,0 +1,40 @@
+package com.coda.routingapi.service;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Recognises a request that never got a connection from its instance's pool: none was free within
+ * {@code pending-acquire-timeout}, or the queue waiting for one was already at {@code pending-acquire-max-count}.
+ *
+ * <p>reactor-netty signals both with exceptions of its shaded copy of reactor-pool, which is internal and may move in
+ * any release, so they are matched by simple name rather than imported. The acquire timeout is also recognised as
+ * what it is structurally, a {@link TimeoutException} under a {@link WebClientRequestException}: the request failed
+ * before it was sent, unlike the attempt timeout, which is never wrapped. {@code PoolExhaustionTest} drives a real
+ * pool into both states, so an upgrade that changes either shows up there.
+ */
+final class PoolExhaustion {
+
+    private static final String ACQUIRE_TIMEOUT = "PoolAcquireTimeoutException";
+    private static final String PENDING_LIMIT = "PoolAcquirePendingLimitException";
+
+    private PoolExhaustion() {
+    }
+
+    /**
+     * True if {@code error} or one of its causes says the pool had no connection to give.
+     */
+    static boolean isCause(Throwable error) {
+        boolean requestFailed = false;
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            String name = cause.getClass().getSimpleName();
+            if (name.equals(ACQUIRE_TIMEOUT) || name.equals(PENDING_LIMIT)
+                    || requestFailed && cause instanceof TimeoutException) {
+                return true;
+            }
+            requestFailed |= cause instanceof WebClientRequestException;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+package com.coda.routingapi.service;
+
+/**
+ * Admission class of a request, given by {@link AdmissionGate#priority}. Under overload the gate
+ * sheds {@link #LOW} first and keeps the last slots for {@link #CRITICAL}; see {@link AdmissionGate}.
+ */
+public enum Priority {
+    CRITICAL,
+    NORMAL,
+    LOW;
+
+    private static final Priority[] VALUES = values();
+
+    /**
+     * @return the priority named by {@code header}, case-insensitively; {@link #NORMAL} when absent or unknown
+     */
+    public static Priority of(String header) {
+        if (header == null) {
+            return NORMAL;
+        }
+        for (Priority priority : VALUES) {
+            if (priority.name().equalsIgnoreCase(header)) {
+                return priority;
+            }
+        }
+        return NORMAL;
+    }
+}
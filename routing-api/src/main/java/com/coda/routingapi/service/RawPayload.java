@@ -0,0 +1,93 @@
+package com.coda.routingapi.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Mono;
+
+/**
+ * Request body held as a single pooled Netty buffer so it can be forwarded (and re-sent on fallback)
+ * without ever being parsed. Every attempt gets its own retained duplicate; {@link #release()} drops
+ * the reference owned by the request once routing has finished.
+ */
+public final class RawPayload {
+
+    private static final NettyDataBufferFactory BUFFER_FACTORY =
+            new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    private final ByteBuf content;
+    private final MediaType contentType;
+
+    private RawPayload(ByteBuf content, MediaType contentType) {
+        this.content = content;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Takes ownership of the given (joined) buffer. Netty buffers are used as is; anything else is copied
+     * once into a pooled buffer and released.
+     */
+    public static RawPayload of(DataBuffer buffer, MediaType contentType) {
+        MediaType type = contentType != null ? contentType : MediaType.APPLICATION_JSON;
+        if (buffer instanceof NettyDataBuffer nettyBuffer) {
+            return new RawPayload(nettyBuffer.getNativeBuffer(), type);
+        }
+        try {
+            ByteBuf copy = PooledByteBufAllocator.DEFAULT.buffer(buffer.readableByteCount());
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                iterator.forEachRemaining(copy::writeBytes);
+            }
+            return new RawPayload(copy, type);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    public static RawPayload of(byte[] bytes, MediaType contentType) {
+        ByteBuf copy = PooledByteBufAllocator.DEFAULT.buffer(bytes.length);
+        copy.writeBytes(bytes);
+        return new RawPayload(copy, contentType != null ? contentType : MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Body for one outgoing attempt. The duplicate has its own reader index, so concurrent or repeated
+     * attempts never see a partially consumed buffer; the HTTP client releases it after writing.
+     */
+    public Mono<DataBuffer> body() {
+        return Mono.fromSupplier(() -> BUFFER_FACTORY.wrap(content.retainedDuplicate()));
+    }
+
+    public ByteBuf content() {
+        return content;
+    }
+
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    public int length() {
+        return content.readableBytes();
+    }
+
+    /**
+     * Takes another reference for a call that may outlive the request, e.g. one shared by {@link RequestCoalescer};
+     * pair it with its own {@link #release()}.
+     */
+    public RawPayload retain() {
+        content.retain();
+        return this;
+    }
+
+    /**
+     * Drops one reference: the one the payload was created with, released once by the request that owns it, or
+     * one taken by {@link #retain()}. Releasing more often than that throws, and never releasing is reported by
+     * Netty's leak detector.
+     */
+    public void release() {
+        content.release();
+    }
+}
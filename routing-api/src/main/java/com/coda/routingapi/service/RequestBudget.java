@@ -0,0 +1,54 @@
+package com.coda.routingapi.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that refills per request rather than per second: every request deposits {@code ratio} of a token
+ * and every extra call (a hedge, a retry) withdraws a whole one. Extra load therefore stays at most
+ * {@code ratio} of traffic plus a small burst, however bad things get. Lock-free; the balance is kept in
+ * thousandths of a token in one {@link AtomicLong}.
+ */
+public final class RequestBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long depositPerRequest;
+    private final long capacity;
+    private final AtomicLong balance;
+
+    /**
+     * @param ratio     extra calls allowed per request, e.g. 0.1 for 10%
+     * @param maxBurst  tokens that can be saved up (and are available at startup)
+     */
+    public RequestBudget(double ratio, int maxBurst) {
+        this.depositPerRequest = Math.round(ratio * SCALE);
+        this.capacity = (long) maxBurst * SCALE;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    public void deposit() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= capacity) {
+                // already full: skip the write so a steady state doesn't bounce the cache line around
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(capacity, current + depositPerRequest)));
+    }
+
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    public double available() {
+        return (double) balance.get() / SCALE;
+    }
+}
@@ -0,0 +1,120 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.CoalescingProperties;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.netty.buffer.ByteBuf;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for /route: while a request is being forwarded, every identical request that arrives joins it
+ * instead of starting its own. The first one in becomes the leader and its call is shared with
+ * {@code publish().refCount()}, so all waiters get the same response or the same error, and the call is only
+ * cancelled once every waiter has gone. The entry is dropped as soon as the call terminates, so nothing is
+ * served after the fact; that is {@link ResponseCache}'s job.
+ *
+ * <p>Joining is a single {@link ConcurrentHashMap#putIfAbsent} and nothing is locked while a call is in flight.
+ * The shared call runs under the leader's deadline.
+ */
+@Component
+public class RequestCoalescer {
+
+    private static final long SEED = 0x5bd1e995L;
+    private static final long ROUTING_KEY_SEED = 0xc2b2ae3d27d4eb4fL;
+    private static final long IDEMPOTENCY_KEY_SEED = 0x165667b19e3779f9L;
+
+    private final CoalescingProperties properties;
+    private final JsonPointer keyPointer;
+    private final ConcurrentHashMap<PayloadKey, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public RequestCoalescer(CoalescingProperties properties) {
+        this.properties = properties;
+        String pointer = properties.getKeyPointer();
+        this.keyPointer = pointer == null || pointer.isEmpty() ? null : JsonPointer.compile(pointer);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * The routing key and idempotency key headers are part of the key, so requests that would go to different
+     * instances, or that the client sent as separate operations, never share a call.
+     *
+     * @return the key the request coalesces on, or null when coalescing is off or the key pointer matches nothing
+     */
+    public PayloadKey key(JsonNode payload, String routingKey, String idempotencyKey) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        JsonNode keyNode = keyPointer != null ? payload.at(keyPointer) : payload;
+        return keyNode.isMissingNode() ? null : PayloadHash.of(keyNode, seed(routingKey, idempotencyKey));
+    }
+
+    public PayloadKey key(ByteBuf payload, String routingKey, String idempotencyKey) {
+        return properties.isEnabled() ? PayloadHash.of(payload, seed(routingKey, idempotencyKey)) : null;
+    }
+
+    private static long seed(String routingKey, String idempotencyKey) {
+        long seed = SEED;
+        if (routingKey != null) {
+            seed ^= PayloadHash.of(routingKey, ROUTING_KEY_SEED).low();
+        }
+        if (idempotencyKey != null) {
+            seed ^= PayloadHash.of(idempotencyKey, IDEMPOTENCY_KEY_SEED).low();
+        }
+        return seed;
+    }
+
+    /**
+     * Subscribes to the call in flight for {@code key}, or starts {@code call} and shares it if there is none.
+     * A null key never coalesces.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> coalesce(PayloadKey key, Supplier<Mono<T>> call) {
+        if (key == null) {
+            return Mono.defer(call);
+        }
+        return Mono.defer(() -> {
+            Mono<?> existing = inFlight.get(key);
+            if (existing != null) {
+                coalesced.increment();
+                return (Mono<T>) existing;
+            }
+            Flight<T> flight = new Flight<>();
+            flight.shared = Mono.defer(call)
+                    // runs after every waiter has seen the result, or once the last one cancelled
+                    .doFinally(signal -> inFlight.remove(key, flight.shared))
+                    .flux()
+                    .publish()
+                    .refCount(1)
+                    .singleOrEmpty();
+            existing = inFlight.putIfAbsent(key, flight.shared);
+            if (existing != null) {
+                coalesced.increment();
+                return (Mono<T>) existing;
+            }
+            return flight.shared;
+        });
+    }
+
+    /** Requests that joined another one's call instead of making their own. */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /** Distinct calls currently shared. */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static final class Flight<T> {
+        Mono<T> shared;
+    }
+}
@@ -0,0 +1,119 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.ResponseCacheProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.netty.buffer.ByteBuf;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opt-in cache of successful /route responses for payloads that always get the same answer. Entries are keyed
+ * on a 128-bit {@link PayloadHash} of the payload, or of the client's idempotency key when one is sent, and hold
+ * the response as the bytes that go back on the wire. Caffeine's W-TinyLFU keeps the total under
+ * {@code max-size} bytes and every entry expires {@code ttl} after it was fetched. Hit, miss and eviction counts
+ * are published as {@code cache.*} meters tagged {@code cache=route-responses}.
+ */
+@Component
+@Slf4j
+public class ResponseCache {
+
+    /** Rough heap cost of an entry besides its body: key, value, node and map slot. */
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final long PAYLOAD_SEED = 0;
+    private static final long KEY_HEADER_SEED = 0x9e3779b97f4a7c15L;
+
+    private final ResponseCacheProperties properties;
+    private final ObjectMapper mapper;
+    private final Cache<PayloadKey, CachedResponse> cache;
+
+    public ResponseCache(ResponseCacheProperties properties, ObjectMapper mapper, MeterRegistry registry) {
+        this.properties = properties;
+        this.mapper = mapper;
+        if (!properties.isEnabled()) {
+            this.cache = null;
+            return;
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxSize().toBytes())
+                .<PayloadKey, CachedResponse>weigher((key, response) -> response.body().length + ENTRY_OVERHEAD)
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "route-responses");
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public String keyHeader() {
+        return properties.getKeyHeader();
+    }
+
+    /**
+     * @return the key for a bound payload, or null when caching is off
+     */
+    public PayloadKey key(String idempotencyKey, JsonNode payload) {
+        if (cache == null) {
+            return null;
+        }
+        return idempotencyKey != null ? PayloadHash.of(idempotencyKey, KEY_HEADER_SEED)
+                : PayloadHash.of(payload, PAYLOAD_SEED);
+    }
+
+    /**
+     * Passthrough variant of {@link #key(String, JsonNode)}: the bytes are hashed as sent, without parsing, so
+     * only byte-identical payloads share an entry.
+     */
+    public PayloadKey key(String idempotencyKey, ByteBuf payload) {
+        if (cache == null) {
+            return null;
+        }
+        return idempotencyKey != null ? PayloadHash.of(idempotencyKey, KEY_HEADER_SEED)
+                : PayloadHash.of(payload, PAYLOAD_SEED);
+    }
+
+    public CachedResponse get(PayloadKey key) {
+        return key != null ? cache.getIfPresent(key) : null;
+    }
+
+    public void put(PayloadKey key, byte[] body, MediaType contentType) {
+        if (key == null || body == null || body.length > properties.getMaxEntrySize().toBytes()) {
+            return;
+        }
+        cache.put(key, new CachedResponse(body, contentType != null ? contentType : MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Stores a response that was bound to a tree, serialized once here so a hit needs no encoding.
+     */
+    public void put(PayloadKey key, JsonNode body) {
+        if (key == null) {
+            return;
+        }
+        try {
+            put(key, mapper.writeValueAsBytes(body), MediaType.APPLICATION_JSON);
+        } catch (JsonProcessingException e) {
+            log.debug("Not caching unserializable response: {}", e.getMessage());
+        }
+    }
+
+    public CacheStats stats() {
+        return cache != null ? cache.stats() : CacheStats.empty();
+    }
+
+    public long size() {
+        return cache != null ? cache.estimatedSize() : 0;
+    }
+
+    public record CachedResponse(byte[] body, MediaType contentType) {
+    }
+}
@@ -0,0 +1,48 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.RetryProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shared budget for retrying a failed attempt on another instance. Every request earns a fraction of a retry,
+ * so retries stay at {@code budget-percent} of traffic plus a small burst. During an incident, once the budget
+ * is spent requests fail fast instead of multiplying the load on the instances that are still up.
+ */
+@Component
+public class RetryPolicy {
+
+    private final RequestBudget budget;
+    private final Counter granted;
+    private final Counter exhausted;
+
+    public RetryPolicy(RetryProperties properties, MeterRegistry registry) {
+        this.budget = new RequestBudget(properties.getBudgetPercent() / 100.0, properties.getBudgetBurst());
+        this.granted = Counter.builder("routing.retries")
+                .tag("result", "granted")
+                .description("Retries on another instance, by whether the budget allowed them")
+                .register(registry);
+        this.exhausted = Counter.builder("routing.retries")
+                .tag("result", "budget_exhausted")
+                .description("Retries on another instance, by whether the budget allowed them")
+                .register(registry);
+        Gauge.builder("routing.retries.available", this, RetryPolicy::availableRetries)
+                .register(registry);
+    }
+
+    public void onRequest() {
+        budget.deposit();
+    }
+
+    public boolean tryAcquireRetry() {
+        boolean acquired = budget.tryWithdraw();
+        (acquired ? granted : exhausted).increment();
+        return acquired;
+    }
+
+    public double availableRetries() {
+        return budget.available();
+    }
+}
@@ -1,93 +1,350 @@
 package com.coda.routingapi.service;
 
+import com.coda.routingapi.config.DeadlineProperties;
+import com.coda.routingapi.loadbalancer.LoadBalancer;
 import com.fasterxml.jackson.databind.JsonNode;
-import io.github.resilience4j.circuitbreaker.CircuitBreaker;
-import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
 import java.time.Duration;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 public class RoutingService {
-    
+
     private final WebClient webClient;
     private final HealthCheckService healthCheckService;
-    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
-    private final AtomicInteger counter = new AtomicInteger(0);
+    private final LoadBalancer loadBalancer;
+    private final OutlierDetector outlierDetector;
+    private final HedgingPolicy hedgingPolicy;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final RetryPolicy retryPolicy;
+    private final DeadlineProperties deadlineProperties;
 
-    public RoutingService(WebClient.Builder builder, HealthCheckService healthCheckService) {
-        this.webClient = builder.build();
+    public RoutingService(WebClient.Builder builder, HealthCheckService healthCheckService, LoadBalancer loadBalancer,
+                          OutlierDetector outlierDetector, HedgingPolicy hedgingPolicy,
+                          AdaptiveConcurrencyLimiter concurrencyLimiter, RetryPolicy retryPolicy,
+                          DeadlineProperties deadlineProperties) {
+        this.webClient = builder.clone().filter(StartupWarmup.propagateHeader()).build();
         this.healthCheckService = healthCheckService;
+        this.loadBalancer = loadBalancer;
+        this.outlierDetector = outlierDetector;
+        this.hedgingPolicy = hedgingPolicy;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.retryPolicy = retryPolicy;
+        this.deadlineProperties = deadlineProperties;
     }
 
-    public Mono<JsonNode> forward(JsonNode payload) {
-        List<String> healthyInstances = healthCheckService.getHealthyInstances();
-        if (healthyInstances.isEmpty()) {
-            return Mono.error(new RuntimeException("No healthy instances available"));
+    /**
+     * Starts a request's deadline from the client's {@link Deadline#HEADER}, capped at {@code max-timeout}. A
+     * missing or unreadable header gets {@code default-timeout}.
+     */
+    public Deadline deadline(String timeoutMillis) {
+        Duration timeout = deadlineProperties.getDefaultTimeout();
+        if (timeoutMillis != null && !timeoutMillis.isBlank()) {
+            try {
+                timeout = Duration.ofMillis(Math.max(Long.parseLong(timeoutMillis.trim()), 0));
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring {} header '{}'", Deadline.HEADER, timeoutMillis);
+            }
+        }
+        if (timeout.compareTo(deadlineProperties.getMaxTimeout()) > 0) {
+            timeout = deadlineProperties.getMaxTimeout();
         }
-        return tryForward(payload, healthyInstances, 0);
+        return Deadline.after(timeout);
     }
 
-    private Mono<JsonNode> tryForward(JsonNode payload, List<String> healthyInstances, int attempt) {
-        if (attempt >= healthyInstances.size()) {
-            return Mono.error(new RuntimeException("All healthy instances failed or are in OPEN state"));
-        }
+    /**
+     * The request's key for sticky routing, from the routing key header or the payload; see
+     * {@link LoadBalancer#routingKey}. {@link LoadBalancer#NO_KEY} unless the load balancer routes by key.
+     */
+    public long routingKey(String header, JsonNode payload) {
+        return loadBalancer.routingKey(header, payload);
+    }
 
-        int index = Math.abs(counter.getAndIncrement() % healthyInstances.size()); // 3%3 ->0,4%3,5%3
-        String baseUrl = healthyInstances.get(index);
-        String url = baseUrl + "/api/echo";
+    /**
+     * Whether a request would be hedged: hedging is on and the client marked the request idempotent.
+     */
+    public boolean hedges(boolean idempotent) {
+        return idempotent && hedgingPolicy.isEnabled();
+    }
 
-        CircuitBreaker cb = circuitBreakers.computeIfAbsent(baseUrl, key -> createCircuitBreaker(baseUrl));
+    public Mono<JsonNode> forward(JsonNode payload) {
+        return forward(payload, deadline(null));
+    }
+
+    public Mono<JsonNode> forward(JsonNode payload, Deadline deadline) {
+        return forward(payload, LoadBalancer.NO_KEY, deadline);
+    }
 
-        log.info("Routing to instance [{}]: {}", index, url);
+    public Mono<JsonNode> forward(JsonNode payload, long routingKey, Deadline deadline) {
+        return forward(payload, routingKey, false, deadline);
+    }
 
-        return webClient.post()
-                .uri(url)
+    /**
+     * @param idempotent whether the client marked the request as safe to process twice, e.g. by sending an
+     *                   idempotency key; only such requests are hedged
+     */
+    public Mono<JsonNode> forward(JsonNode payload, long routingKey, boolean idempotent, Deadline deadline) {
+        return forward(deadline, routingKey, BackendCall.single((uri, timeout) -> webClient.post()
+                .uri(uri)
                 .contentType(MediaType.APPLICATION_JSON)
+                .header(Deadline.HEADER, String.valueOf(timeout.toMillis()))
                 .bodyValue(payload)
                 .retrieve()
-                .bodyToMono(JsonNode.class)
-                .timeout(Duration.ofSeconds(2))
-                .transformDeferred(CircuitBreakerOperator.of(cb))
-                .doOnSuccess(resp -> log.info("Success from {}", url))
+                .bodyToMono(JsonNode.class), idempotent));
+    }
+
+    /**
+     * Sends a micro-batch of documents to one instance's batch endpoint in a single request, with the same
+     * instance selection, fallback, deadline and retry budget as {@link #forward(JsonNode, Deadline)}. The
+     * backend answers with one result per document, in order.
+     */
+    public Mono<JsonNode> forwardBatch(List<JsonNode> items, Deadline deadline) {
+        return forward(deadline, LoadBalancer.NO_KEY, new BackendCall<>(BackendInstance::batchUri, (uri, timeout) -> webClient.post()
+                .uri(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(Deadline.HEADER, String.valueOf(timeout.toMillis()))
+                .bodyValue(items)
+                .retrieve()
+                .bodyToMono(JsonNode.class), false, false));
+    }
+
+    public Mono<ResponseEntity<byte[]>> forwardRaw(RawPayload payload) {
+        return forwardRaw(payload, deadline(null));
+    }
+
+    public Mono<ResponseEntity<byte[]>> forwardRaw(RawPayload payload, Deadline deadline) {
+        return forwardRaw(payload, LoadBalancer.NO_KEY, deadline);
+    }
+
+    /**
+     * Passthrough variant of {@link #forward(JsonNode, Deadline)}: the payload bytes are sent as is with their
+     * content type and length, and the backend response comes back as bytes without being parsed. The caller
+     * keeps ownership of the payload and releases it once the returned Mono terminates.
+     */
+    public Mono<ResponseEntity<byte[]>> forwardRaw(RawPayload payload, long routingKey, Deadline deadline) {
+        return forwardRaw(payload, routingKey, false, deadline);
+    }
+
+    /**
+     * @param idempotent whether the client marked the request as safe to process twice; only such requests are
+     *                   hedged
+     */
+    public Mono<ResponseEntity<byte[]>> forwardRaw(RawPayload payload, long routingKey, boolean idempotent,
+                                                   Deadline deadline) {
+        return forward(deadline, routingKey, BackendCall.single((uri, timeout) -> webClient.post()
+                .uri(uri)
+                .contentType(payload.contentType())
+                .contentLength(payload.length())
+                .header(Deadline.HEADER, String.valueOf(timeout.toMillis()))
+                .body(payload.body(), DataBuffer.class)
+                .retrieve()
+                .toEntity(byte[].class), idempotent));
+    }
+
+    /**
+     * Like {@link #forwardRaw(RawPayload, long, Deadline)}, but the backend's body is handed back as it arrives, in
+     * the pooled buffers it was read into, instead of being copied into a {@code byte[]}; its content type and
+     * length come in the entity's headers. The attempt ends when the backend's headers are in, which is what
+     * latency, limits and fallbacks see, so a body that fails part way can't be retried. Such a call is never
+     * hedged, as a losing hedge would leave a body nobody reads. The body must be subscribed to or cancelled to
+     * give the connection back.
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> streamRaw(RawPayload payload, long routingKey, Deadline deadline) {
+        Sender<ResponseEntity<Flux<DataBuffer>>> sender = (uri, timeout) -> webClient.post()
+                .uri(uri)
+                .contentType(payload.contentType())
+                .contentLength(payload.length())
+                .header(Deadline.HEADER, String.valueOf(timeout.toMillis()))
+                .body(payload.body(), DataBuffer.class)
+                .retrieve()
+                .toEntityFlux(DataBuffer.class);
+        return forward(deadline, routingKey, new BackendCall<>(BackendInstance::echoUri, sender, true, false));
+    }
+
+    private <T> Mono<T> forward(Deadline deadline, long routingKey, BackendCall<T> call) {
+        // One snapshot per request: fallbacks walk the same table even if health changes meanwhile
+        RoutingTable table = healthCheckService.getRoutingTable();
+        if (table.isEmpty()) {
+            return Mono.error(new RuntimeException("No healthy instances available"));
+        }
+        if (!concurrencyLimiter.hasCapacity(table)) {
+            return Mono.error(new OverloadedException("All healthy instances are at their concurrency limit"));
+        }
+        retryPolicy.onRequest();
+        int start = loadBalancer.select(table, routingKey);
+        Mono<T> primary = tryForward(call, deadline, table, start, 0, true);
+        if (!hedgingPolicy.isEnabled() || !call.hedgeable() || table.size() < 2) {
+            return primary;
+        }
+        return hedged(call, deadline, table, start, primary);
+    }
+
+    /**
+     * Races the primary attempt chain against one extra attempt on another instance, sent only if the primary
+     * hasn't answered within the hedge delay and the hedging budget allows it. The load balancer picks that
+     * instance when the hedge is sent, leaving out the primary's. The first response wins and the other call is
+     * cancelled; a cancelled call releases its circuit breaker permission without being recorded.
+     */
+    private <T> Mono<T> hedged(BackendCall<T> call, Deadline deadline, RoutingTable table, int start,
+                               Mono<T> primary) {
+        hedgingPolicy.onRequest();
+        Mono<T> hedge = Mono.delay(hedgingPolicy.delay())
+                .flatMap(tick -> hedgingPolicy.tryAcquireHedge()
+                        ? attempt(call, deadline, table, loadBalancer.selectHedge(table, start))
+                        : Mono.<T>never())
+                // a failed hedge must not pre-empt the primary's own fallback chain
+                .onErrorResume(ex -> Mono.never());
+        return Mono.firstWithSignal(primary, hedge);
+    }
+
+    /**
+     * Walks the table from {@code start} until an instance answers, the deadline runs out, or a retry is due
+     * and the retry budget is spent. Skipping an instance that never received the request (at its concurrency
+     * limit, circuit breaker open) is free; only a retry after a real attempt costs budget.
+     *
+     * @param shedOnly true while every attempt so far was rejected by a concurrency limit without being sent
+     */
+    private <T> Mono<T> tryForward(BackendCall<T> call, Deadline deadline, RoutingTable table, int start,
+                                   int attempt, boolean shedOnly) {
+        if (attempt >= table.size()) {
+            return Mono.error(shedOnly
+                    ? new OverloadedException("All healthy instances are at their concurrency limit")
+                    : new RuntimeException("All healthy instances failed or are in OPEN state"));
+        }
+        if (deadline.remaining().compareTo(deadlineProperties.getMinAttemptTime()) < 0) {
+            return Mono.error(new DeadlineExceededException("Deadline exceeded after " + attempt + " attempts"));
+        }
+
+        int index = (start + attempt) % table.size();
+        if (attempt > 0) {
+            table.get(index).metrics().recordFallback();
+        }
+        return attempt(call, deadline, table, index)
+                // Fallback - try next instance
                 .onErrorResume(ex -> {
+                    if (ex instanceof DeadlineExceededException) {
+                        return Mono.error(ex);
+                    }
+                    boolean sent = !(ex instanceof OverloadedException || ex instanceof CallNotPermittedException);
+                    if (sent && attempt + 1 < table.size() && !retryPolicy.tryAcquireRetry()) {
+                        return Mono.error(new RuntimeException("Retry budget exhausted: " + ex.getMessage()));
+                    }
+                    return tryForward(call, deadline, table, start, attempt + 1,
+                            shedOnly && ex instanceof OverloadedException);
+                });
+    }
+
+    private <T> Mono<T> attempt(BackendCall<T> call, Deadline deadline, RoutingTable table, int index) {
+        BackendInstance instance = table.get(index);
+        URI url = call.endpoint().apply(instance);
+        instance.recordRequest();
+
+        log.debug("Routing to instance [{}]: {}", index, url);
+
+        Mono<T> guarded = Mono.defer(() -> {
+                    // Each attempt gets what is left of the deadline, capped at the per-try timeout
+                    Duration perTry = deadlineProperties.getPerTryTimeout();
+                    Duration remaining = deadline.remaining();
+                    boolean deadlineBound = remaining.compareTo(perTry) < 0;
+                    Duration timeout = deadlineBound ? remaining : perTry;
+                    long startNanos = System.nanoTime();
+                    return call.sender().send(url, timeout)
+                            .timeout(timeout)
+                            // never left the router, so it is skipped like an instance at its concurrency limit
+                            .onErrorMap(PoolExhaustion::isCause,
+                                    ex -> new OverloadedException("Connection pool exhausted for " + instance))
+                            // running out of the client's deadline says nothing about the instance
+                            .onErrorMap(TimeoutException.class, ex -> deadlineBound
+                                    ? new DeadlineExceededException("Deadline exceeded waiting for " + instance)
+                                    : ex)
+                            .doOnSuccess(resp -> {
+                                long latency = System.nanoTime() - startNanos;
+                                instance.metrics().recordSuccess(latency);
+                                outlierDetector.onSuccess(instance);
+                                if (call.single()) {
+                                    loadBalancer.onResponse(instance, latency, true);
+                                    hedgingPolicy.recordLatency(latency);
+                                    concurrencyLimiter.onSample(instance, latency, false);
+                                }
+                            })
+                            .doOnError(ex -> {
+                                if (ex instanceof OverloadedException) {
+                                    return;
+                                }
+                                long latency = System.nanoTime() - startNanos;
+                                instance.metrics().recordFailure(latency);
+                                if (ex instanceof DeadlineExceededException) {
+                                    return;
+                                }
+                                outlierDetector.onFailure(instance, ex);
+                                if (call.single()) {
+                                    loadBalancer.onResponse(instance, latency, false);
+                                    concurrencyLimiter.onSample(instance, latency, ex instanceof TimeoutException);
+                                }
+                            });
+                })
+                .transformDeferred(CircuitBreakerOperator.of(instance.circuitBreaker()));
+
+        return Mono.deferContextual(context -> {
+                    UpstreamTrace trace = context.getOrDefault(UpstreamTrace.class, null);
+                    if (trace != null) {
+                        trace.attempt(instance.baseUrl());
+                    }
+                    // The slot is taken on subscribe and held until any terminal signal, including cancellation;
+                    // an instance at its limit is skipped without touching its circuit breaker
+                    if (!concurrencyLimiter.tryAcquire(instance)) {
+                        return Mono.error(new OverloadedException("Concurrency limit reached for " + instance));
+                    }
+                    return guarded.doFinally(signal -> concurrencyLimiter.release(instance));
+                })
+                .doOnSuccess(resp -> log.debug("Success from {}", url))
+                .doOnError(ex -> {
+                    if (ex instanceof OverloadedException) {
+                        instance.metrics().recordSkipped();
+                        log.debug("Skipped {}: {}", url, ex.getMessage());
+                        return;
+                    }
+                    instance.recordFailure();
                     log.error("Error from {}: {}", url, ex.getMessage());
-                    // Fallback - try next instance
-                    return tryForward(payload, healthyInstances, attempt + 1);
                 });
     }
 
-    private static CircuitBreaker createCircuitBreaker(String baseUrl) {
-
-        //TODO: move these to properties
-        CircuitBreaker circuitBreaker = CircuitBreaker.of(baseUrl, CircuitBreakerConfig.custom()
-                .failureRateThreshold(50)
-                .waitDurationInOpenState(Duration.ofSeconds(30))
-                .slidingWindowSize(5)
-                .permittedNumberOfCallsInHalfOpenState(2)
-                .build());
-
-        //just to log CB events here
-        circuitBreaker.getEventPublisher()
-                .onStateTransition(event ->
-                        log.info("CircuitBreaker '{}' transitioned from {} → {}",
-                                event.getCircuitBreakerName(),
-                                event.getStateTransition().getFromState(),
-                                event.getStateTransition().getToState()))
-                .onCallNotPermitted(event ->
-                        log.info("CircuitBreaker '{}' is OPEN, call not permitted", event.getCircuitBreakerName()))
-                .onError(event ->
-                        log.error("CircuitBreaker '{}' recorded error: {}", event.getCircuitBreakerName(), event.getThrowable().toString()));
-        return circuitBreaker;
+    /**
+     * What to send to an instance and where.
+     *
+     * @param single    false for a micro-batch: its latency isn't that of one request, so it isn't fed to the load
+     *                  balancer, hedge delay or concurrency limits
+     * @param hedgeable whether a second attempt may race the first: only for an idempotent request whose response
+     *                  is read whole
+     */
+    private record BackendCall<T>(Function<BackendInstance, URI> endpoint, Sender<T> sender, boolean single,
+                                  boolean hedgeable) {
+
+        static <T> BackendCall<T> single(Sender<T> sender, boolean idempotent) {
+            return new BackendCall<>(BackendInstance::echoUri, sender, true, idempotent);
+        }
+    }
+
+    /**
+     * One request to one instance, given the time it may take; the timeout is passed on in
+     * {@link Deadline#HEADER}.
+     */
+    @FunctionalInterface
+    private interface Sender<T> {
+        Mono<T> send(URI uri, Duration timeout);
     }
 }
@@ -0,0 +1,115 @@
+package com.coda.routingapi.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the instances that are currently routable, in configured order. A new table is built
+ * only when health changes and published through a single volatile reference in {@link HealthCheckService},
+ * so the hot path reads one field and indexes an array.
+ */
+public final class RoutingTable {
+
+    public static final RoutingTable EMPTY = new RoutingTable(new BackendInstance[0]);
+
+    /** Longest weighted cycle built, unless the table has more instances than this. */
+    static final int MAX_SCHEDULE_LENGTH = 4096;
+
+    private final BackendInstance[] instances;
+    private final List<String> baseUrls;
+    // built on first use, so strategies that don't weight never pay for it
+    private volatile int[] weightedSchedule;
+
+    private RoutingTable(BackendInstance[] instances) {
+        this.instances = instances;
+        List<String> urls = new ArrayList<>(instances.length);
+        for (BackendInstance instance : instances) {
+            urls.add(instance.baseUrl());
+        }
+        this.baseUrls = Collections.unmodifiableList(urls);
+    }
+
+    public static RoutingTable of(List<BackendInstance> instances) {
+        return instances.isEmpty() ? EMPTY : new RoutingTable(instances.toArray(new BackendInstance[0]));
+    }
+
+    public int size() {
+        return instances.length;
+    }
+
+    public boolean isEmpty() {
+        return instances.length == 0;
+    }
+
+    public BackendInstance get(int index) {
+        return instances[index];
+    }
+
+    public List<String> baseUrls() {
+        return baseUrls;
+    }
+
+    /**
+     * One cycle of smooth weighted round robin over this table, as indexes: each pick adds every instance's weight
+     * to its current weight, takes the highest and subtracts the total from it. Weights are divided by their
+     * greatest common divisor first, so the cycle is as short as it can be. Weights that still add up to more than
+     * {@link #MAX_SCHEDULE_LENGTH} are scaled down to fit, rounding each share to the nearest pick but never below
+     * one. Computed once per table; two requests racing to build it compute the same cycle.
+     */
+    public int[] weightedSchedule() {
+        int[] schedule = weightedSchedule;
+        if (schedule == null) {
+            schedule = buildWeightedSchedule();
+            weightedSchedule = schedule;
+        }
+        return schedule;
+    }
+
+    private int[] buildWeightedSchedule() {
+        int[] weights = new int[instances.length];
+        int divisor = 0;
+        for (int i = 0; i < instances.length; i++) {
+            weights[i] = instances[i].weight();
+            divisor = gcd(divisor, weights[i]);
+        }
+        long sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] /= divisor;
+            sum += weights[i];
+        }
+        int limit = Math.max(MAX_SCHEDULE_LENGTH, weights.length);
+        if (sum > limit) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = (int) Math.max(1, Math.round((double) weights[i] * limit / sum));
+            }
+        }
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int[] schedule = new int[total];
+        int[] current = new int[weights.length];
+        for (int pick = 0; pick < total; pick++) {
+            int best = 0;
+            for (int i = 0; i < weights.length; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            schedule[pick] = best;
+        }
+        return schedule;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,159 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.WarmupProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds readiness back until a new router can serve at speed rather than merely answer. Once the application has
+ * started it waits for the {@link HealthCheckService#firstSweep() first health sweep}, opens up to
+ * {@code connections-per-instance} pooled connections to each routable instance, then sends {@code requests}
+ * through the router's own /route so the request path is compiled before clients arrive. Until all that is done,
+ * or {@code timeout} passes, the {@code startupWarmup} health component is OUT_OF_SERVICE, which takes the
+ * readiness group with it.
+ *
+ * <p>Warm-up requests reach real backends, so each carries {@link #HEADER}. On the way in its value is a token
+ * drawn afresh by every router process, so only the router's own requests are taken for warm-up whatever the peer
+ * address, sidecar proxies included. The router leaves those out of its access log and passes the header on, as
+ * {@code true}, with what it forwards, so backends can tell them apart.
+ */
+@Component
+@Slf4j
+public class StartupWarmup implements HealthIndicator {
+
+    public static final String HEADER = "X-Warmup";
+
+    private static final String TOKEN = UUID.randomUUID().toString();
+    private static final byte[] TOKEN_BYTES = TOKEN.getBytes(StandardCharsets.US_ASCII);
+
+    enum Phase { STARTING, FIRST_SWEEP, CONNECTIONS, REQUESTS, DONE }
+
+    private final HealthCheckService healthCheckService;
+    private final WebClient webClient;
+    private final WarmupProperties properties;
+    private volatile Phase phase;
+
+    public StartupWarmup(HealthCheckService healthCheckService, WebClient webClient, WarmupProperties properties) {
+        this.healthCheckService = healthCheckService;
+        this.webClient = webClient;
+        this.properties = properties;
+        this.phase = properties.isEnabled() ? Phase.STARTING : Phase.DONE;
+    }
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        if (phase == Phase.DONE) {
+            return;
+        }
+        String port = event.getApplicationContext().getEnvironment().getProperty("local.server.port");
+        run("http://127.0.0.1:" + port + "/route").subscribe();
+    }
+
+    @Override
+    public Health health() {
+        Phase current = phase;
+        return current == Phase.DONE ? Health.up().build() : Health.outOfService().withDetail("phase", current).build();
+    }
+
+    boolean isDone() {
+        return phase == Phase.DONE;
+    }
+
+    /**
+     * True for one of this router's own warm-up requests, which are the only ones to carry its token, so a client
+     * can't use the header to stay out of the access log.
+     */
+    public static boolean isWarmup(ServerHttpRequest request) {
+        String value = request.getHeaders().getFirst(HEADER);
+        return value != null && MessageDigest.isEqual(value.getBytes(StandardCharsets.US_ASCII), TOKEN_BYTES);
+    }
+
+    static String token() {
+        return TOKEN;
+    }
+
+    /**
+     * Adds {@link #HEADER} to backend calls made on behalf of a warm-up request, which the access log filter marks
+     * in the Reactor context.
+     */
+    public static ExchangeFilterFunction propagateHeader() {
+        return (request, next) -> Mono.deferContextual(context -> next.exchange(context.hasKey(HEADER)
+                ? ClientRequest.from(request).header(HEADER, "true").build()
+                : request));
+    }
+
+    /**
+     * The whole warm-up against the given /route URL; never fails, and always ends with the router ready.
+     */
+    Mono<Void> run(String routeUrl) {
+        long startNanos = System.nanoTime();
+        AtomicInteger routed = new AtomicInteger();
+        return Mono.defer(() -> enter(Phase.FIRST_SWEEP, healthCheckService.firstSweep()))
+                .then(Mono.defer(() -> enter(Phase.CONNECTIONS, openConnections())))
+                .then(Mono.defer(() -> enter(Phase.REQUESTS, route(routeUrl, routed))))
+                .timeout(properties.getTimeout())
+                .doOnSuccess(ignored -> log.info(
+                        "Warm-up done in {} ms: {} instances routable, {} of {} requests routed",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                        healthCheckService.getRoutingTable().size(), routed.get(), properties.getRequests()))
+                .onErrorResume(error -> {
+                    log.warn("Warm-up gave up in phase {} after {}, reporting ready anyway: {}", phase,
+                            properties.getTimeout(), error.toString());
+                    return Mono.empty();
+                })
+                .doOnTerminate(() -> phase = Phase.DONE);
+    }
+
+    private Mono<Void> enter(Phase next, Mono<Void> work) {
+        phase = next;
+        return work;
+    }
+
+    /** Concurrent probes, each holding a connection of its own while in flight. */
+    private Mono<Void> openConnections() {
+        int connections = properties.getConnectionsPerInstance();
+        List<BackendInstance> routable = healthCheckService.getAllInstances().stream()
+                .filter(BackendInstance::isRoutable)
+                .toList();
+        return Flux.fromIterable(routable)
+                .flatMap(instance -> Flux.range(0, connections)
+                        .flatMap(i -> webClient.get()
+                                .uri(instance.healthUri())
+                                .retrieve()
+                                .toBodilessEntity()
+                                .onErrorResume(error -> Mono.empty()), Math.max(1, connections)))
+                .then();
+    }
+
+    private Mono<Void> route(String routeUrl, AtomicInteger routed) {
+        return Flux.range(0, properties.getRequests())
+                .flatMap(i -> webClient.post()
+                        .uri(routeUrl)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HEADER, TOKEN)
+                        .bodyValue("{\"warmup\":" + i + "}")
+                        .retrieve()
+                        .toBodilessEntity()
+                        .doOnNext(response -> routed.incrementAndGet())
+                        .onErrorResume(error -> Mono.empty()), Math.max(1, properties.getConcurrency()))
+                .then();
+    }
+}
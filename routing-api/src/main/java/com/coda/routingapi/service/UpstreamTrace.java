@@ -0,0 +1,25 @@
+package com.coda.routingapi.service;
+
+/**
+ * Where a request was sent, for its access log record. The access log filter puts one in the Reactor context and
+ * {@link RoutingService} notes every attempt in it; a hedge can attempt from another thread, hence the locking.
+ */
+public final class UpstreamTrace {
+
+    private String upstream;
+    private int attempts;
+
+    synchronized void attempt(String baseUrl) {
+        upstream = baseUrl;
+        attempts++;
+    }
+
+    /** The instance of the latest attempt, or null if the request never reached the routing service. */
+    public synchronized String upstream() {
+        return upstream;
+    }
+
+    public synchronized int attempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,117 @@
+package com.coda.routingapi.config;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackendClientConfigurationTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private MockWebServer server;
+    private ConnectionProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        Metrics.addRegistry(registry);
+        server = new MockWebServer();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (provider != null) {
+            provider.disposeLater().block(Duration.ofSeconds(5));
+        }
+        server.shutdown();
+        Metrics.removeRegistry(registry);
+    }
+
+    @Test
+    void testH2cWithPriorKnowledge() throws Exception {
+        server.setProtocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE));
+        server.start();
+        server.enqueue(new MockResponse().setBody("{\"ok\":true}").addHeader("Content-Type", "application/json"));
+        BackendClientProperties properties = new BackendClientProperties();
+        properties.setProtocol(BackendClientProperties.Protocol.H2C);
+
+        StepVerifier.create(client(properties).get().uri(server.url("/api/echo").uri())
+                        .retrieve().bodyToMono(String.class))
+                .expectNext("{\"ok\":true}")
+                .verifyComplete();
+
+        RecordedRequest request = server.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals("/api/echo", request.getPath());
+    }
+
+    @Test
+    void testSaturatedPoolFailsFastAndIsVisible() throws Exception {
+        server.start();
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(1, TimeUnit.SECONDS));
+        BackendClientProperties properties = new BackendClientProperties();
+        properties.setMaxConnections(1);
+        properties.setPendingAcquireTimeout(Duration.ofMillis(100));
+        WebClient client = client(properties);
+
+        // holds the only connection for a second
+        client.get().uri(server.url("/slow").uri()).retrieve().bodyToMono(String.class)
+                .subscribe(body -> { }, error -> { });
+
+        long start = System.nanoTime();
+        StepVerifier.create(client.get().uri(server.url("/fast").uri()).retrieve().bodyToMono(String.class))
+                .expectError(WebClientRequestException.class)
+                .verify(Duration.ofSeconds(5));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 800);
+
+        assertEquals(1.0, registry.get("reactor.netty.connection.provider.max.connections").gauge().value());
+        assertEquals(1.0, registry.get("reactor.netty.connection.provider.active.connections").gauge().value());
+    }
+
+    @Test
+    void testHealthChecksHaveTheirOwnPool() throws Exception {
+        server.start();
+        server.enqueue(new MockResponse().setBody("slow").setHeadersDelay(1, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("{\"status\":\"UP\"}"));
+        BackendClientProperties properties = new BackendClientProperties();
+        properties.setMaxConnections(1);
+        properties.setPendingAcquireTimeout(Duration.ofMillis(100));
+        client(properties).get().uri(server.url("/slow").uri()).retrieve().bodyToMono(String.class)
+                .subscribe(body -> { }, error -> { });
+        assertEquals("/slow", server.takeRequest(1, TimeUnit.SECONDS).getPath());
+
+        ConnectionProvider healthChecks = BackendClientConfiguration.connectionProvider(new HealthCheckProperties(),
+                properties);
+        try {
+            WebClient probes = WebClient.builder()
+                    .clientConnector(BackendClientConfiguration.connector(healthChecks, properties))
+                    .build();
+            StepVerifier.create(probes.get().uri(server.url("/actuator/health").uri())
+                            .retrieve().bodyToMono(String.class))
+                    .expectNext("{\"status\":\"UP\"}")
+                    .verifyComplete();
+        } finally {
+            healthChecks.disposeLater().block(Duration.ofSeconds(5));
+        }
+    }
+
+    private WebClient client(BackendClientProperties properties) {
+        provider = BackendClientConfiguration.connectionProvider(properties);
+        return WebClient.builder()
+                .clientConnector(BackendClientConfiguration.connector(provider, properties))
+                .build();
+    }
+}
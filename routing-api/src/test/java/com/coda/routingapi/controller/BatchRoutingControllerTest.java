@@ -0,0 +1,190 @@
+package com.coda.routingapi.controller;
+
+import com.coda.routingapi.config.AdmissionProperties;
+import com.coda.routingapi.config.BatchProperties;
+import com.coda.routingapi.config.RateLimitProperties;
+import com.coda.routingapi.service.AdmissionGate;
+import com.coda.routingapi.service.ClientRateLimiter;
+import com.coda.routingapi.service.Deadline;
+import com.coda.routingapi.service.RoutingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+
+@Import({AdmissionGate.class, ClientRateLimiter.class, SimpleMeterRegistry.class})
+@EnableConfigurationProperties({AdmissionProperties.class, RateLimitProperties.class, BatchProperties.class})
+@WebFluxTest(value = BatchRoutingController.class, properties = {
+        "routing.batch.micro-batch-size=4",
+        "routing.batch.max-concurrency=3",
+        "routing.admission.max-in-flight=2"
+})
+class BatchRoutingControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private BatchRoutingController controller;
+
+    @Autowired
+    private AdmissionGate admissionGate;
+
+    @MockBean
+    private RoutingService routingService;
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(routingService.deadline(any())).thenReturn(Deadline.after(Duration.ofSeconds(5)));
+        // echoes each micro-batch after a random delay, so batches complete out of order
+        Mockito.when(routingService.forwardBatch(anyList(), any())).thenAnswer(invocation -> {
+            List<JsonNode> items = invocation.getArgument(0);
+            batchSizes.add(items.size());
+            ArrayNode results = JsonNodeFactory.instance.arrayNode().addAll(items);
+            return Mono.just((JsonNode) results)
+                    .delayElement(Duration.ofMillis(ThreadLocalRandom.current().nextInt(20)));
+        });
+    }
+
+    @Test
+    void testBatchComesBackInOrder() {
+        String body = IntStream.range(0, 10).mapToObj(i -> "{\"id\":" + i + "}")
+                .collect(Collectors.joining(",", "[", "]"));
+
+        webTestClient.post()
+                .uri("/route/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(10)
+                .jsonPath("$[0].id").isEqualTo(0)
+                .jsonPath("$[5].id").isEqualTo(5)
+                .jsonPath("$[9].id").isEqualTo(9);
+
+        assertEquals(10, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 4), "batches " + batchSizes);
+        // one deadline for the whole request, shared by its micro-batches
+        Mockito.verify(routingService, Mockito.times(1)).deadline(any());
+        assertEquals(0, admissionGate.inFlight());
+    }
+
+    @Test
+    void testNdjsonStreamComesBackInOrder() {
+        String body = IntStream.range(0, 25).mapToObj(i -> "{\"id\":" + i + "}")
+                .collect(Collectors.joining("\n", "", "\n"));
+
+        List<JsonNode> results = webTestClient.post()
+                .uri("/route/stream")
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .accept(MediaType.parseMediaType("application/x-ndjson"))
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(JsonNode.class)
+                .getResponseBody()
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(25, results.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals(i, results.get(i).get("id").asInt());
+        }
+    }
+
+    @Test
+    void testFailedMicroBatchYieldsOneErrorPerDocument() {
+        Mockito.when(routingService.forwardBatch(anyList(), any()))
+                .thenReturn(Mono.error(new RuntimeException("All healthy instances failed or are in OPEN state")));
+
+        webTestClient.post()
+                .uri("/route/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"id\":1},{\"id\":2},{\"id\":3}]")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[2].status").isEqualTo("error");
+    }
+
+    @Test
+    void testShedWhenTheGateIsFull() {
+        assertTrue(admissionGate.tryAcquire());
+        try {
+            webTestClient.post()
+                    .uri("/route/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("[{\"id\":1}]")
+                    .exchange()
+                    .expectStatus().isEqualTo(503)
+                    .expectHeader().exists(HttpHeaders.RETRY_AFTER)
+                    .expectBody()
+                    .jsonPath("$[0].message").isEqualTo("Too many requests in flight");
+        } finally {
+            admissionGate.release();
+        }
+        Mockito.verify(routingService, Mockito.never()).forwardBatch(anyList(), any());
+    }
+
+    @Test
+    void testSlotIsOnlyHeldWhileTheBodyIsBeingWritten() {
+        Flux<JsonNode> items = Flux.just(JsonNodeFactory.instance.objectNode().put("id", 1));
+        MockServerHttpRequest request = MockServerHttpRequest.post("/route/batch").build();
+
+        // a response whose body is never subscribed takes no slot at all
+        Flux<JsonNode> body = controller.batch(items, null, request, new MockServerHttpResponse());
+        assertEquals(0, admissionGate.inFlight());
+
+        // one that is abandoned mid-way gives its slot back
+        Disposable subscription = controller.batch(Flux.never(), null, request, new MockServerHttpResponse())
+                .subscribe();
+        assertEquals(1, admissionGate.inFlight());
+        subscription.dispose();
+        assertEquals(0, admissionGate.inFlight());
+
+        assertEquals(1, body.collectList().block(Duration.ofSeconds(5)).size());
+        assertEquals(0, admissionGate.inFlight());
+    }
+
+    @TestConfiguration
+    static class WebClientTestConfig {
+        @Bean
+        public WebClient.Builder webClientBuilder() {
+            return WebClient.builder();
+        }
+    }
+}
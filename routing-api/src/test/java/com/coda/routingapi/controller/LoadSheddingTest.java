@@ -0,0 +1,178 @@
+package com.coda.routingapi.controller;
+
+import com.coda.routingapi.config.AdmissionProperties;
+import com.coda.routingapi.config.CoalescingProperties;
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import com.coda.routingapi.config.DeadlineProperties;
+import com.coda.routingapi.config.HedgingProperties;
+import com.coda.routingapi.config.OutlierDetectionProperties;
+import com.coda.routingapi.config.RateLimitProperties;
+import com.coda.routingapi.config.ResponseCacheProperties;
+import com.coda.routingapi.config.RetryProperties;
+import com.coda.routingapi.loadbalancer.LeastOutstandingLoadBalancer;
+import com.coda.routingapi.service.AdaptiveConcurrencyLimiter;
+import com.coda.routingapi.service.AdmissionGate;
+import com.coda.routingapi.service.ClientRateLimiter;
+import com.coda.routingapi.service.HealthCheckService;
+import com.coda.routingapi.service.HedgingPolicy;
+import com.coda.routingapi.service.OutlierDetector;
+import com.coda.routingapi.service.RequestCoalescer;
+import com.coda.routingapi.service.ResponseCache;
+import com.coda.routingapi.service.RetryPolicy;
+import com.coda.routingapi.service.RoutingService;
+import com.coda.routingapi.service.TestBackends;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Overload without a wall clock: the backend holds every request until the test answers it, so what reaches it
+ * and what is shed depends only on the configured limits. The open-loop goodput check at twice a real backend's
+ * capacity is routing-loadtest's {@code OverloadTest}.
+ */
+class LoadSheddingTest {
+
+    private static final List<String> INSTANCES = List.of("http://backend-1", "http://backend-2");
+    private static final MockServerHttpRequest REQUEST = MockServerHttpRequest.post("/route").build();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonNode payload = mapper.createObjectNode().put("key", "value");
+    private final List<Sinks.One<ClientResponse>> held = new ArrayList<>();
+    private final List<ResponseEntity<Object>> responses = new ArrayList<>();
+    private AdmissionProperties admissionProperties;
+    private ConcurrencyLimitProperties limitProperties;
+    private AdmissionGate admissionGate;
+
+    @BeforeEach
+    void setUp() {
+        admissionProperties = new AdmissionProperties();
+        limitProperties = new ConcurrencyLimitProperties();
+        limitProperties.setEnabled(true);
+        limitProperties.setInitialLimit(3);
+    }
+
+    @Test
+    void testConcurrencyLimitShedsWhatTheInstancesCannotTake() {
+        RoutingController controller = controller();
+
+        send(controller, 10);
+
+        // two instances at three each; the other four are turned away at once, never queued
+        assertEquals(6, held.size());
+        assertEquals(4, responses.size());
+        responses.forEach(LoadSheddingTest::assertShed);
+
+        answerAll();
+        assertEquals(10, responses.size());
+        assertEquals(6, responses.stream().filter(response -> response.getStatusCode().is2xxSuccessful()).count());
+        assertEquals(0, admissionGate.inFlight());
+    }
+
+    @Test
+    void testAdmissionGateShedsOverItsCap() {
+        admissionProperties.setMaxInFlight(5);
+        RoutingController controller = controller();
+
+        send(controller, 10);
+
+        // normal priority may fill 90% of the cap
+        assertEquals(4, held.size());
+        assertEquals(6, responses.size());
+        responses.forEach(LoadSheddingTest::assertShed);
+        assertEquals(4, admissionGate.inFlight());
+
+        answerAll();
+        assertEquals(0, admissionGate.inFlight());
+        send(controller, 1);
+        assertEquals(5, held.size());
+    }
+
+    @Test
+    void testSelfDeclaredPriorityDoesNotSkipShedding() {
+        admissionProperties.setMaxInFlight(5);
+        admissionProperties.setClientPriorities(Map.of("ops", "critical"));
+        RoutingController controller = controller();
+
+        send(controller, 10, MockServerHttpRequest.post("/route").header("X-Priority", "critical").build());
+
+        // admitted as normal, so still held to 90% of the cap
+        assertEquals(4, held.size());
+        assertEquals(6, responses.size());
+        responses.forEach(LoadSheddingTest::assertShed);
+
+        // the last slot is only for the client configured as critical
+        send(controller, 1, MockServerHttpRequest.post("/route").header("X-Api-Key", "ops").build());
+        assertEquals(5, held.size());
+    }
+
+    private RoutingController controller() {
+        WebClient.Builder builder = WebClient.builder().exchangeFunction(request -> {
+            if (request.method() == HttpMethod.GET) {
+                return Mono.just(json("{\"status\":\"UP\"}"));
+            }
+            Sinks.One<ClientResponse> response = Sinks.one();
+            held.add(response);
+            return response.asMono();
+        });
+        HealthCheckService healthCheckService = TestBackends.healthCheckService(builder, INSTANCES);
+        healthCheckService.sweep().block(Duration.ofSeconds(5));
+        assertEquals(INSTANCES.size(), healthCheckService.getRoutingTable().size());
+
+        RoutingService routingService = new RoutingService(builder, healthCheckService,
+                new LeastOutstandingLoadBalancer(),
+                new OutlierDetector(healthCheckService, new OutlierDetectionProperties()),
+                new HedgingPolicy(new HedgingProperties()),
+                new AdaptiveConcurrencyLimiter(limitProperties),
+                new RetryPolicy(new RetryProperties(), new SimpleMeterRegistry()), new DeadlineProperties());
+        admissionGate = new AdmissionGate(admissionProperties, new SimpleMeterRegistry());
+        return new RoutingController(routingService, admissionGate,
+                new ClientRateLimiter(new RateLimitProperties(), new SimpleMeterRegistry()),
+                new ResponseCache(new ResponseCacheProperties(), mapper, new SimpleMeterRegistry()),
+                new RequestCoalescer(new CoalescingProperties()));
+    }
+
+    private void send(RoutingController controller, int requests) {
+        send(controller, requests, REQUEST);
+    }
+
+    private void send(RoutingController controller, int requests, MockServerHttpRequest request) {
+        for (int i = 0; i < requests; i++) {
+            controller.route(payload, null, null, null, request).subscribe(responses::add);
+        }
+    }
+
+    private void answerAll() {
+        held.forEach(response -> response.tryEmitValue(json("{\"message\":\"ok\"}")));
+    }
+
+    private static ClientResponse json(String body) {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+
+    private static void assertShed(ResponseEntity<Object> response) {
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertTrue(response.getHeaders().containsKey(HttpHeaders.RETRY_AFTER));
+    }
+}
@@ -0,0 +1,207 @@
+package com.coda.routingapi.controller;
+
+import com.coda.routingapi.config.AdmissionProperties;
+import com.coda.routingapi.config.CoalescingProperties;
+import com.coda.routingapi.config.RateLimitProperties;
+import com.coda.routingapi.config.ResponseCacheProperties;
+import com.coda.routingapi.service.AdmissionGate;
+import com.coda.routingapi.service.ClientRateLimiter;
+import com.coda.routingapi.service.Deadline;
+import com.coda.routingapi.service.PassthroughValidation;
+import com.coda.routingapi.service.RawPayload;
+import com.coda.routingapi.service.RequestCoalescer;
+import com.coda.routingapi.service.ResponseCache;
+import com.coda.routingapi.service.RoutingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+
+@Import({AdmissionGate.class, ClientRateLimiter.class, ResponseCache.class, RequestCoalescer.class,
+        SimpleMeterRegistry.class})
+@EnableConfigurationProperties({AdmissionProperties.class, RateLimitProperties.class, ResponseCacheProperties.class,
+        CoalescingProperties.class})
+@WebFluxTest(value = PassthroughRoutingController.class, properties = {
+        "routing.passthrough.enabled=true",
+        "routing.passthrough.validation=envelope",
+        "routing.coalescing.enabled=true"
+})
+class PassthroughRoutingControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private PassthroughRoutingController controller;
+
+    @MockBean
+    private RoutingService routingService;
+
+    @Test
+    void testRouteSuccess() {
+        byte[] responseBody = "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+        AtomicReference<RawPayload> forwarded = new AtomicReference<>();
+
+        Mockito.when(routingService.forwardRaw(any(RawPayload.class), anyLong(), anyBoolean(), any()))
+                .thenAnswer(invocation -> {
+                    forwarded.set(invocation.getArgument(0));
+                    return Mono.just(ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(responseBody));
+                });
+
+        webTestClient.post()
+                .uri("/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"game\":\"Mobile Legends\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("ok");
+
+        // the request's reference and the forwarded call's are each released exactly once
+        assertEquals(0, forwarded.get().content().refCnt());
+    }
+
+    @Test
+    void testRouteRejectsNonJsonEnvelope() {
+        webTestClient.post()
+                .uri("/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("not json")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("error");
+
+        Mockito.verifyNoInteractions(routingService);
+    }
+
+    @Test
+    void testRouteFailure() {
+        Mockito.when(routingService.forwardRaw(any(RawPayload.class), anyLong(), anyBoolean(), any()))
+                .thenReturn(Mono.error(new RuntimeException("No healthy instances")));
+
+        webTestClient.post()
+                .uri("/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"game\":\"PUBG\"}")
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("error")
+                .jsonPath("$.message").isEqualTo("No healthy instances");
+    }
+
+    @Test
+    void testOnlyRequestsWithTheSameRoutingAndIdempotencyKeysAreCoalesced() {
+        Mockito.when(routingService.forwardRaw(any(RawPayload.class), anyLong(), anyBoolean(), any()))
+                .thenReturn(Mono.never());
+        String[][] routingAndIdempotencyKeys = {
+                {null, null}, {null, null}, {"user-1", null}, {"user-2", null}, {null, "op-1"}, {null, "op-1"},
+                {null, "op-2"}};
+        List<Disposable> pending = new ArrayList<>();
+        try {
+            for (String[] keys : routingAndIdempotencyKeys) {
+                MockServerHttpRequest.BodyBuilder request = MockServerHttpRequest.post("/route")
+                        .contentType(MediaType.APPLICATION_JSON);
+                if (keys[0] != null) {
+                    request.header("X-Routing-Key", keys[0]);
+                }
+                if (keys[1] != null) {
+                    request.header("Idempotency-Key", keys[1]);
+                }
+                pending.add(controller.route(request.body("{\"game\":\"Go\"}")).subscribe());
+            }
+
+            // one call each for no keys, user-1, user-2, op-1 and op-2
+            Mockito.verify(routingService, Mockito.times(5))
+                    .forwardRaw(any(RawPayload.class), anyLong(), anyBoolean(), any());
+        } finally {
+            pending.forEach(Disposable::dispose);
+        }
+    }
+
+    @Test
+    void testResponseIsStreamedWhenNothingKeepsIt() {
+        RoutingService service = Mockito.mock(RoutingService.class);
+        Flux<DataBuffer> body = Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(new byte[]{'{', '}'}));
+        Mockito.when(service.streamRaw(any(RawPayload.class), anyLong(), any()))
+                .thenReturn(Mono.just(ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).contentLength(2)
+                        .body(body)));
+        Mockito.when(service.deadline(any())).thenReturn(Deadline.after(Duration.ofSeconds(1)));
+
+        ResponseEntity<Flux<DataBuffer>> response = withoutCacheOrCoalescing(service).route(
+                MockServerHttpRequest.post("/route")
+                        .contentType(MediaType.APPLICATION_JSON).body("{\"game\":\"Go\"}"))
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(2, response.getHeaders().getContentLength());
+        assertSame(body, response.getBody());
+        Mockito.verify(service, Mockito.never()).forwardRaw(any(RawPayload.class), anyLong(), anyBoolean(), any());
+    }
+
+    @Test
+    void testRequestThatMayBeHedgedIsNotStreamed() {
+        RoutingService service = Mockito.mock(RoutingService.class);
+        Mockito.when(service.hedges(true)).thenReturn(true);
+        Mockito.when(service.forwardRaw(any(RawPayload.class), anyLong(), eq(true), any()))
+                .thenReturn(Mono.just(ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                        .body(new byte[]{'{', '}'})));
+        Mockito.when(service.deadline(any())).thenReturn(Deadline.after(Duration.ofSeconds(1)));
+
+        ResponseEntity<Flux<DataBuffer>> response = withoutCacheOrCoalescing(service).route(
+                MockServerHttpRequest.post("/route").header("Idempotency-Key", "op-1")
+                        .contentType(MediaType.APPLICATION_JSON).body("{\"game\":\"Go\"}"))
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Mockito.verify(service, Mockito.never()).streamRaw(any(RawPayload.class), anyLong(), any());
+    }
+
+    private static PassthroughRoutingController withoutCacheOrCoalescing(RoutingService service) {
+        return new PassthroughRoutingController(service,
+                PassthroughValidation.ENVELOPE, new AdmissionGate(new AdmissionProperties(), new SimpleMeterRegistry()),
+                new ClientRateLimiter(new RateLimitProperties(), new SimpleMeterRegistry()),
+                new ResponseCache(new ResponseCacheProperties(), new ObjectMapper(), new SimpleMeterRegistry()),
+                new RequestCoalescer(new CoalescingProperties()), "X-Routing-Key");
+    }
+
+    @TestConfiguration
+    static class WebClientTestConfig {
+        @Bean
+        public WebClient.Builder webClientBuilder() {
+            return WebClient.builder();
+        }
+    }
+}
@@ -1,29 +1,63 @@
 package com.coda.routingapi.controller;
 
+import com.coda.routingapi.config.AdmissionProperties;
+import com.coda.routingapi.config.CoalescingProperties;
+import com.coda.routingapi.config.RateLimitProperties;
+import com.coda.routingapi.config.ResponseCacheProperties;
+import com.coda.routingapi.service.AdmissionGate;
+import com.coda.routingapi.service.ClientRateLimiter;
+import com.coda.routingapi.service.DeadlineExceededException;
+import com.coda.routingapi.service.OverloadedException;
+import com.coda.routingapi.service.RequestCoalescer;
+import com.coda.routingapi.service.ResponseCache;
 import com.coda.routingapi.service.RoutingService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 
-@WebFluxTest(RoutingController.class)
+@Import({AdmissionGate.class, ClientRateLimiter.class, ResponseCache.class, RequestCoalescer.class,
+        SimpleMeterRegistry.class})
+@EnableConfigurationProperties({AdmissionProperties.class, RateLimitProperties.class, ResponseCacheProperties.class,
+        CoalescingProperties.class})
+@WebFluxTest(value = RoutingController.class, properties = {
+        "routing.cache.enabled=true",
+        "routing.rate-limit.enabled=true",
+        "routing.rate-limit.rate=1",
+        "routing.rate-limit.burst=20",
+        "routing.coalescing.enabled=true"
+})
 class RoutingControllerTest {
 
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    private RoutingController controller;
+
     @MockBean
     private RoutingService routingService;
 
@@ -35,7 +69,7 @@ class RoutingControllerTest {
         ObjectNode responseBody = JsonNodeFactory.instance.objectNode();
         responseBody.put("status", "ok");
 
-        Mockito.when(routingService.forward(any(JsonNode.class)))
+        Mockito.when(routingService.forward(any(JsonNode.class), anyLong(), anyBoolean(), any()))
                 .thenReturn(Mono.just(responseBody));
 
         webTestClient.post()
@@ -53,7 +87,7 @@ class RoutingControllerTest {
         ObjectNode requestBody = JsonNodeFactory.instance.objectNode();
         requestBody.put("game", "PUBG");
 
-        Mockito.when(routingService.forward(any(JsonNode.class)))
+        Mockito.when(routingService.forward(any(JsonNode.class), anyLong(), anyBoolean(), any()))
                 .thenReturn(Mono.error(new RuntimeException("No healthy instances")));
 
         webTestClient.post()
@@ -67,6 +101,145 @@ class RoutingControllerTest {
                 .jsonPath("$.message").isEqualTo("No healthy instances");
     }
 
+    @Test
+    void testRouteShedWhenInstancesAreAtTheirLimit() {
+        ObjectNode requestBody = JsonNodeFactory.instance.objectNode();
+        requestBody.put("game", "Valorant");
+
+        Mockito.when(routingService.forward(any(JsonNode.class), anyLong(), anyBoolean(), any()))
+                .thenReturn(Mono.error(new OverloadedException("All healthy instances are at their concurrency limit")));
+
+        webTestClient.post()
+                .uri("/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requestBody)
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals("Retry-After", "1")
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("error");
+    }
+
+    @Test
+    void testRouteDeadlineExceeded() {
+        ObjectNode requestBody = JsonNodeFactory.instance.objectNode();
+        requestBody.put("game", "Dota 2");
+
+        Mockito.when(routingService.forward(any(JsonNode.class), anyLong(), anyBoolean(), any()))
+                .thenReturn(Mono.error(new DeadlineExceededException("Deadline exceeded after 1 attempts")));
+
+        webTestClient.post()
+                .uri("/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("X-Request-Timeout-Ms", "50")
+                .bodyValue(requestBody)
+                .exchange()
+                .expectStatus().isEqualTo(504)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("error");
+
+        Mockito.verify(routingService).deadline("50");
+    }
+
+    @Test
+    void testRepeatedPayloadServedFromCache() {
+        ObjectNode responseBody = JsonNodeFactory.instance.objectNode();
+        responseBody.put("status", "ok");
+
+        Mockito.when(routingService.forward(any(JsonNode.class), anyLong(), anyBoolean(), any()))
+                .thenReturn(Mono.just(responseBody));
+
+        for (String body : new String[]{"{\"game\":\"Chess\",\"players\":2}", "{\"players\": 2, \"game\": \"Chess\"}"}) {
+            webTestClient.post()
+                    .uri("/route")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(body)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                    .expectBody()
+                    .jsonPath("$.status").isEqualTo("ok");
+        }
+
+        // same document with its fields reordered: the second request never reached the service
+        Mockito.verify(routingService, Mockito.times(1)).forward(any(JsonNode.class), anyLong(), anyBoolean(), any());
+    }
+
+    @Test
+    void testNoisyClientIsLimitedAndOthersAreNot() {
+        ObjectNode responseBody = JsonNodeFactory.instance.objectNode();
+        responseBody.put("status", "ok");
+
+        Mockito.when(routingService.forward(any(JsonNode.class), anyLong(), anyBoolean(), any()))
+                .thenReturn(Mono.just(responseBody));
+
+        for (int i = 0; i < 20; i++) {
+            route("noisy").expectStatus().isOk();
+        }
+        route("noisy")
+                .expectStatus().isEqualTo(429)
+                .expectHeader().valueEquals("Retry-After", "1")
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Rate limit exceeded");
+        route("quiet").expectStatus().isOk();
+    }
+
+    @Test
+    void testOnlyRequestsWithTheSameRoutingAndIdempotencyKeysAreCoalesced() {
+        Mockito.when(routingService.forward(any(JsonNode.class), anyLong(), anyBoolean(), any()))
+                .thenReturn(Mono.never());
+        JsonNode payload = JsonNodeFactory.instance.objectNode().put("game", "Go");
+        MockServerHttpRequest request = MockServerHttpRequest.post("/route").header("X-Api-Key", "coalescing").build();
+        String[][] routingAndIdempotencyKeys = {
+                {null, null}, {null, null}, {"user-1", null}, {"user-2", null}, {null, "op-1"}, {null, "op-1"},
+                {null, "op-2"}};
+        List<Disposable> pending = new ArrayList<>();
+        try {
+            for (String[] keys : routingAndIdempotencyKeys) {
+                pending.add(controller.route(payload, null, keys[1], keys[0], request).subscribe());
+            }
+
+            // one call each for no keys, user-1, user-2, op-1 and op-2
+            Mockito.verify(routingService, Mockito.times(5))
+                    .forward(any(JsonNode.class), anyLong(), anyBoolean(), any());
+        } finally {
+            pending.forEach(Disposable::dispose);
+        }
+    }
+
+    @Test
+    void testOnlyRequestsWithAnIdempotencyKeyMayBeHedged() {
+        Mockito.when(routingService.forward(any(JsonNode.class), anyLong(), anyBoolean(), any()))
+                .thenReturn(Mono.just(JsonNodeFactory.instance.objectNode()));
+
+        // payloads and key not seen by other tests, so neither answer comes from the cache
+        webTestClient.post()
+                .uri("/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"game\":\"Hanabi\"}")
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.post()
+                .uri("/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", "hedging-op")
+                .bodyValue("{\"game\":\"Hanabi\",\"players\":3}")
+                .exchange()
+                .expectStatus().isOk();
+
+        Mockito.verify(routingService).forward(any(JsonNode.class), anyLong(), eq(false), any());
+        Mockito.verify(routingService).forward(any(JsonNode.class), anyLong(), eq(true), any());
+    }
+
+    private WebTestClient.ResponseSpec route(String apiKey) {
+        return webTestClient.post()
+                .uri("/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("X-Api-Key", apiKey)
+                .bodyValue("{\"game\":\"Tetris\"}")
+                .exchange();
+    }
+
     @TestConfiguration
     static class WebClientTestConfig {
         @Bean
@@ -0,0 +1,162 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import com.coda.routingapi.config.ConsistentHashProperties;
+import com.coda.routingapi.service.AdaptiveConcurrencyLimiter;
+import com.coda.routingapi.service.BackendInstance;
+import com.coda.routingapi.service.RoutingTable;
+import com.coda.routingapi.service.TestBackends;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashLoadBalancerTest {
+
+    private static final int KEYS = 10_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ConsistentHashProperties properties;
+    private AdaptiveConcurrencyLimiter limiter;
+    private ConsistentHashLoadBalancer lb;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ConsistentHashProperties();
+        properties.setKeyPointer("/tenant");
+        ConcurrencyLimitProperties limits = new ConcurrencyLimitProperties();
+        limits.setEnabled(false);
+        limiter = new AdaptiveConcurrencyLimiter(limits);
+        lb = new ConsistentHashLoadBalancer(properties, limiter);
+    }
+
+    @Test
+    void testSameKeyAlwaysGoesToSameInstance() {
+        RoutingTable table = table(instances(5));
+        long key = lb.routingKey("acme", null);
+
+        int first = lb.select(table, key);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first, lb.select(table, key));
+        }
+    }
+
+    @Test
+    void testKeysSpreadEvenly() {
+        RoutingTable table = table(instances(10));
+        int[] counts = new int[table.size()];
+        for (int i = 0; i < KEYS; i++) {
+            counts[lb.select(table, lb.routingKey("tenant-" + i, null))]++;
+        }
+        for (int count : counts) {
+            // 160 points per instance keeps every share within ~25% of the mean
+            assertTrue(count > KEYS / 10 * 0.75 && count < KEYS / 10 * 1.25, "share " + count);
+        }
+    }
+
+    @Test
+    void testLosingAnInstanceMovesOnlyItsKeys() {
+        List<BackendInstance> instances = instances(10);
+        RoutingTable full = table(instances);
+        BackendInstance removed = instances.get(3);
+        List<BackendInstance> remaining = new ArrayList<>(instances);
+        remaining.remove(removed);
+        RoutingTable degraded = table(remaining);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            long key = lb.routingKey("tenant-" + i, null);
+            BackendInstance before = full.get(lb.select(full, key));
+            BackendInstance after = degraded.get(lb.select(degraded, key));
+            if (before != removed) {
+                assertSame(before, after, "key of a surviving instance moved");
+            } else {
+                moved++;
+            }
+        }
+        // about 1/N of the keys
+        assertTrue(moved > KEYS / 10 * 0.75 && moved < KEYS / 10 * 1.25, "moved " + moved);
+
+        // and they all come back once it recovers
+        for (int i = 0; i < 100; i++) {
+            long key = lb.routingKey("tenant-" + i, null);
+            assertEquals(ConsistentHashRing.of(full, properties.getVirtualNodes()).owner(key), lb.select(full, key));
+        }
+    }
+
+    @Test
+    void testHotKeySpillsOverOnceItsOwnerIsAboveTheBound() {
+        RoutingTable table = table(instances(4));
+        long key = lb.routingKey("hot-tenant", null);
+        int owner = lb.select(table, key);
+
+        // the owner carries everything in flight: well above 1.25x the average
+        for (int i = 0; i < 8; i++) {
+            limiter.tryAcquire(table.get(owner));
+        }
+        int overflow = lb.select(table, key);
+        assertNotEquals(owner, overflow);
+        // the spill is sticky too
+        assertEquals(overflow, lb.select(table, key));
+
+        for (int i = 0; i < 8; i++) {
+            limiter.release(table.get(owner));
+        }
+        assertEquals(owner, lb.select(table, key));
+    }
+
+    @Test
+    void testUnboundedLoadNeverSpills() {
+        properties.setLoadFactor(0);
+        RoutingTable table = table(instances(4));
+        long key = lb.routingKey("hot-tenant", null);
+        int owner = lb.select(table, key);
+        for (int i = 0; i < 8; i++) {
+            limiter.tryAcquire(table.get(owner));
+        }
+
+        assertEquals(owner, lb.select(table, key));
+    }
+
+    @Test
+    void testRoutingKeyFromHeaderOrPayload() throws Exception {
+        JsonNode numeric = mapper.readTree("{\"tenant\":42,\"game\":\"Chess\"}");
+        JsonNode textual = mapper.readTree("{\"game\":\"Go\",\"tenant\":\"42\"}");
+
+        long fromHeader = lb.routingKey("42", null);
+        assertNotEquals(LoadBalancer.NO_KEY, fromHeader);
+        assertEquals(fromHeader, lb.routingKey(null, numeric));
+        assertEquals(fromHeader, lb.routingKey(null, textual));
+        // the header wins over the payload
+        assertEquals(lb.routingKey("other", null), lb.routingKey("other", numeric));
+
+        assertEquals(LoadBalancer.NO_KEY, lb.routingKey(null, mapper.readTree("{\"game\":\"Chess\"}")));
+        assertEquals(LoadBalancer.NO_KEY, lb.routingKey(null, null));
+    }
+
+    @Test
+    void testRequestsWithoutKeyAreSpreadRoundRobin() {
+        RoutingTable table = table(instances(3));
+
+        assertEquals(List.of(0, 1, 2, 0), List.of(
+                lb.select(table, LoadBalancer.NO_KEY), lb.select(table, LoadBalancer.NO_KEY),
+                lb.select(table, LoadBalancer.NO_KEY), lb.select(table, LoadBalancer.NO_KEY)));
+    }
+
+    private static List<BackendInstance> instances(int count) {
+        List<BackendInstance> instances = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            instances.add(TestBackends.instance("http://app-" + i + ":8081"));
+        }
+        return instances;
+    }
+
+    private static RoutingTable table(List<BackendInstance> instances) {
+        return RoutingTable.of(instances);
+    }
+}
@@ -0,0 +1,119 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.service.BackendInstance;
+import com.coda.routingapi.service.RoutingTable;
+import com.coda.routingapi.service.TestBackends;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadBalancerTest {
+
+    @Test
+    void testRoundRobinCyclesInOrder() {
+        RoutingTable table = table(1, 1, 1);
+        LoadBalancer lb = new RoundRobinLoadBalancer();
+
+        assertEquals(List.of(0, 1, 2, 0, 1, 2), picks(lb, table, 6));
+    }
+
+    @Test
+    void testSmoothWeightedRoundRobinInterleaves() {
+        RoutingTable table = table(5, 1, 1);
+        LoadBalancer lb = new WeightedRoundRobinLoadBalancer();
+
+        // nginx reference sequence for weights 5,1,1
+        assertEquals(List.of(0, 0, 1, 0, 2, 0, 0), picks(lb, table, 7));
+    }
+
+    @Test
+    void testSmoothWeightedRoundRobinKeepsItsRatioAcrossTableChanges() {
+        RoutingTable before = table(5, 1, 1);
+        RoutingTable after = RoutingTable.of(List.of(before.get(0), before.get(1), before.get(2)));
+        LoadBalancer lb = new WeightedRoundRobinLoadBalancer();
+
+        // requests holding the old and the new snapshot interleave while a change is published
+        int first = 0;
+        for (int i = 0; i < 70; i++) {
+            if (lb.select(i % 2 == 0 ? before : after) == 0) {
+                first++;
+            }
+        }
+        assertEquals(50, first);
+    }
+
+    @Test
+    void testWeightedScheduleIsReducedByTheCommonDivisor() {
+        assertArrayEquals(new int[] {0, 0, 1, 0, 2, 0, 0}, table(50, 10, 10).weightedSchedule());
+    }
+
+    @Test
+    void testWeightedScheduleOfLargeWeightsIsScaledDown() {
+        int[] schedule = table(1_000_000, 999_000, 997_000, 1).weightedSchedule();
+        int[] counts = new int[4];
+        for (int index : schedule) {
+            counts[index]++;
+        }
+
+        // each share rounded on its own, and the smallest kept at one pick
+        assertArrayEquals(new int[] {1367, 1366, 1363, 1}, counts);
+        assertEquals(4097, schedule.length);
+        assertEquals(2996, table(1000, 999, 997).weightedSchedule().length);
+    }
+
+    @Test
+    void testLeastOutstandingAvoidsBusyInstances() {
+        RoutingTable table = table(1, 1, 1);
+        table.get(0).incrementInFlight();
+        table.get(0).incrementInFlight();
+        table.get(2).incrementInFlight();
+        LoadBalancer lb = new LeastOutstandingLoadBalancer();
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, lb.select(table));
+        }
+    }
+
+    @Test
+    void testLeastOutstandingSpreadsTies() {
+        RoutingTable table = table(1, 1, 1);
+        LoadBalancer lb = new LeastOutstandingLoadBalancer();
+
+        assertEquals(List.of(0, 1, 2), picks(lb, table, 3));
+    }
+
+    @Test
+    void testPowerOfTwoChoicesNeverPicksTheBusiestOfTwo() {
+        RoutingTable table = table(1, 1);
+        table.get(1).incrementInFlight();
+        LoadBalancer lb = new PowerOfTwoChoicesLoadBalancer();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, lb.select(table));
+        }
+    }
+
+    @Test
+    void testPowerOfTwoChoicesSingleInstance() {
+        assertEquals(0, new PowerOfTwoChoicesLoadBalancer().select(table(1)));
+    }
+
+    private static List<Integer> picks(LoadBalancer lb, RoutingTable table, int count) {
+        List<Integer> picks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            picks.add(lb.select(table));
+        }
+        return picks;
+    }
+
+    private static RoutingTable table(int... weights) {
+        List<BackendInstance> instances = new ArrayList<>();
+        for (int i = 0; i < weights.length; i++) {
+            instances.add(TestBackends.instance("http://instance-" + i, weights[i]));
+        }
+        return RoutingTable.of(instances);
+    }
+}
@@ -0,0 +1,157 @@
+package com.coda.routingapi.loadbalancer;
+
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import com.coda.routingapi.config.DeadlineProperties;
+import com.coda.routingapi.config.HedgingProperties;
+import com.coda.routingapi.config.OutlierDetectionProperties;
+import com.coda.routingapi.config.RetryProperties;
+import com.coda.routingapi.service.AdaptiveConcurrencyLimiter;
+import com.coda.routingapi.service.BackendInstance;
+import com.coda.routingapi.service.HealthCheckService;
+import com.coda.routingapi.service.HedgingPolicy;
+import com.coda.routingapi.service.OutlierDetector;
+import com.coda.routingapi.service.RetryPolicy;
+import com.coda.routingapi.service.RoutingService;
+import com.coda.routingapi.service.TestBackends;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.*;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeakEwmaLoadBalancerTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private MockWebServer slowServer, fastServer1, fastServer2;
+    private final AtomicInteger slowEchoCount = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        slowServer = new MockWebServer();
+        fastServer1 = new MockWebServer();
+        fastServer2 = new MockWebServer();
+        slowServer.setDispatcher(backend(300, slowEchoCount));
+        fastServer1.setDispatcher(backend(0, new AtomicInteger()));
+        fastServer2.setDispatcher(backend(0, new AtomicInteger()));
+        slowServer.start();
+        fastServer1.start();
+        fastServer2.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        slowServer.shutdown();
+        fastServer1.shutdown();
+        fastServer2.shutdown();
+    }
+
+    @Test
+    void testPeakReplacesEstimateImmediately() {
+        PeakEwma ewma = new PeakEwma();
+        double tau = 10_000 * MS / Math.log(2);
+        long now = System.nanoTime();
+
+        ewma.observe(5 * MS, now, tau);
+        ewma.observe(200 * MS, now, tau);
+
+        assertEquals(200 * MS, ewma.cost(now, tau), 1.0);
+    }
+
+    @Test
+    void testEstimateDecaysByHalfLife() {
+        PeakEwma ewma = new PeakEwma();
+        double tau = 10_000 * MS / Math.log(2);
+        long now = System.nanoTime();
+
+        ewma.observe(100 * MS, now, tau);
+
+        assertEquals(50 * MS, ewma.cost(now + 10_000 * MS, tau), 1e3);
+    }
+
+    @Test
+    void testOutstandingRequestsWeighScore() {
+        PeakEwmaLoadBalancer lb = new PeakEwmaLoadBalancer(Duration.ofSeconds(10), Duration.ofSeconds(2));
+        BackendInstance instance = TestBackends.instance("http://instance");
+        lb.onResponse(instance, 10 * MS, true);
+        long now = System.nanoTime();
+        double idle = lb.score(instance, now);
+
+        instance.incrementInFlight();
+        instance.incrementInFlight();
+
+        assertEquals(3 * idle, lb.score(instance, now), idle * 0.01);
+    }
+
+    @Test
+    void testFailuresScoreAtLeastThePenalty() {
+        PeakEwmaLoadBalancer lb = new PeakEwmaLoadBalancer(Duration.ofSeconds(10), Duration.ofSeconds(2));
+        BackendInstance instance = TestBackends.instance("http://instance");
+
+        lb.onResponse(instance, 1 * MS, false);
+
+        assertTrue(lb.score(instance, System.nanoTime()) > 1_900 * MS);
+    }
+
+    @Test
+    void testSlowBackendLosesItsShare() throws Exception {
+        WebClient.Builder builder = WebClient.builder();
+        HealthCheckService healthCheckService = TestBackends.healthCheckService(builder, List.of(
+                slowServer.url("/").toString(), fastServer1.url("/").toString(), fastServer2.url("/").toString()));
+        healthCheckService.init();
+        waitForAsyncCompletion();
+
+        RoutingService routingService = new RoutingService(builder, healthCheckService,
+                new PeakEwmaLoadBalancer(Duration.ofSeconds(10), Duration.ofSeconds(2)),
+                new OutlierDetector(healthCheckService, new OutlierDetectionProperties()),
+                new HedgingPolicy(new HedgingProperties()),
+                new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties()),
+                new RetryPolicy(new RetryProperties(), new SimpleMeterRegistry()), new DeadlineProperties());
+        JsonNode payload = mapper.createObjectNode().put("key", "value");
+
+        int requests = 60;
+        for (int i = 0; i < requests; i++) {
+            routingService.forward(payload).block(Duration.ofSeconds(5));
+        }
+
+        // round robin would send 20; once measured, the slow instance loses every pairing
+        assertTrue(slowEchoCount.get() <= 3, "slow backend got " + slowEchoCount.get() + " of " + requests);
+    }
+
+    private static Dispatcher backend(long echoDelayMillis, AtomicInteger echoCount) {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath() != null && request.getPath().startsWith("/actuator/health")) {
+                    return new MockResponse().setResponseCode(200).setBody("UP");
+                }
+                echoCount.incrementAndGet();
+                return new MockResponse()
+                        .setResponseCode(200)
+                        .setHeader("Content-Type", "application/json")
+                        .setBody("{\"message\":\"ok\"}")
+                        .setHeadersDelay(echoDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+
+    private void waitForAsyncCompletion() {
+        try {
+            Thread.sleep(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = Duration.ofMillis(1).toNanos();
+
+    private ConcurrencyLimitProperties properties;
+    private AdaptiveConcurrencyLimiter limiter;
+    private BackendInstance instance;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ConcurrencyLimitProperties();
+        properties.setEnabled(true);
+        properties.setInitialLimit(20);
+        properties.setMinLimit(2);
+        limiter = new AdaptiveConcurrencyLimiter(properties);
+        instance = TestBackends.instance("http://localhost:9001");
+        now = 0;
+    }
+
+    @Test
+    void testStartsAtTheInitialLimit() {
+        assertEquals(20, limiter.limit(instance));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.tryAcquire(instance));
+        }
+        assertFalse(limiter.tryAcquire(instance));
+    }
+
+    @Test
+    void testMinRttIsLearntFromTrafficWithoutDroppingTheLimit() {
+        sample(50, 1);
+        sample(40, 1);
+        sample(45, 1);
+
+        assertEquals(40 * MILLIS, instance.concurrencyLimit().minRttNanos());
+        assertEquals(20, limiter.limit(instance));
+    }
+
+    @Test
+    void testSamplesFromABusyInstanceDoNotRaiseMinRtt() {
+        sample(50, 1);
+        now += properties.getMinRttInterval().toNanos();
+
+        // a full instance may be queueing, so its latency isn't the no-load latency
+        for (int i = 0; i < 5; i++) {
+            sample(500, 20);
+        }
+        now += properties.getMinRttInterval().toNanos();
+        sample(500, 20);
+
+        assertEquals(50 * MILLIS, instance.concurrencyLimit().minRttNanos());
+    }
+
+    @Test
+    void testLimitGrowsWhileLatencyStaysNearMinRtt() {
+        learnMinRtt(50);
+
+        for (int i = 0; i < 20; i++) {
+            sample(60, limiter.limit(instance));
+        }
+
+        assertTrue(limiter.limit(instance) > 30, "limit " + limiter.limit(instance));
+    }
+
+    @Test
+    void testLimitDoesNotGrowWhenInstanceIsIdle() {
+        learnMinRtt(50);
+
+        for (int i = 0; i < 20; i++) {
+            sample(50, 1);
+        }
+
+        assertEquals(20, limiter.limit(instance));
+    }
+
+    @Test
+    void testLimitShrinksWhenLatencyRises() {
+        learnMinRtt(50);
+
+        for (int i = 0; i < 20; i++) {
+            sample(400, limiter.limit(instance));
+        }
+
+        assertTrue(limiter.limit(instance) < 10, "limit " + limiter.limit(instance));
+        assertTrue(limiter.limit(instance) >= properties.getMinLimit());
+    }
+
+    @Test
+    void testLimitSettlesAtWhatAQueueingBackendCanServe() {
+        // eight workers taking 50 ms each; whatever is over eight waits for a worker
+        int workers = 8;
+        learnMinRtt(50);
+
+        for (int i = 0; i < 200; i++) {
+            int inFlight = limiter.limit(instance);
+            sample(50L * ((inFlight + workers - 1) / workers), inFlight);
+        }
+
+        // rtt-tolerance 2 lets one batch queue behind the workers, and no more
+        int limit = limiter.limit(instance);
+        assertTrue(limit > workers && limit <= 2 * workers + properties.getQueueSize(), "limit " + limit);
+        while (instance.inFlight() > 0) {
+            instance.decrementInFlight();
+        }
+        for (int i = 0; i < limit; i++) {
+            assertTrue(limiter.tryAcquire(instance));
+        }
+        assertFalse(limiter.tryAcquire(instance));
+    }
+
+    @Test
+    void testTimeoutBacksOff() {
+        learnMinRtt(50);
+
+        limiter.onSample(instance, Duration.ofSeconds(2).toNanos(), true, now);
+
+        assertEquals(18, limiter.limit(instance));
+    }
+
+    @Test
+    void testMinRttFollowsALastingSlowdownWithinTwoIntervals() {
+        learnMinRtt(50);
+        now += properties.getMinRttInterval().toNanos();
+
+        sample(80, 1);
+        assertEquals(50 * MILLIS, instance.concurrencyLimit().minRttNanos());
+
+        now += properties.getMinRttInterval().toNanos();
+        sample(80, 1);
+        assertEquals(80 * MILLIS, instance.concurrencyLimit().minRttNanos());
+        assertEquals(20, limiter.limit(instance));
+    }
+
+    @Test
+    void testHasCapacityOnlyWhenSomeInstanceIsUnderItsLimit() {
+        properties.setInitialLimit(2);
+        BackendInstance other = TestBackends.instance("http://localhost:9002");
+        RoutingTable table = RoutingTable.of(List.of(instance, other));
+        for (int i = 0; i < 2; i++) {
+            limiter.tryAcquire(instance);
+        }
+        assertTrue(limiter.hasCapacity(table));
+
+        for (int i = 0; i < 2; i++) {
+            limiter.tryAcquire(other);
+        }
+        assertFalse(limiter.hasCapacity(table));
+
+        limiter.release(other);
+        assertTrue(limiter.hasCapacity(table));
+    }
+
+    @Test
+    void testDisabledNeverRejects() {
+        properties.setEnabled(false);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire(instance));
+        }
+        assertEquals(100, instance.inFlight());
+    }
+
+    private void learnMinRtt(long rttMillis) {
+        sample(rttMillis, 1);
+    }
+
+    private void sample(long rttMillis, int inFlight) {
+        // the instance's in-flight count includes the completing call
+        int before = instance.inFlight();
+        for (int i = before; i < inFlight; i++) {
+            instance.incrementInFlight();
+        }
+        for (int i = before; i > inFlight; i--) {
+            instance.decrementInFlight();
+        }
+        now += MILLIS;
+        limiter.onSample(instance, rttMillis * MILLIS, false, now);
+    }
+}
@@ -0,0 +1,75 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.AdmissionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionGateTest {
+
+    @Test
+    void lowPriorityIsShedFirstAndCriticalGetsTheLastSlots() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setMaxInFlight(10);
+        AdmissionGate gate = new AdmissionGate(properties, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 7; i++) {
+            assertTrue(gate.tryAcquire(Priority.LOW));
+        }
+        assertFalse(gate.tryAcquire(Priority.LOW));
+
+        assertTrue(gate.tryAcquire(Priority.NORMAL));
+        assertTrue(gate.tryAcquire(Priority.NORMAL));
+        assertFalse(gate.tryAcquire(Priority.NORMAL));
+
+        assertTrue(gate.tryAcquire(Priority.CRITICAL));
+        assertFalse(gate.tryAcquire(Priority.CRITICAL));
+        assertEquals(10, gate.inFlight());
+
+        // freed slots go to whoever is under their share again
+        gate.release();
+        gate.release();
+        gate.release();
+        assertFalse(gate.tryAcquire(Priority.LOW));
+        assertTrue(gate.tryAcquire(Priority.NORMAL));
+    }
+
+    @Test
+    void priorityIsGivenPerClientAndTheHeaderCanOnlyLowerIt() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setClientPriorities(Map.of("ops", "Critical", "batch", "low"));
+        AdmissionGate gate = new AdmissionGate(properties, new SimpleMeterRegistry());
+
+        assertEquals(Priority.CRITICAL, gate.priority(request(null), "ops"));
+        assertEquals(Priority.LOW, gate.priority(request(null), "batch"));
+        assertEquals(Priority.NORMAL, gate.priority(request(null), "anyone"));
+        assertEquals(Priority.NORMAL, gate.priority(request("critical"), "anyone"));
+        assertEquals(Priority.LOW, gate.priority(request("critical"), "batch"));
+        assertEquals(Priority.LOW, gate.priority(request("low"), "ops"));
+    }
+
+    @Test
+    void unknownConfiguredPriorityIsRejected() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setClientPriorities(Map.of("ops", "urgent"));
+
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionGate(properties, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void priorityHeaderIsCaseInsensitiveAndDefaultsToNormal() {
+        assertEquals(Priority.CRITICAL, Priority.of("Critical"));
+        assertEquals(Priority.LOW, Priority.of("low"));
+        assertEquals(Priority.NORMAL, Priority.of(null));
+        assertEquals(Priority.NORMAL, Priority.of("urgent"));
+    }
+
+    private static MockServerHttpRequest request(String priority) {
+        MockServerHttpRequest.BodyBuilder request = MockServerHttpRequest.post("/route");
+        return priority != null ? request.header("X-Priority", priority).build() : request.build();
+    }
+}
@@ -0,0 +1,165 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.BackendRegistryProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackendRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    private HealthCheckService healthCheckService;
+    private BackendRegistryProperties properties;
+    private BackendRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        healthCheckService = TestBackends.healthCheckService(WebClient.builder(), List.of("http://a", "http://b"));
+        healthCheckService.getAllInstances().forEach(instance -> instance.markHealthy(true));
+        healthCheckService.refreshRoutingTable();
+        properties = new BackendRegistryProperties();
+        properties.setDrainTimeout(Duration.ofSeconds(5));
+        registry = new BackendRegistry(healthCheckService, properties, new ObjectMapper());
+    }
+
+    @Test
+    void newInstanceJoinsTheRoutingTableOnceHealthy() {
+        BackendInstance c = registry.register("http://c", 3, Map.of("zone", "eu-1"));
+
+        assertEquals(3, healthCheckService.getAllInstances().size());
+        assertEquals(List.of("http://a", "http://b"), healthCheckService.getHealthyInstances());
+        assertEquals(3, c.weight());
+        assertEquals(Map.of("zone", "eu-1"), c.metadata());
+
+        c.markHealthy(true);
+        healthCheckService.refreshRoutingTable();
+        assertEquals(List.of("http://a", "http://b", "http://c"), healthCheckService.getHealthyInstances());
+    }
+
+    @Test
+    void registeringAgainUpdatesTheSameInstance() {
+        BackendInstance a = healthCheckService.getInstance("http://a");
+        RoutingTable before = healthCheckService.getRoutingTable();
+
+        assertSame(a, registry.register("http://a", 4, null));
+
+        assertEquals(4, a.weight());
+        assertEquals(2, healthCheckService.getAllInstances().size());
+        assertNotSame(before, healthCheckService.getRoutingTable());
+    }
+
+    @Test
+    void drainingLeavesTheRoutingTableButNotTheFleet() {
+        assertTrue(registry.setDraining("http://a", true));
+        assertEquals(List.of("http://b"), healthCheckService.getHealthyInstances());
+        assertNotNull(healthCheckService.getInstance("http://a"));
+
+        assertTrue(registry.setDraining("http://a", false));
+        assertEquals(List.of("http://a", "http://b"), healthCheckService.getHealthyInstances());
+        assertFalse(registry.setDraining("http://unknown", true));
+    }
+
+    @Test
+    void deregisterWaitsForInFlightRequests() {
+        BackendInstance a = healthCheckService.getInstance("http://a");
+        a.incrementInFlight();
+
+        StepVerifier.create(registry.deregister("http://a"))
+                .then(() -> {
+                    assertEquals(List.of("http://b"), healthCheckService.getHealthyInstances());
+                    assertSame(a, healthCheckService.getInstance("http://a"));
+                    a.decrementInFlight();
+                })
+                .expectNext(BackendRegistry.Removal.DRAINED)
+                .verifyComplete();
+
+        assertNull(healthCheckService.getInstance("http://a"));
+        assertEquals(1, healthCheckService.getAllInstances().size());
+    }
+
+    @Test
+    void deregisterGivesUpWaitingAtTheDrainTimeout() {
+        properties.setDrainTimeout(Duration.ofMillis(200));
+        healthCheckService.getInstance("http://a").incrementInFlight();
+
+        StepVerifier.create(registry.deregister("http://a"))
+                .expectNext(BackendRegistry.Removal.DRAIN_TIMEOUT)
+                .verifyComplete();
+        assertNull(healthCheckService.getInstance("http://a"));
+    }
+
+    @Test
+    void registeringDuringRemovalCancelsIt() {
+        BackendInstance a = healthCheckService.getInstance("http://a");
+        a.incrementInFlight();
+
+        StepVerifier.create(registry.deregister("http://a"))
+                .then(() -> registry.register("http://a", null, null))
+                .expectNext(BackendRegistry.Removal.CANCELLED)
+                .verifyComplete();
+
+        assertSame(a, healthCheckService.getInstance("http://a"));
+        assertFalse(a.isDraining());
+        assertEquals(List.of("http://a", "http://b"), healthCheckService.getHealthyInstances());
+    }
+
+    @Test
+    void deregisterOfAnUnknownInstanceIsEmpty() {
+        StepVerifier.create(registry.deregister("http://unknown")).verifyComplete();
+    }
+
+    @Test
+    void fileReplacesTheFleetAndIsReappliedWhenItChanges() throws IOException {
+        Path file = dir.resolve("backends.json");
+        properties.setFile(file);
+        Files.writeString(file, """
+                [{"url": "http://b", "weight": 2, "metadata": {"zone": "eu-1"}}, {"url": "http://c"}]
+                """);
+
+        registry.watchFile();
+
+        awaitFleet(List.of("http://b", "http://c"));
+        assertEquals(2, healthCheckService.getInstance("http://b").weight());
+        assertEquals(Map.of("zone", "eu-1"), healthCheckService.getInstance("http://b").metadata());
+
+        Files.writeString(file, "[{\"url\": \"http://c\", \"weight\": 5}]");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(1)));
+        registry.watchFile();
+
+        awaitFleet(List.of("http://c"));
+        assertEquals(5, healthCheckService.getInstance("http://c").weight());
+    }
+
+    @Test
+    void unreadableFileLeavesTheFleetAlone() throws IOException {
+        Path file = dir.resolve("backends.json");
+        properties.setFile(file);
+        Files.writeString(file, "[{\"url\": ");
+
+        registry.watchFile();
+
+        assertEquals(2, healthCheckService.getAllInstances().size());
+    }
+
+    private void awaitFleet(List<String> urls) {
+        await().atMost(Duration.ofSeconds(5)).until(() ->
+                healthCheckService.getAllInstances().stream().map(BackendInstance::baseUrl).toList().equals(urls));
+    }
+}
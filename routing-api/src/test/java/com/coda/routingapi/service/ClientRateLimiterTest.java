@@ -0,0 +1,140 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void allowsTheBurstThenTheSustainedRate() {
+        ClientRateLimiter limiter = limiter(10, 5);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("a"), "request " + i);
+        }
+        long wait = limiter.tryAcquire("a");
+        assertEquals(SECOND / 10, wait);
+        assertEquals("1", ClientRateLimiter.retryAfter(wait));
+
+        now.addAndGet(SECOND / 10);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+
+        // a quiet second refills the whole burst, and no more
+        now.addAndGet(SECOND);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("a"));
+        }
+        assertTrue(limiter.tryAcquire("a") > 0);
+    }
+
+    @Test
+    void clientsHaveTheirOwnBuckets() {
+        ClientRateLimiter limiter = limiter(1, 1);
+
+        assertEquals(0, limiter.tryAcquire("noisy"));
+        assertTrue(limiter.tryAcquire("noisy") > 0);
+        assertEquals(0, limiter.tryAcquire("quiet"));
+    }
+
+    @Test
+    void tracksAtMostMaxClients() {
+        RateLimitProperties properties = properties(1, 1);
+        properties.setMaxClients(1_000);
+        ClientRateLimiter limiter = new ClientRateLimiter(properties, new SimpleMeterRegistry(), now::get);
+
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("client-" + i);
+        }
+
+        assertTrue(limiter.trackedClients() <= 1_000, limiter.trackedClients() + " clients");
+    }
+
+    @Test
+    void aClientInUseOutlivesOneOffKeys() {
+        RateLimitProperties properties = properties(1, 1);
+        properties.setMaxClients(256);
+        ClientRateLimiter limiter = new ClientRateLimiter(properties, new SimpleMeterRegistry(), now::get);
+
+        assertEquals(0, limiter.tryAcquire("regular"));
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("one-off-" + i);
+            // still limited, so it was never evicted and handed a fresh bucket
+            assertTrue(limiter.tryAcquire("regular") > 0, "after " + i + " one-off keys");
+        }
+    }
+
+    @Test
+    void concurrentRequestsNeverGetMoreThanTheBurst() throws Exception {
+        ClientRateLimiter limiter = limiter(1, 100);
+        int threads = 8;
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    if (limiter.tryAcquire("shared") == 0) {
+                        admitted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(100, admitted.get());
+    }
+
+    @Test
+    void keysOnTheHeaderElseTheRemoteAddress() {
+        ClientRateLimiter limiter = limiter(1, 1);
+
+        assertEquals("key-1", limiter.clientKey(MockServerHttpRequest.post("/route")
+                .header("X-Api-Key", "key-1")
+                .remoteAddress(new InetSocketAddress("10.0.0.7", 40000))
+                .build()));
+        assertEquals("10.0.0.7", limiter.clientKey(MockServerHttpRequest.post("/route")
+                .remoteAddress(new InetSocketAddress("10.0.0.7", 40000))
+                .build()));
+    }
+
+    @Test
+    void disabledAdmitsEverything() {
+        ClientRateLimiter limiter = new ClientRateLimiter(new RateLimitProperties(), new SimpleMeterRegistry());
+
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(0, limiter.tryAcquire(MockServerHttpRequest.post("/route").build()));
+        }
+        assertFalse(limiter.isEnabled());
+    }
+
+    private ClientRateLimiter limiter(double rate, int burst) {
+        return new ClientRateLimiter(properties(rate, burst), new SimpleMeterRegistry(), now::get);
+    }
+
+    private static RateLimitProperties properties(double rate, int burst) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setEnabled(true);
+        properties.setRate(rate);
+        properties.setBurst(burst);
+        return properties;
+    }
+}
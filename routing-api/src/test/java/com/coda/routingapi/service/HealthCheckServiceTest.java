@@ -1,12 +1,21 @@
 package com.coda.routingapi.service;
 
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import com.coda.routingapi.config.HealthCheckProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.*;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.*;
 
 class HealthCheckServiceTest {
@@ -14,6 +23,8 @@ class HealthCheckServiceTest {
     private MockWebServer mockServer1;
     private MockWebServer mockServer2;
     private HealthCheckService healthCheckService;
+    private HealthCheckProperties properties;
+    private final List<InstanceHealthChangedEvent> events = new CopyOnWriteArrayList<>();
 
     @BeforeEach
     void setUp() throws Exception {
@@ -22,22 +33,23 @@ class HealthCheckServiceTest {
         mockServer1.start();
         mockServer2.start();
 
-        WebClient.Builder builder = WebClient.builder();
-
-        String instance1 = mockServer1.url("/").toString();
-        String instance2 = mockServer2.url("/").toString();
-
-        healthCheckService = new HealthCheckService(builder, List.of(instance1, instance2));
+        properties = new HealthCheckProperties();
+        properties.setHealthyThreshold(1);
+        properties.setUnhealthyThreshold(1);
     }
 
     @AfterEach
     void tearDown() throws Exception {
+        if (healthCheckService != null) {
+            healthCheckService.stop();
+        }
         mockServer1.shutdown();
         mockServer2.shutdown();
     }
 
     @Test
     void testPeriodicHealthCheck() {
+        healthCheckService = create(properties);
         mockServer1.enqueue(new MockResponse().setBody("UP").setResponseCode(200));
         mockServer2.enqueue(new MockResponse().setResponseCode(500));
 
@@ -62,6 +74,160 @@ class HealthCheckServiceTest {
         assertTrue(healthyInstances.contains(mockServer2.url("/").toString()));
     }
 
+    @Test
+    void testThresholdsPreventFlapping() {
+        properties.setHealthyThreshold(2);
+        properties.setUnhealthyThreshold(3);
+        healthCheckService = create(properties);
+        String instance1 = mockServer1.url("/").toString();
+
+        mockServer1.enqueue(new MockResponse().setResponseCode(200));
+        mockServer2.enqueue(new MockResponse().setResponseCode(200));
+        healthCheckService.sweep().block(Duration.ofSeconds(5));
+        assertTrue(healthCheckService.getHealthyInstances().contains(instance1));
+
+        // two failures are not enough to go unhealthy, the third is
+        for (int i = 0; i < 3; i++) {
+            mockServer1.enqueue(new MockResponse().setResponseCode(500));
+            mockServer2.enqueue(new MockResponse().setResponseCode(200));
+            healthCheckService.sweep().block(Duration.ofSeconds(5));
+            assertEquals(i < 2, healthCheckService.getHealthyInstances().contains(instance1));
+        }
+
+        // one success is not enough to come back, the second is
+        for (int i = 0; i < 2; i++) {
+            mockServer1.enqueue(new MockResponse().setResponseCode(200));
+            mockServer2.enqueue(new MockResponse().setResponseCode(200));
+            healthCheckService.sweep().block(Duration.ofSeconds(5));
+            assertEquals(i == 1, healthCheckService.getHealthyInstances().contains(instance1));
+        }
+    }
+
+    @Test
+    void testTransitionsArePublishedAsEvents() {
+        healthCheckService = create(properties);
+        mockServer1.enqueue(new MockResponse().setResponseCode(200));
+        mockServer2.enqueue(new MockResponse().setResponseCode(200));
+        healthCheckService.sweep().block(Duration.ofSeconds(5));
+
+        mockServer1.enqueue(new MockResponse().setResponseCode(503));
+        mockServer2.enqueue(new MockResponse().setResponseCode(200));
+        healthCheckService.sweep().block(Duration.ofSeconds(5));
+
+        // instance 2 stayed healthy, so only three flips
+        assertEquals(3, events.size());
+        InstanceHealthChangedEvent down = events.get(2);
+        assertEquals(mockServer1.url("/").toString(), down.instance().baseUrl());
+        assertFalse(down.healthy());
+        assertNotNull(down.reason());
+    }
+
+    @Test
+    void testUnhealthyInstanceProbedFasterUntilRecovered() {
+        properties.setInterval(Duration.ofMinutes(10));
+        properties.setUnhealthyInterval(Duration.ofMillis(100));
+        healthCheckService = create(properties);
+        for (int i = 0; i < 3; i++) {
+            mockServer1.enqueue(new MockResponse().setResponseCode(500));
+        }
+        mockServer1.enqueue(new MockResponse().setResponseCode(200));
+        mockServer2.enqueue(new MockResponse().setResponseCode(200));
+
+        healthCheckService.start();
+
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> healthCheckService.getHealthyInstances().size() == 2);
+        assertEquals(4, mockServer1.getRequestCount());
+        // the healthy instance settled on the slow interval after its first probe
+        assertEquals(1, mockServer2.getRequestCount());
+    }
+
+    @Test
+    void testFailingListenerDoesNotStopProbing() {
+        properties.setInterval(Duration.ofMinutes(10));
+        properties.setUnhealthyInterval(Duration.ofMillis(100));
+        healthCheckService = create(properties, new CircuitBreakerProperties(), event -> {
+            events.add((InstanceHealthChangedEvent) event);
+            throw new IllegalStateException("listener failed");
+        });
+        for (int i = 0; i < 3; i++) {
+            mockServer1.enqueue(new MockResponse().setResponseCode(500));
+        }
+        mockServer1.enqueue(new MockResponse().setResponseCode(200));
+        mockServer2.enqueue(new MockResponse().setResponseCode(200));
+
+        healthCheckService.start();
+
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> healthCheckService.getHealthyInstances().size() == 2);
+        assertEquals(4, mockServer1.getRequestCount());
+        // the throw after instance 2 came up was not taken for a failed probe
+        assertEquals(1, mockServer2.getRequestCount());
+        // both came up, each time throwing in the listener
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void testProbeConcurrencyIsBounded() {
+        properties.setMaxConcurrency(1);
+        healthCheckService = create(properties);
+        mockServer1.enqueue(new MockResponse().setResponseCode(200).setHeadersDelay(400, TimeUnit.MILLISECONDS));
+        mockServer2.enqueue(new MockResponse().setResponseCode(200).setHeadersDelay(400, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        healthCheckService.sweep().block(Duration.ofSeconds(5));
+
+        // one at a time, so the two delays add up
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 800);
+        assertEquals(2, healthCheckService.getHealthyInstances().size());
+    }
+
+    @Test
+    void testFirstSweepWaitsForEveryInstance() {
+        healthCheckService = create(properties);
+        mockServer1.enqueue(new MockResponse().setResponseCode(200));
+        mockServer2.enqueue(new MockResponse().setResponseCode(500).setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        healthCheckService.start();
+        healthCheckService.firstSweep().block(Duration.ofSeconds(5));
+
+        // the slow, failing instance counts too: done means its result is in the routing table
+        assertEquals(2, mockServer1.getRequestCount() + mockServer2.getRequestCount());
+        assertEquals(List.of(mockServer1.url("/").toString()), healthCheckService.getHealthyInstances());
+    }
+
+    @Test
+    void testInstancesGetTheConfiguredCircuitBreaker() {
+        CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+        circuitBreaker.setFailureRateThreshold(25);
+        circuitBreaker.setSlidingWindowSize(20);
+        circuitBreaker.setWaitDurationInOpenState(Duration.ofSeconds(5));
+        healthCheckService = create(properties, circuitBreaker);
+
+        BackendInstance added = healthCheckService.add("http://localhost:9003", 1);
+
+        for (BackendInstance instance : List.of(healthCheckService.getAllInstances().get(0), added)) {
+            CircuitBreakerConfig config = instance.circuitBreaker().getCircuitBreakerConfig();
+            assertEquals(25, config.getFailureRateThreshold());
+            assertEquals(20, config.getSlidingWindowSize());
+            assertEquals(2, config.getPermittedNumberOfCallsInHalfOpenState());
+        }
+    }
+
+    private HealthCheckService create(HealthCheckProperties properties) {
+        return create(properties, new CircuitBreakerProperties());
+    }
+
+    private HealthCheckService create(HealthCheckProperties properties, CircuitBreakerProperties circuitBreaker) {
+        return create(properties, circuitBreaker, event -> events.add((InstanceHealthChangedEvent) event));
+    }
+
+    private HealthCheckService create(HealthCheckProperties properties, CircuitBreakerProperties circuitBreaker,
+                                      ApplicationEventPublisher publisher) {
+        return new HealthCheckService(WebClient.create(),
+                List.of(mockServer1.url("/").toString(), mockServer2.url("/").toString()),
+                List.of(), properties, circuitBreaker, publisher, new SimpleMeterRegistry());
+    }
 
     private void waitForAsyncCompletion() {
         try {
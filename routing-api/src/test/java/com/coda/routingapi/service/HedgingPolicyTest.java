@@ -0,0 +1,207 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import com.coda.routingapi.config.DeadlineProperties;
+import com.coda.routingapi.config.HedgingProperties;
+import com.coda.routingapi.config.OutlierDetectionProperties;
+import com.coda.routingapi.config.RetryProperties;
+import com.coda.routingapi.loadbalancer.LoadBalancer;
+import com.coda.routingapi.loadbalancer.RoundRobinLoadBalancer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.*;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgingPolicyTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private MockWebServer slowServer, fastServer;
+    private HealthCheckService healthCheckService;
+    private HedgingProperties properties;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        slowServer = new MockWebServer();
+        fastServer = new MockWebServer();
+        slowServer.start();
+        fastServer.start();
+        healthCheckService = TestBackends.healthCheckService(WebClient.builder(),
+                List.of(slowServer.url("/").toString(), fastServer.url("/").toString()));
+        for (BackendInstance instance : healthCheckService.getAllInstances()) {
+            instance.markHealthy(true);
+        }
+        healthCheckService.refreshRoutingTable();
+
+        properties = new HedgingProperties();
+        properties.setEnabled(true);
+        properties.setDelay(Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        slowServer.shutdown();
+        fastServer.shutdown();
+    }
+
+    @Test
+    void testHedgeWinsAgainstSlowPrimaryAndLoserIsNotAFailure() {
+        slowServer.enqueue(json("{\"from\":\"slow\"}").setHeadersDelay(1500, TimeUnit.MILLISECONDS));
+        fastServer.enqueue(json("{\"from\":\"fast\"}"));
+        RoutingService routingService = routingService(new HedgingPolicy(properties));
+
+        long start = System.nanoTime();
+        JsonNode response = idempotent(routingService).block(Duration.ofSeconds(5));
+
+        assertEquals("fast", response.get("from").asText());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+        BackendInstance slow = healthCheckService.getInstance(slowServer.url("/").toString());
+        CircuitBreaker.Metrics metrics = slow.circuitBreaker().getMetrics();
+        assertEquals(0, metrics.getNumberOfFailedCalls());
+        assertEquals(0, metrics.getNumberOfBufferedCalls());
+        await().atMost(Duration.ofSeconds(1)).until(() -> slow.inFlight() == 0);
+    }
+
+    @Test
+    void testNoHedgeWhenPrimaryIsFast() {
+        slowServer.enqueue(json("{\"from\":\"first\"}"));
+        RoutingService routingService = routingService(new HedgingPolicy(properties));
+
+        JsonNode response = idempotent(routingService).block(Duration.ofSeconds(5));
+
+        assertEquals("first", response.get("from").asText());
+        assertEquals(0, fastServer.getRequestCount());
+    }
+
+    @Test
+    void testExhaustedBudgetSuppressesHedge() {
+        properties.setBudgetPercent(0);
+        properties.setBudgetBurst(0);
+        slowServer.enqueue(json("{\"from\":\"slow\"}").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        RoutingService routingService = routingService(new HedgingPolicy(properties));
+
+        JsonNode response = idempotent(routingService).block(Duration.ofSeconds(5));
+
+        assertEquals("slow", response.get("from").asText());
+        assertEquals(0, fastServer.getRequestCount());
+    }
+
+    @Test
+    void testRequestWithoutIdempotencyKeyIsNotHedged() {
+        slowServer.enqueue(json("{\"from\":\"slow\"}").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        RoutingService routingService = routingService(new HedgingPolicy(properties));
+
+        JsonNode response = routingService.forward(payload()).block(Duration.ofSeconds(5));
+
+        assertEquals("slow", response.get("from").asText());
+        assertEquals(0, fastServer.getRequestCount());
+    }
+
+    @Test
+    void testHedgeGoesWhereTheLoadBalancerPicks() throws Exception {
+        try (MockWebServer otherServer = new MockWebServer()) {
+            otherServer.start();
+            healthCheckService = TestBackends.healthCheckService(WebClient.builder(), List.of(
+                    slowServer.url("/").toString(), fastServer.url("/").toString(), otherServer.url("/").toString()));
+            for (BackendInstance instance : healthCheckService.getAllInstances()) {
+                instance.markHealthy(true);
+            }
+            healthCheckService.refreshRoutingTable();
+            slowServer.enqueue(json("{\"from\":\"slow\"}").setHeadersDelay(1500, TimeUnit.MILLISECONDS));
+            otherServer.enqueue(json("{\"from\":\"other\"}"));
+            // first pick is the primary; the hedge's pick skips the instance after it
+            List<String> picks = new ArrayList<>(List.of(slowServer.url("/").toString(),
+                    otherServer.url("/").toString()));
+            LoadBalancer loadBalancer = table -> table.baseUrls().indexOf(picks.remove(0));
+            RoutingService routingService = routingService(new HedgingPolicy(properties), loadBalancer);
+
+            JsonNode response = idempotent(routingService).block(Duration.ofSeconds(5));
+
+            assertEquals("other", response.get("from").asText());
+            assertEquals(0, fastServer.getRequestCount());
+        }
+    }
+
+    @Test
+    void testHedgeNeverGoesToThePrimary() {
+        LoadBalancer loadBalancer = table -> 0;
+        RoutingTable table = healthCheckService.getRoutingTable();
+
+        assertEquals(1, loadBalancer.selectHedge(table, 0));
+        assertEquals(0, loadBalancer.selectHedge(table, 1));
+    }
+
+    @Test
+    void testBudgetRefillsPerRequest() {
+        RequestBudget budget = new RequestBudget(0.1, 1);
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+    }
+
+    @Test
+    void testHistogramPercentileWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertNull(histogram.percentile(0.95, 1));
+
+        for (int i = 0; i < 100; i++) {
+            histogram.record(Duration.ofMillis(i < 95 ? 10 : 200).toNanos());
+        }
+        Duration p95 = histogram.percentile(0.95, 1);
+        Duration p99 = histogram.percentile(0.99, 1);
+
+        assertTrue(p95.toMillis() >= 10 && p95.toMillis() <= 13, p95.toString());
+        assertTrue(p99.toMillis() >= 200 && p99.toMillis() <= 250, p99.toString());
+        assertNull(histogram.percentile(0.95, 101), "not enough samples");
+    }
+
+    @Test
+    void testPercentileDelayFallsBackToFixedWithoutSamples() {
+        properties.setPercentile(95);
+        HedgingPolicy policy = new HedgingPolicy(properties);
+        policy.recordLatency(Duration.ofMillis(1).toNanos());
+
+        assertEquals(properties.getDelay(), policy.delay());
+    }
+
+    private RoutingService routingService(HedgingPolicy hedgingPolicy) {
+        return routingService(hedgingPolicy, new RoundRobinLoadBalancer());
+    }
+
+    private RoutingService routingService(HedgingPolicy hedgingPolicy, LoadBalancer loadBalancer) {
+        return new RoutingService(WebClient.builder(), healthCheckService, loadBalancer,
+                new OutlierDetector(healthCheckService, new OutlierDetectionProperties()), hedgingPolicy,
+                new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties()),
+                new RetryPolicy(new RetryProperties(), new SimpleMeterRegistry()), new DeadlineProperties());
+    }
+
+    private Mono<JsonNode> idempotent(RoutingService routingService) {
+        return routingService.forward(payload(), LoadBalancer.NO_KEY, true, routingService.deadline(null));
+    }
+
+    private JsonNode payload() {
+        return mapper.createObjectNode().put("key", "value");
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+}
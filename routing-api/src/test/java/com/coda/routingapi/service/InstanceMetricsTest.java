@@ -0,0 +1,78 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstanceMetricsTest {
+
+    private PrometheusMeterRegistry registry;
+    private BackendInstance instance;
+
+    @BeforeEach
+    void setUp() {
+        registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        instance = new BackendInstance("http://" + UUID.randomUUID() + ":8080", 1, new CircuitBreakerProperties(),
+                registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    void latencyIsRecordedPerOutcomeWithSloBuckets() {
+        instance.metrics().recordSuccess(TimeUnit.MILLISECONDS.toNanos(7));
+        instance.metrics().recordSuccess(TimeUnit.MILLISECONDS.toNanos(300));
+        instance.metrics().recordFailure(TimeUnit.SECONDS.toNanos(2));
+
+        Timer success = registry.get("routing.backend.requests")
+                .tags("instance", instance.baseUrl(), "outcome", "success").timer();
+        assertEquals(2, success.count());
+        assertEquals(1, registry.get("routing.backend.requests")
+                .tags("instance", instance.baseUrl(), "outcome", "failure").timer().count());
+        assertEquals(InstanceMetrics.LATENCY_SLOS.length, success.takeSnapshot().histogramCounts().length);
+
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("routing_backend_requests_seconds_bucket{instance=\"" + instance.baseUrl()
+                + "\",outcome=\"success\",le=\"0.01\",} 1.0"), scrape);
+    }
+
+    @Test
+    void circuitBreakerStateAndRejectionsAreExported() {
+        assertEquals(1, stateGauge("closed"));
+        assertEquals(0, stateGauge("open"));
+
+        instance.circuitBreaker().transitionToOpenState();
+        assertFalse(instance.circuitBreaker().tryAcquirePermission());
+
+        assertEquals(0, stateGauge("closed"));
+        assertEquals(1, stateGauge("open"));
+        assertEquals(1, registry.get("routing.circuit.breaker.not.permitted")
+                .tag("instance", instance.baseUrl()).counter().count());
+    }
+
+    @Test
+    void inFlightGaugeReadsTheInstance() {
+        instance.incrementInFlight();
+        instance.incrementInFlight();
+
+        assertEquals(2, registry.get("routing.backend.in.flight")
+                .tag("instance", instance.baseUrl()).gauge().value());
+    }
+
+    private double stateGauge(String state) {
+        return registry.get("routing.circuit.breaker.state")
+                .tags("instance", instance.baseUrl(), "state", state).gauge().value();
+    }
+}
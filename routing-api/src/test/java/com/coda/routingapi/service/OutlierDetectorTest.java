@@ -0,0 +1,195 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import com.coda.routingapi.config.DeadlineProperties;
+import com.coda.routingapi.config.HedgingProperties;
+import com.coda.routingapi.config.OutlierDetectionProperties;
+import com.coda.routingapi.config.RetryProperties;
+import com.coda.routingapi.loadbalancer.RoundRobinLoadBalancer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutlierDetectorTest {
+
+    private HealthCheckService healthCheckService;
+    private OutlierDetectionProperties properties;
+    private OutlierDetector detector;
+    private BackendInstance a, b, c, d;
+
+    @BeforeEach
+    void setUp() {
+        healthCheckService = TestBackends.healthCheckService(WebClient.builder(),
+                List.of("http://a", "http://b", "http://c", "http://d"));
+        for (BackendInstance instance : healthCheckService.getAllInstances()) {
+            instance.markHealthy(true);
+        }
+        healthCheckService.refreshRoutingTable();
+        a = healthCheckService.getInstance("http://a");
+        b = healthCheckService.getInstance("http://b");
+        c = healthCheckService.getInstance("http://c");
+        d = healthCheckService.getInstance("http://d");
+
+        properties = new OutlierDetectionProperties();
+        properties.setConsecutiveFailures(3);
+        properties.setSuccessRateRequestVolume(10);
+        detector = new OutlierDetector(healthCheckService, properties);
+    }
+
+    @Test
+    void testConsecutiveServerErrorsEject() {
+        detector.onFailure(a, serverError());
+        detector.onFailure(a, new TimeoutException());
+        assertTrue(healthCheckService.getHealthyInstances().contains("http://a"));
+
+        detector.onFailure(a, serverError());
+
+        assertTrue(a.outlierState().isEjected());
+        assertEquals(List.of("http://b", "http://c", "http://d"), healthCheckService.getHealthyInstances());
+    }
+
+    @Test
+    void testSuccessResetsConsecutiveCount() {
+        detector.onFailure(a, serverError());
+        detector.onFailure(a, serverError());
+        detector.onSuccess(a);
+        detector.onFailure(a, serverError());
+
+        assertFalse(a.outlierState().isEjected());
+    }
+
+    @Test
+    void testErrorsThatAreNotTheBackendsLeaveTheStreakAlone() {
+        detector.onFailure(a, serverError());
+        detector.onFailure(a, serverError());
+        detector.onFailure(a, new IllegalStateException("Response body didn't decode"));
+        assertFalse(a.outlierState().isEjected());
+
+        detector.onFailure(a, serverError());
+
+        assertTrue(a.outlierState().isEjected());
+    }
+
+    @Test
+    void testClientErrorsAreNotBackendFailures() {
+        for (int i = 0; i < 5; i++) {
+            detector.onFailure(a, WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(), "Bad Request", null, null, null));
+        }
+
+        assertFalse(a.outlierState().isEjected());
+    }
+
+    @Test
+    void testMaxEjectionPercentCapsEjections() {
+        for (BackendInstance instance : List.of(a, b, c)) {
+            for (int i = 0; i < 3; i++) {
+                detector.onFailure(instance, serverError());
+            }
+        }
+
+        // 50% of 4 instances
+        assertTrue(a.outlierState().isEjected());
+        assertTrue(b.outlierState().isEjected());
+        assertFalse(c.outlierState().isEjected());
+        assertEquals(List.of("http://c", "http://d"), healthCheckService.getHealthyInstances());
+    }
+
+    @Test
+    void testReadmittedAfterEjectionTimeWithBackoff() {
+        properties.setBaseEjectionTime(Duration.ofMillis(200));
+
+        for (int i = 0; i < 3; i++) {
+            detector.onFailure(a, serverError());
+        }
+        assertEquals(1, a.outlierState().ejectionCount());
+        await().atMost(Duration.ofSeconds(2))
+                .until(() -> healthCheckService.getHealthyInstances().contains("http://a"));
+
+        for (int i = 0; i < 3; i++) {
+            detector.onFailure(a, serverError());
+        }
+        assertEquals(2, a.outlierState().ejectionCount());
+        long ejectedAt = System.nanoTime();
+        await().atMost(Duration.ofSeconds(2))
+                .until(() -> healthCheckService.getHealthyInstances().contains("http://a"));
+        // second ejection lasts twice the base time
+        assertTrue(Duration.ofNanos(System.nanoTime() - ejectedAt).toMillis() >= 350);
+    }
+
+    @Test
+    void testSuccessRateOutlierEjected() {
+        properties.setSuccessRateMinimumHosts(4);
+        properties.setSuccessRateStdevFactor(1.0);
+        for (BackendInstance instance : List.of(a, b, c, d)) {
+            for (int i = 0; i < 20; i++) {
+                detector.onSuccess(instance);
+            }
+        }
+        // d fails half its requests, never three in a row
+        for (int i = 0; i < 20; i++) {
+            detector.onFailure(d, serverError());
+            detector.onSuccess(d);
+        }
+
+        detector.evaluate();
+
+        assertTrue(d.outlierState().isEjected());
+        assertFalse(a.outlierState().isEjected());
+    }
+
+    @Test
+    void testDeadBackendEjectedOnFirstRequest() throws Exception {
+        MockWebServer live = new MockWebServer();
+        MockWebServer dead = new MockWebServer();
+        live.start();
+        dead.start();
+        try {
+            WebClient.Builder builder = WebClient.builder();
+            HealthCheckService service = TestBackends.healthCheckService(builder,
+                    List.of(dead.url("/").toString(), live.url("/").toString()));
+            for (BackendInstance instance : service.getAllInstances()) {
+                instance.markHealthy(true);
+            }
+            service.refreshRoutingTable();
+            dead.shutdown();
+
+            RoutingService routingService = new RoutingService(builder, service, new RoundRobinLoadBalancer(),
+                    new OutlierDetector(service, connectFailuresToEject(1)),
+                new HedgingPolicy(new HedgingProperties()),
+                new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties()),
+                new RetryPolicy(new RetryProperties(), new SimpleMeterRegistry()), new DeadlineProperties());
+            live.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"message\":\"ok\"}"));
+            JsonNode payload = new ObjectMapper().createObjectNode().put("key", "value");
+
+            routingService.forward(payload).block(Duration.ofSeconds(5));
+
+            // a refused connection ejects without waiting for the next health probe
+            assertEquals(List.of(live.url("/").toString()), service.getHealthyInstances());
+        } finally {
+            live.shutdown();
+        }
+    }
+
+    private static OutlierDetectionProperties connectFailuresToEject(int failures) {
+        OutlierDetectionProperties properties = new OutlierDetectionProperties();
+        properties.setConsecutiveConnectFailures(failures);
+        return properties;
+    }
+
+    private static WebClientResponseException serverError() {
+        return WebClientResponseException.create(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Internal Server Error", null, null, null);
+    }
+}
@@ -0,0 +1,92 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.BackendClientConfiguration;
+import com.coda.routingapi.config.BackendClientProperties;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.Disposable;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the reactor-netty on the classpath, so an upgrade that renames or rewraps the pool's errors fails
+ * here rather than turning shed requests into instance failures.
+ */
+class PoolExhaustionTest {
+
+    private MockWebServer server;
+    private ConnectionProvider provider;
+    private WebClient webClient;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        BackendClientProperties client = new BackendClientProperties();
+        client.setMaxConnections(1);
+        client.setPendingAcquireMaxCount(1);
+        client.setPendingAcquireTimeout(Duration.ofMillis(200));
+        provider = BackendClientConfiguration.connectionProvider(client);
+        webClient = WebClient.builder().clientConnector(BackendClientConfiguration.connector(provider, client)).build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        provider.disposeLater().block(Duration.ofSeconds(5));
+        server.shutdown();
+    }
+
+    @Test
+    void testAcquireTimeoutAndPendingLimitAreRecognised() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setHeadersDelay(2, TimeUnit.SECONDS));
+        Disposable holder = webClient.get().uri(server.url("/").uri()).retrieve().toBodilessEntity().subscribe(
+                response -> { }, error -> { });
+        try {
+            assertNotNull(server.takeRequest(1, TimeUnit.SECONDS));
+            // the only connection is taken, so one request waits and the next finds the queue full
+            CompletableFuture<Throwable> waited = failure();
+            CompletableFuture<Throwable> queued = failure();
+
+            Throwable pendingLimit = queued.get(1, TimeUnit.SECONDS);
+            Throwable acquireTimeout = waited.get(1, TimeUnit.SECONDS);
+
+            assertTrue(PoolExhaustion.isCause(pendingLimit), pendingLimit.toString());
+            assertTrue(PoolExhaustion.isCause(acquireTimeout), acquireTimeout.toString());
+        } finally {
+            holder.dispose();
+        }
+    }
+
+    @Test
+    void testOtherFailuresAreNot() {
+        URI uri = URI.create("http://localhost:9001/api/echo");
+
+        // the attempt's own timeout: the request was sent
+        assertFalse(PoolExhaustion.isCause(new TimeoutException("Did not observe any item")));
+        assertFalse(PoolExhaustion.isCause(new WebClientRequestException(new ConnectException("Connection refused"),
+                HttpMethod.POST, uri, new HttpHeaders())));
+    }
+
+    private CompletableFuture<Throwable> failure() {
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+        webClient.get().uri(server.url("/").uri()).retrieve().toBodilessEntity()
+                .subscribe(response -> failure.completeExceptionally(new AssertionError("got a connection")),
+                        failure::complete);
+        return failure;
+    }
+}
@@ -0,0 +1,196 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.AdmissionProperties;
+import com.coda.routingapi.config.CoalescingProperties;
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import com.coda.routingapi.config.DeadlineProperties;
+import com.coda.routingapi.config.HedgingProperties;
+import com.coda.routingapi.config.OutlierDetectionProperties;
+import com.coda.routingapi.config.RateLimitProperties;
+import com.coda.routingapi.config.ResponseCacheProperties;
+import com.coda.routingapi.config.RetryProperties;
+import com.coda.routingapi.controller.RoutingController;
+import com.coda.routingapi.loadbalancer.RoundRobinLoadBalancer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private CoalescingProperties properties;
+    private RequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CoalescingProperties();
+        properties.setEnabled(true);
+        coalescer = new RequestCoalescer(properties);
+    }
+
+    @Test
+    void testConcurrentCallsShareOneUpstream() {
+        Sinks.One<String> upstream = Sinks.one();
+        AtomicInteger calls = new AtomicInteger();
+        PayloadKey key = coalescer.key(json("{\"a\":1}"), null, null);
+
+        List<Mono<String>> waiters = Flux.range(0, 10)
+                .map(i -> coalescer.coalesce(key, () -> {
+                    calls.incrementAndGet();
+                    return upstream.asMono();
+                }).cache())
+                .collectList().block();
+        waiters.forEach(Mono::subscribe);
+
+        upstream.tryEmitValue("response");
+        for (Mono<String> waiter : waiters) {
+            assertEquals("response", waiter.block(Duration.ofSeconds(1)));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(9, coalescer.coalescedCount());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void testErrorsReachEveryWaiter() {
+        Sinks.One<String> upstream = Sinks.one();
+        PayloadKey key = coalescer.key(json("{\"a\":1}"), null, null);
+        Mono<String> first = coalescer.coalesce(key, upstream::asMono);
+        Mono<String> second = coalescer.coalesce(key, upstream::asMono);
+
+        StepVerifier.create(Flux.merge(first.onErrorReturn("failed"), second.onErrorReturn("failed")))
+                .then(() -> upstream.tryEmitError(new RuntimeException("backend down")))
+                .expectNext("failed", "failed")
+                .verifyComplete();
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void testUpstreamIsCancelledOnlyWithTheLastWaiter() {
+        Sinks.One<String> upstream = Sinks.one();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        PayloadKey key = coalescer.key(json("{\"a\":1}"), null, null);
+
+        Disposable first = coalescer.coalesce(key, () -> upstream.asMono().doOnCancel(() -> cancelled.set(true)))
+                .subscribe();
+        Disposable second = coalescer.coalesce(key, upstream::asMono).subscribe();
+        assertEquals(1, coalescer.inFlight());
+
+        first.dispose();
+        assertFalse(cancelled.get());
+        second.dispose();
+        assertTrue(cancelled.get());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void testKeys() {
+        assertEquals(coalescer.key(json("{\"a\":1,\"b\":2}"), null, null),
+                coalescer.key(json("{\"b\":2,\"a\":1}"), null, null));
+        assertNotEquals(coalescer.key(json("{\"a\":1}"), null, null), coalescer.key(json("{\"a\":2}"), null, null));
+
+        properties.setKeyPointer("/request/id");
+        RequestCoalescer byId = new RequestCoalescer(properties);
+        assertEquals(byId.key(json("{\"request\":{\"id\":7},\"at\":1}"), null, null),
+                byId.key(json("{\"request\":{\"id\":7},\"at\":2}"), null, null));
+        assertNull(byId.key(json("{\"other\":1}"), null, null));
+
+        assertNull(new RequestCoalescer(new CoalescingProperties()).key(json("{\"a\":1}"), null, null));
+    }
+
+    @Test
+    void testKeysIncludeTheRoutingAndIdempotencyKeys() {
+        JsonNode payload = json("{\"a\":1}");
+        PayloadKey plain = coalescer.key(payload, null, null);
+
+        assertEquals(coalescer.key(payload, "user-1", "op-1"), coalescer.key(json("{\"a\":1}"), "user-1", "op-1"));
+        assertNotEquals(plain, coalescer.key(payload, "user-1", null));
+        assertNotEquals(coalescer.key(payload, "user-1", null), coalescer.key(payload, "user-2", null));
+        assertNotEquals(plain, coalescer.key(payload, null, "op-1"));
+        assertNotEquals(coalescer.key(payload, null, "op-1"), coalescer.key(payload, null, "op-2"));
+        // the same value in the other header is a different request
+        assertNotEquals(coalescer.key(payload, "k", null), coalescer.key(payload, null, "k"));
+
+        ByteBuf bytes = Unpooled.copiedBuffer("{\"a\":1}", StandardCharsets.UTF_8);
+        assertEquals(coalescer.key(bytes, "user-1", null), coalescer.key(bytes, "user-1", null));
+        assertNotEquals(coalescer.key(bytes, null, null), coalescer.key(bytes, "user-1", null));
+        assertNotEquals(coalescer.key(bytes, null, "op-1"), coalescer.key(bytes, null, "op-2"));
+        bytes.release();
+    }
+
+    @Test
+    void testIdenticalConcurrentRequestsMakeOneBackendCall() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.start();
+        try {
+            server.enqueue(new MockResponse().setResponseCode(200));
+            server.enqueue(new MockResponse()
+                    .setBody("{\"status\":\"ok\"}")
+                    .addHeader("Content-Type", "application/json")
+                    .setHeadersDelay(300, TimeUnit.MILLISECONDS));
+            HealthCheckService healthCheckService =
+                    TestBackends.healthCheckService(WebClient.builder(), List.of(server.url("/").toString()));
+            healthCheckService.sweep().block(Duration.ofSeconds(5));
+            RoutingService routingService = new RoutingService(WebClient.builder(), healthCheckService,
+                    new RoundRobinLoadBalancer(),
+                    new OutlierDetector(healthCheckService, new OutlierDetectionProperties()),
+                    new HedgingPolicy(new HedgingProperties()),
+                    new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties()),
+                    new RetryPolicy(new RetryProperties(), new SimpleMeterRegistry()), new DeadlineProperties());
+            RoutingController controller = new RoutingController(routingService,
+                    new AdmissionGate(new AdmissionProperties(), new SimpleMeterRegistry()),
+                    new ClientRateLimiter(new RateLimitProperties(), new SimpleMeterRegistry()),
+                    new ResponseCache(new ResponseCacheProperties(), mapper, new SimpleMeterRegistry()), coalescer);
+            MockServerHttpRequest request = MockServerHttpRequest.post("/route").build();
+
+            int requests = 50;
+            List<ResponseEntity<Object>> responses = Flux.range(0, requests)
+                    .flatMap(i -> controller.route(json("{\"game\":\"Chess\"}"), null, null, null, request),
+                            requests)
+                    .collectList()
+                    .block(Duration.ofSeconds(10));
+
+            assertEquals(requests, responses.size());
+            for (ResponseEntity<Object> response : responses) {
+                assertEquals(200, response.getStatusCode().value());
+                assertEquals("ok", ((JsonNode) response.getBody()).get("status").asText());
+            }
+            // one health probe and one forwarded request
+            assertEquals(2, server.getRequestCount());
+            assertEquals(requests - 1, coalescer.coalescedCount());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private JsonNode json(String json) {
+        try {
+            return mapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
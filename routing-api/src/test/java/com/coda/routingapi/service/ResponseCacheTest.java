@@ -0,0 +1,135 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.ResponseCacheProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ResponseCacheProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ResponseCacheProperties();
+        properties.setEnabled(true);
+    }
+
+    @Test
+    void testDisabledCacheHasNoKeys() {
+        ResponseCache cache = new ResponseCache(new ResponseCacheProperties(), mapper, new SimpleMeterRegistry());
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.key(null, json("{\"a\":1}")));
+        assertNull(cache.get(null));
+        cache.put(null, json("{\"a\":1}"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testJsonKeysIgnoreFormattingAndFieldOrder() throws Exception {
+        ResponseCache cache = new ResponseCache(properties, mapper, new SimpleMeterRegistry());
+
+        PayloadKey key = cache.key(null, json("{\"a\":1,\"b\":[true,null,\"x\"],\"c\":{\"d\":2.5}}"));
+        assertEquals(key, cache.key(null, json("{ \"c\": {\"d\": 2.5}, \"b\": [true, null, \"x\"], \"a\": 1 }")));
+
+        assertNotEquals(key, cache.key(null, json("{\"a\":1,\"b\":[null,true,\"x\"],\"c\":{\"d\":2.5}}")));
+        assertNotEquals(key, cache.key(null, json("{\"a\":1.0,\"b\":[true,null,\"x\"],\"c\":{\"d\":2.5}}")));
+        assertNotEquals(key, cache.key(null, json("{\"a\":\"1\",\"b\":[true,null,\"x\"],\"c\":{\"d\":2.5}}")));
+        assertNotEquals(cache.key(null, json("{\"a\":\"bc\"}")), cache.key(null, json("{\"ab\":\"c\"}")));
+    }
+
+    @Test
+    void testRawKeysMatchOnlyIdenticalBytes() {
+        ResponseCache cache = new ResponseCache(properties, mapper, new SimpleMeterRegistry());
+
+        PayloadKey key = cache.key(null, bytes("{\"game\":\"Chess\",\"players\":2}"));
+        assertEquals(key, cache.key(null, bytes("{\"game\":\"Chess\",\"players\":2}")));
+        assertNotEquals(key, cache.key(null, bytes("{\"game\":\"Chess\",\"players\":3}")));
+        // every tail length takes a different path through the hash
+        for (int length = 0; length < 40; length++) {
+            String payload = "x".repeat(length);
+            assertEquals(cache.key(null, bytes(payload)), cache.key(null, bytes(payload)));
+            assertNotEquals(cache.key(null, bytes(payload)), cache.key(null, bytes(payload + "y")));
+        }
+    }
+
+    @Test
+    void testIdempotencyKeyReplacesPayload() {
+        ResponseCache cache = new ResponseCache(properties, mapper, new SimpleMeterRegistry());
+
+        assertEquals(cache.key("order-42", json("{\"a\":1}")), cache.key("order-42", json("{\"a\":2}")));
+        assertEquals(cache.key("order-42", json("{\"a\":1}")), cache.key("order-42", bytes("{\"a\":3}")));
+        assertNotEquals(cache.key("order-42", json("{\"a\":1}")), cache.key("order-43", json("{\"a\":1}")));
+    }
+
+    @Test
+    void testHitsAndMissesAreCounted() {
+        ResponseCache cache = new ResponseCache(properties, mapper, new SimpleMeterRegistry());
+        PayloadKey key = cache.key(null, json("{\"a\":1}"));
+
+        assertNull(cache.get(key));
+        cache.put(key, json("{\"status\":\"ok\"}"));
+        ResponseCache.CachedResponse cached = cache.get(key);
+
+        assertNotNull(cached);
+        assertEquals("{\"status\":\"ok\"}", new String(cached.body(), StandardCharsets.UTF_8));
+        assertEquals(MediaType.APPLICATION_JSON, cached.contentType());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    void testSizeIsBoundedByBytes() {
+        properties.setMaxSize(DataSize.ofKilobytes(64));
+        properties.setMaxEntrySize(DataSize.ofKilobytes(4));
+        ResponseCache cache = new ResponseCache(properties, mapper, new SimpleMeterRegistry());
+
+        cache.put(cache.key("too-big", (JsonNode) null), new byte[5000], MediaType.APPLICATION_JSON);
+        assertEquals(0, cache.size());
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(cache.key("entry-" + i, (JsonNode) null), new byte[1024], MediaType.APPLICATION_JSON);
+        }
+        await().atMost(Duration.ofSeconds(5)).until(() -> cache.stats().evictionCount() > 0);
+        assertTrue(cache.size() * (1024 + 96) <= 64 * 1024, "size " + cache.size());
+    }
+
+    @Test
+    void testEntriesExpire() throws Exception {
+        properties.setTtl(Duration.ofMillis(100));
+        ResponseCache cache = new ResponseCache(properties, mapper, new SimpleMeterRegistry());
+        PayloadKey key = cache.key(null, json("{\"a\":1}"));
+
+        cache.put(key, json("{\"status\":\"ok\"}"));
+        assertNotNull(cache.get(key));
+
+        Thread.sleep(200);
+        assertNull(cache.get(key));
+    }
+
+    private JsonNode json(String json) {
+        try {
+            return mapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static ByteBuf bytes(String payload) {
+        return Unpooled.copiedBuffer(payload, StandardCharsets.UTF_8);
+    }
+}
@@ -1,21 +1,43 @@
 package com.coda.routingapi.service;
 
+import com.coda.routingapi.config.BackendClientConfiguration;
+import com.coda.routingapi.config.BackendClientProperties;
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import com.coda.routingapi.config.DeadlineProperties;
+import com.coda.routingapi.config.HedgingProperties;
+import com.coda.routingapi.config.OutlierDetectionProperties;
+import com.coda.routingapi.config.RetryProperties;
+import com.coda.routingapi.loadbalancer.LoadBalancer;
+import com.coda.routingapi.loadbalancer.RoundRobinLoadBalancer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.*;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.netty.resources.ConnectionProvider;
 import reactor.test.StepVerifier;
 
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,6 +45,7 @@ class RoutingServiceTest {
 
     private MockWebServer server1, server2, server3;
     private HealthCheckService healthCheckService;
+    private RoundRobinLoadBalancer loadBalancer;
     private RoutingService routingService;
     private final ObjectMapper mapper = new ObjectMapper();
 
@@ -40,7 +63,7 @@ class RoutingServiceTest {
         String url2 = server2.url("/").toString();
         String url3 = server3.url("/").toString();
 
-        healthCheckService = new HealthCheckService(builder, List.of(url1, url2, url3));
+        healthCheckService = TestBackends.healthCheckService(builder, List.of(url1, url2, url3));
 
         server1.enqueue(new MockResponse().setResponseCode(200).setBody("UP"));
         server2.enqueue(new MockResponse().setResponseCode(200).setBody("UP"));
@@ -49,7 +72,8 @@ class RoutingServiceTest {
         healthCheckService.init();
         waitForAsyncCompletion();
 
-        routingService = new RoutingService(builder, healthCheckService);
+        loadBalancer = new RoundRobinLoadBalancer();
+        routingService = createRoutingService(new RetryProperties(), new DeadlineProperties());
     }
 
     @AfterEach
@@ -122,14 +146,109 @@ class RoutingServiceTest {
         }
 
         // Assert CB open
-        Field cbField = RoutingService.class.getDeclaredField("circuitBreakers");
-        cbField.setAccessible(true);
-        Map<String, CircuitBreaker> cbMap = (Map<String, CircuitBreaker>) cbField.get(routingService);
-
-        CircuitBreaker cb1 = cbMap.get(server1.url("/").toString());
+        CircuitBreaker cb1 = healthCheckService.getInstance(server1.url("/").toString()).circuitBreaker();
         assertEquals(CircuitBreaker.State.OPEN, cb1.getState());
     }
 
+    @Test
+    void testCounterOverflowKeepsRotating() throws Exception {
+        Field counterField = RoundRobinLoadBalancer.class.getDeclaredField("counter");
+        counterField.setAccessible(true);
+        ((AtomicLong) counterField.get(loadBalancer)).set(Integer.MAX_VALUE);
+
+        server1.enqueue(jsonResponse("{\"instance\":\"server1\"}", 200));
+        server2.enqueue(jsonResponse("{\"instance\":\"server2\"}", 200));
+        server3.enqueue(jsonResponse("{\"instance\":\"server3\"}", 200));
+
+        JsonNode payload = mapper.createObjectNode().put("key", "value");
+        Set<String> results = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(routingService.forward(payload).block(Duration.ofSeconds(5)).get("instance").asText());
+        }
+
+        assertEquals(Set.of("server1", "server2", "server3"), results);
+    }
+
+    @Test
+    void testInFlightReleasedOnEveryOutcome() {
+        JsonNode payload = mapper.createObjectNode().put("key", "value");
+
+        // success, error with fallback, and a timeout that falls through to the next instance
+        server1.enqueue(jsonResponse("{\"message\":\"ok\"}", 200));
+        StepVerifier.create(routingService.forward(payload)).expectNextCount(1).verifyComplete();
+
+        server2.enqueue(new MockResponse().setResponseCode(500));
+        server3.enqueue(jsonResponse("{\"message\":\"ok\"}", 200));
+        StepVerifier.create(routingService.forward(payload)).expectNextCount(1).verifyComplete();
+
+        server3.enqueue(jsonResponse("{\"message\":\"slow\"}", 200).setBodyDelay(3, TimeUnit.SECONDS));
+        server1.enqueue(jsonResponse("{\"message\":\"ok\"}", 200));
+        StepVerifier.create(routingService.forward(payload)).expectNextCount(1).verifyComplete();
+
+        // circuit breaker rejection never reaches the backend
+        healthCheckService.getInstance(server1.url("/").toString()).circuitBreaker().transitionToOpenState();
+        server2.enqueue(jsonResponse("{\"message\":\"ok\"}", 200));
+        StepVerifier.create(routingService.forward(payload)).expectNextCount(1).verifyComplete();
+
+        RoutingTable table = healthCheckService.getRoutingTable();
+        for (int i = 0; i < table.size(); i++) {
+            assertEquals(0, table.get(i).inFlight(), table.get(i).baseUrl());
+        }
+    }
+
+    @Test
+    void testSaturatedConnectionPoolIsShedAsOverloaded() throws Exception {
+        BackendClientProperties client = new BackendClientProperties();
+        client.setMaxConnections(1);
+        client.setPendingAcquireTimeout(Duration.ofMillis(100));
+        ConnectionProvider provider = BackendClientConfiguration.connectionProvider(client);
+        routingService = createRoutingService(
+                WebClient.builder().clientConnector(BackendClientConfiguration.connector(provider, client)),
+                new RetryProperties(), new DeadlineProperties());
+        JsonNode payload = mapper.createObjectNode().put("key", "value");
+        List<Disposable> held = new ArrayList<>();
+        try {
+            // one slow request holds each instance's only connection
+            for (MockWebServer server : List.of(server1, server2, server3)) {
+                server.enqueue(jsonResponse("{\"message\":\"slow\"}", 200).setHeadersDelay(1, TimeUnit.SECONDS));
+                drainHealthProbe(server);
+            }
+            for (int i = 0; i < 3; i++) {
+                held.add(routingService.forward(payload).subscribe(resp -> { }, error -> { }));
+            }
+            for (MockWebServer server : List.of(server1, server2, server3)) {
+                assertEquals("/api/echo", server.takeRequest(1, TimeUnit.SECONDS).getPath());
+            }
+
+            StepVerifier.create(routingService.forward(payload))
+                    .expectError(OverloadedException.class)
+                    .verify(Duration.ofSeconds(1));
+
+            // skipped without counting against the instances
+            for (BackendInstance instance : healthCheckService.getAllInstances()) {
+                assertEquals(0, instance.circuitBreaker().getMetrics().getNumberOfFailedCalls(), instance.baseUrl());
+            }
+        } finally {
+            held.forEach(Disposable::dispose);
+            provider.disposeLater().block(Duration.ofSeconds(5));
+        }
+    }
+
+    @Test
+    void testRoutingTableIsOnlyRebuiltOnHealthChange() {
+        RoutingTable before = healthCheckService.getRoutingTable();
+
+        server1.enqueue(new MockResponse().setResponseCode(200).setBody("UP"));
+        server2.enqueue(new MockResponse().setResponseCode(200).setBody("UP"));
+        server3.enqueue(new MockResponse().setResponseCode(200).setBody("UP"));
+        healthCheckService.init();
+        waitForAsyncCompletion();
+
+        assertSame(before, healthCheckService.getRoutingTable());
+        assertEquals(List.of(server1.url("/").toString(), server2.url("/").toString(), server3.url("/").toString()),
+                before.baseUrls());
+    }
+
     @Test
     void testConcurrentRoundRobin() throws InterruptedException, ExecutionException {
         server1.enqueue(jsonResponse("{\"instance\":\"server1\"}", 200));
@@ -160,6 +279,191 @@ class RoutingServiceTest {
         executor.shutdown();
     }
 
+    @Test
+    void testForwardRawPassesBytesThrough() throws Exception {
+        server1.enqueue(new MockResponse().setResponseCode(500));
+        server2.enqueue(jsonResponse("{\"message\":\"raw2\"}", 200));
+        server3.enqueue(jsonResponse("{\"message\":\"raw3\"}", 200));
+
+        byte[] body = "{\"key\": \"value\"}".getBytes(StandardCharsets.UTF_8);
+        RawPayload payload = RawPayload.of(body, MediaType.APPLICATION_JSON);
+
+        StepVerifier.create(routingService.forwardRaw(payload))
+                .expectNextMatches(resp -> new String(resp.getBody(), StandardCharsets.UTF_8).startsWith("{\"message\":\"raw"))
+                .verifyComplete();
+
+        // Every attempt, including the fallback after the 500, must carry the whole body
+        int forwardedCount = 0;
+        for (MockWebServer server : List.of(server1, server2, server3)) {
+            server.takeRequest(); // health probe
+            RecordedRequest forwarded = server.takeRequest(100, TimeUnit.MILLISECONDS);
+            if (forwarded != null) {
+                forwardedCount++;
+                assertEquals("{\"key\": \"value\"}", forwarded.getBody().readUtf8());
+                assertEquals(String.valueOf(body.length), forwarded.getHeader("Content-Length"));
+                assertEquals(MediaType.APPLICATION_JSON_VALUE, forwarded.getHeader("Content-Type"));
+            }
+        }
+        assertTrue(forwardedCount >= 1);
+
+        payload.release();
+        assertEquals(0, payload.content().refCnt());
+    }
+
+    @Test
+    void testStreamRawHandsBackThePooledBody() {
+        server1.enqueue(new MockResponse().setResponseCode(500));
+        server2.enqueue(jsonResponse("{\"message\":\"raw2\"}", 200));
+        RawPayload payload = RawPayload.of("{\"key\": \"value\"}".getBytes(StandardCharsets.UTF_8),
+                MediaType.APPLICATION_JSON);
+
+        ResponseEntity<Flux<DataBuffer>> response = routingService
+                .streamRaw(payload, LoadBalancer.NO_KEY, routingService.deadline(null))
+                .block(Duration.ofSeconds(5));
+        payload.release();
+
+        // the fallback still happens before anything is streamed
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        assertEquals(18, response.getHeaders().getContentLength());
+        List<DataBuffer> buffers = response.getBody().collectList().block(Duration.ofSeconds(5));
+        StringBuilder body = new StringBuilder();
+        for (DataBuffer buffer : buffers) {
+            assertInstanceOf(NettyDataBuffer.class, buffer);
+            body.append(buffer.toString(StandardCharsets.UTF_8));
+            DataBufferUtils.release(buffer);
+        }
+        assertEquals("{\"message\":\"raw2\"}", body.toString());
+    }
+
+    @Test
+    void testForwardBatchGoesToBatchEndpoint() throws Exception {
+        server1.enqueue(jsonResponse("[{\"n\":1},{\"n\":2}]", 200));
+        List<JsonNode> items = List.of(mapper.createObjectNode().put("n", 1), mapper.createObjectNode().put("n", 2));
+
+        StepVerifier.create(routingService.forwardBatch(items, routingService.deadline(null)))
+                .expectNextMatches(results -> results.isArray() && results.size() == 2)
+                .verifyComplete();
+
+        drainHealthProbe(server1);
+        RecordedRequest request = server1.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals("/api/echo/batch", request.getPath());
+        assertEquals("[{\"n\":1},{\"n\":2}]", request.getBody().readUtf8());
+    }
+
+    @Test
+    void testDeadlineIsPassedToBackend() throws Exception {
+        server1.enqueue(jsonResponse("{\"message\":\"ok\"}", 200));
+        JsonNode payload = mapper.createObjectNode().put("key", "value");
+
+        StepVerifier.create(routingService.forward(payload, routingService.deadline("1500")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        drainHealthProbe(server1);
+        RecordedRequest request = server1.takeRequest(1, TimeUnit.SECONDS);
+        long sent = Long.parseLong(request.getHeader(Deadline.HEADER));
+        assertTrue(sent > 1000 && sent <= 1500, "sent " + sent);
+    }
+
+    @Test
+    void testDeadlineBoundsTheWholeRequest() {
+        server1.enqueue(jsonResponse("{\"message\":\"slow1\"}", 200).setHeadersDelay(1, TimeUnit.SECONDS));
+        server2.enqueue(jsonResponse("{\"message\":\"slow2\"}", 200).setHeadersDelay(1, TimeUnit.SECONDS));
+        server3.enqueue(jsonResponse("{\"message\":\"slow3\"}", 200).setHeadersDelay(1, TimeUnit.SECONDS));
+        JsonNode payload = mapper.createObjectNode().put("key", "value");
+
+        long start = System.nanoTime();
+        StepVerifier.create(routingService.forward(payload, routingService.deadline("300")))
+                .expectError(DeadlineExceededException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 800);
+        // the first attempt used up the deadline; nobody else was tried and nobody is blamed for it
+        assertEquals(1, server2.getRequestCount());
+        assertEquals(1, server3.getRequestCount());
+        BackendInstance first = healthCheckService.getInstance(server1.url("/").toString());
+        assertEquals(0, first.circuitBreaker().getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    void testDeadlineParsing() {
+        DeadlineProperties properties = new DeadlineProperties();
+        assertRemaining(properties.getDefaultTimeout(), routingService.deadline(null));
+        assertRemaining(properties.getDefaultTimeout(), routingService.deadline("soon"));
+        assertRemaining(properties.getMaxTimeout(), routingService.deadline("3600000"));
+        assertRemaining(Duration.ofMillis(250), routingService.deadline("250"));
+        assertTrue(routingService.deadline("0").isExpired());
+    }
+
+    @Test
+    void testExhaustedRetryBudgetFailsFast() {
+        RetryProperties retry = new RetryProperties();
+        retry.setBudgetPercent(0);
+        retry.setBudgetBurst(0);
+        routingService = createRoutingService(retry, new DeadlineProperties());
+        server1.enqueue(new MockResponse().setResponseCode(500));
+        server2.enqueue(jsonResponse("{\"message\":\"fallback2\"}", 200));
+        JsonNode payload = mapper.createObjectNode().put("key", "value");
+
+        StepVerifier.create(routingService.forward(payload))
+                .expectErrorMatches(e -> e.getMessage().startsWith("Retry budget exhausted"))
+                .verify();
+
+        // only the health probe reached the next instance
+        assertEquals(1, server2.getRequestCount());
+    }
+
+    @Test
+    void testRetryBudgetRefillsWithTraffic() {
+        RetryProperties retry = new RetryProperties();
+        retry.setBudgetPercent(50);
+        retry.setBudgetBurst(1);
+        routingService = createRoutingService(retry, new DeadlineProperties());
+        JsonNode payload = mapper.createObjectNode().put("key", "value");
+
+        // burst token: the first failure is retried
+        server1.enqueue(new MockResponse().setResponseCode(500));
+        server2.enqueue(jsonResponse("{\"message\":\"retried\"}", 200));
+        StepVerifier.create(routingService.forward(payload)).expectNextCount(1).verifyComplete();
+
+        // one request only earns half a retry
+        server2.enqueue(new MockResponse().setResponseCode(500));
+        StepVerifier.create(routingService.forward(payload))
+                .expectErrorMatches(e -> e.getMessage().startsWith("Retry budget exhausted"))
+                .verify();
+
+        // a second earns the other half
+        server3.enqueue(new MockResponse().setResponseCode(500));
+        server1.enqueue(jsonResponse("{\"message\":\"retried again\"}", 200));
+        StepVerifier.create(routingService.forward(payload))
+                .expectNextMatches(resp -> resp.get("message").asText().equals("retried again"))
+                .verifyComplete();
+    }
+
+    private RoutingService createRoutingService(RetryProperties retry, DeadlineProperties deadline) {
+        return createRoutingService(WebClient.builder(), retry, deadline);
+    }
+
+    private RoutingService createRoutingService(WebClient.Builder builder, RetryProperties retry,
+                                                DeadlineProperties deadline) {
+        return new RoutingService(builder, healthCheckService, loadBalancer,
+                new OutlierDetector(healthCheckService, new OutlierDetectionProperties()),
+                new HedgingPolicy(new HedgingProperties()),
+                new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties()),
+                new RetryPolicy(retry, new SimpleMeterRegistry()), deadline);
+    }
+
+    private static void assertRemaining(Duration expected, Deadline deadline) {
+        long remaining = deadline.remaining().toMillis();
+        assertTrue(remaining > expected.toMillis() - 100 && remaining <= expected.toMillis(),
+                "expected about " + expected + ", was " + remaining + " ms");
+    }
+
+    private static void drainHealthProbe(MockWebServer server) throws InterruptedException {
+        RecordedRequest probe = server.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals("/actuator/health", probe.getPath());
+    }
+
     private MockResponse jsonResponse(String jsonBody, int statusCode) {
         return new MockResponse()
                 .setResponseCode(statusCode)
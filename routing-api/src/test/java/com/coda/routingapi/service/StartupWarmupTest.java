@@ -0,0 +1,129 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.WarmupProperties;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StartupWarmupTest {
+
+    private MockWebServer backend;
+    private MockWebServer router;
+    private HealthCheckService healthCheckService;
+    private WarmupProperties properties;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        backend = new MockWebServer();
+        router = new MockWebServer();
+        backend.start();
+        router.start();
+        healthCheckService = TestBackends.healthCheckService(WebClient.builder(), List.of(backend.url("/").toString()));
+        properties = new WarmupProperties();
+        properties.setConnectionsPerInstance(3);
+        properties.setRequests(20);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        healthCheckService.stop();
+        backend.shutdown();
+        router.shutdown();
+    }
+
+    @Test
+    void readyOnlyOnceTheFirstSweepConnectionsAndRequestsAreDone() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            backend.enqueue(new MockResponse().setResponseCode(200));
+        }
+        for (int i = 0; i < 20; i++) {
+            router.enqueue(new MockResponse().setResponseCode(200));
+        }
+        StartupWarmup warmup = new StartupWarmup(healthCheckService, WebClient.create(), properties);
+
+        warmup.run(router.url("/route").toString()).subscribe();
+        Thread.sleep(300);
+        // nothing probed yet, so nothing else has happened either
+        assertEquals(Status.OUT_OF_SERVICE, warmup.health().getStatus());
+        assertEquals(0, router.getRequestCount());
+
+        healthCheckService.start();
+        await().atMost(Duration.ofSeconds(5)).until(warmup::isDone);
+
+        assertEquals(Status.UP, warmup.health().getStatus());
+        assertEquals(1 + 3, backend.getRequestCount());
+        assertEquals(20, router.getRequestCount());
+        RecordedRequest request = router.takeRequest();
+        assertTrue(request.getBody().readUtf8().startsWith("{\"warmup\":"));
+        assertEquals(StartupWarmup.token(), request.getHeader(StartupWarmup.HEADER));
+    }
+
+    @Test
+    void givesUpAfterTheTimeoutAndReportsReady() {
+        properties.setTimeout(Duration.ofMillis(200));
+        StartupWarmup warmup = new StartupWarmup(healthCheckService, WebClient.create(), properties);
+
+        // the first sweep never comes, as the health checks are never started
+        warmup.run(router.url("/route").toString()).block(Duration.ofSeconds(5));
+
+        assertEquals(Status.UP, warmup.health().getStatus());
+    }
+
+    @Test
+    void onlyTheRoutersOwnRequestsAreTakenAsWarmUp() {
+        // a loopback peer proves nothing behind a local sidecar; only the process's token counts
+        InetSocketAddress loopback = new InetSocketAddress("127.0.0.1", 40000);
+
+        assertTrue(StartupWarmup.isWarmup(MockServerHttpRequest.post("/route")
+                .header(StartupWarmup.HEADER, StartupWarmup.token()).build()));
+        assertFalse(StartupWarmup.isWarmup(MockServerHttpRequest.post("/route")
+                .header(StartupWarmup.HEADER, "true").remoteAddress(loopback).build()));
+        assertFalse(StartupWarmup.isWarmup(MockServerHttpRequest.post("/route").remoteAddress(loopback).build()));
+    }
+
+    @Test
+    void backendCallsMadeForAWarmUpRequestCarryTheHeader() {
+        List<ClientRequest> sent = new CopyOnWriteArrayList<>();
+        WebClient client = WebClient.builder()
+                .filter(StartupWarmup.propagateHeader())
+                .exchangeFunction(request -> {
+                    sent.add(request);
+                    return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                })
+                .build();
+
+        client.post().uri("http://backend/api/echo").retrieve().toBodilessEntity().block(Duration.ofSeconds(5));
+        client.post().uri("http://backend/api/echo").retrieve().toBodilessEntity()
+                .contextWrite(context -> context.put(StartupWarmup.HEADER, Boolean.TRUE))
+                .block(Duration.ofSeconds(5));
+
+        assertNull(sent.get(0).headers().getFirst(StartupWarmup.HEADER));
+        assertEquals("true", sent.get(1).headers().getFirst(StartupWarmup.HEADER));
+    }
+
+    @Test
+    void disabledIsReadyStraightAway() {
+        properties.setEnabled(false);
+
+        assertEquals(Status.UP, new StartupWarmup(healthCheckService, WebClient.create(), properties).health()
+                .getStatus());
+    }
+}
@@ -0,0 +1,34 @@
+package com.coda.routingapi.service;
+
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import com.coda.routingapi.config.HealthCheckProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
+
+/**
+ * Instances and fleets with default settings for tests, each registering its meters in a registry of its own.
+ */
+public final class TestBackends {
+
+    private TestBackends() {
+    }
+
+    public static BackendInstance instance(String baseUrl) {
+        return instance(baseUrl, 1);
+    }
+
+    public static BackendInstance instance(String baseUrl, int weight) {
+        return new BackendInstance(baseUrl, weight, new CircuitBreakerProperties(), new SimpleMeterRegistry());
+    }
+
+    /**
+     * A fleet probed through {@code builder} with default health check and circuit breaker settings and no event
+     * listeners.
+     */
+    public static HealthCheckService healthCheckService(WebClient.Builder builder, List<String> instances) {
+        return new HealthCheckService(builder.build(), instances, List.of(), new HealthCheckProperties(),
+                new CircuitBreakerProperties(), event -> { }, new SimpleMeterRegistry());
+    }
+}
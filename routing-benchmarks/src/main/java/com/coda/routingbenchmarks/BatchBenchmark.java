@@ -0,0 +1,104 @@
+package com.coda.routingbenchmarks;
+
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import com.coda.routingapi.config.DeadlineProperties;
+import com.coda.routingapi.config.HealthCheckProperties;
+import com.coda.routingapi.config.HedgingProperties;
+import com.coda.routingapi.config.OutlierDetectionProperties;
+import com.coda.routingapi.config.RetryProperties;
+import com.coda.routingapi.loadbalancer.RoundRobinLoadBalancer;
+import com.coda.routingapi.service.AdaptiveConcurrencyLimiter;
+import com.coda.routingapi.service.HealthCheckService;
+import com.coda.routingapi.service.HedgingPolicy;
+import com.coda.routingapi.service.OutlierDetector;
+import com.coda.routingapi.service.RetryPolicy;
+import com.coda.routingapi.service.RoutingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to route 1000 small documents one request each, as clients of /route do today, versus in micro-batches
+ * to the batch endpoint, as /route/batch and /route/stream do. Both keep four requests in flight.
+ *
+ * <pre>java -jar routing-benchmarks/target/benchmarks.jar BatchBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BatchBenchmark {
+
+    private static final int DOCUMENTS = 1000;
+    private static final int CONCURRENCY = 4;
+
+    @Param({"8", "32", "128"})
+    private int microBatchSize;
+
+    private StubBackend backend;
+    private RoutingService routingService;
+    private List<JsonNode> documents;
+
+    @Setup
+    public void setUp() throws Exception {
+        backend = StubBackend.start();
+        WebClient.Builder builder = WebClient.builder();
+        HealthCheckService healthCheckService = new HealthCheckService(builder.build(), List.of(backend.baseUrl()),
+                List.of(), new HealthCheckProperties(), new CircuitBreakerProperties(), event -> { },
+                new SimpleMeterRegistry());
+        healthCheckService.init();
+        while (healthCheckService.getHealthyInstances().isEmpty()) {
+            Thread.sleep(10);
+        }
+        // the limiter would shed while it measures no-load latency at min-limit; this compares transport cost only
+        ConcurrencyLimitProperties limits = new ConcurrencyLimitProperties();
+        limits.setEnabled(false);
+        routingService = new RoutingService(builder, healthCheckService, new RoundRobinLoadBalancer(),
+                new OutlierDetector(healthCheckService, new OutlierDetectionProperties()),
+                new HedgingPolicy(new HedgingProperties()),
+                new AdaptiveConcurrencyLimiter(limits),
+                new RetryPolicy(new RetryProperties(), new SimpleMeterRegistry()), new DeadlineProperties());
+        documents = new ArrayList<>(DOCUMENTS);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            documents.add(JsonNodeFactory.instance.objectNode()
+                    .put("id", i)
+                    .put("game", "Mobile Legends")
+                    .put("score", i * 31 % 997));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        backend.close();
+    }
+
+    @Benchmark
+    public List<JsonNode> perDocument() {
+        return Flux.fromIterable(documents)
+                .flatMapSequential(routingService::forward, CONCURRENCY)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+    }
+
+    @Benchmark
+    public List<JsonNode> microBatched() {
+        return Flux.fromIterable(documents)
+                .buffer(microBatchSize)
+                .flatMapSequential(batch -> routingService.forwardBatch(batch, routingService.deadline(null)),
+                        CONCURRENCY)
+                .flatMapIterable(results -> results)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+    }
+}
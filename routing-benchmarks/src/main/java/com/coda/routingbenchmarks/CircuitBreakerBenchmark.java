@@ -0,0 +1,67 @@
+package com.coda.routingbenchmarks;
+
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import com.coda.routingapi.service.BackendInstance;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the per-instance circuit breaker adds to a request: a bare permission and outcome record, alone and
+ * contended, and the Reactor operator {@code RoutingService} wraps every attempt in, against the same Mono
+ * without it.
+ *
+ * <pre>java -jar routing-benchmarks/target/benchmarks.jar CircuitBreakerBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CircuitBreakerBenchmark {
+
+    private CircuitBreaker circuitBreaker;
+    private Mono<String> response;
+
+    @Setup
+    public void setUp() {
+        // same configuration every instance gets
+        circuitBreaker = new BackendInstance("http://app-0:8081", 1, new CircuitBreakerProperties(),
+                new SimpleMeterRegistry()).circuitBreaker();
+        response = Mono.just("{\"status\":\"ok\"}");
+    }
+
+    @Benchmark
+    public boolean acquire() {
+        return permitAndRecord();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean acquireContended() {
+        return permitAndRecord();
+    }
+
+    @Benchmark
+    public String baseline() {
+        return response.block();
+    }
+
+    @Benchmark
+    public String operator() {
+        return response.transformDeferred(CircuitBreakerOperator.of(circuitBreaker)).block();
+    }
+
+    private boolean permitAndRecord() {
+        boolean permitted = circuitBreaker.tryAcquirePermission();
+        if (permitted) {
+            circuitBreaker.onSuccess(1_000, TimeUnit.NANOSECONDS);
+        }
+        return permitted;
+    }
+}
@@ -0,0 +1,64 @@
+package com.coda.routingbenchmarks;
+
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import com.coda.routingapi.config.HealthCheckProperties;
+import com.coda.routingapi.service.HealthCheckService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of active health probing per probe as the fleet grows. Every invocation runs 500 probes through
+ * {@link HealthCheckService#sweep()} with the default concurrency bound: ten sweeps of 50 instances or one of
+ * 500, all served by a single in-process stub. Flat time and {@code -prof gc} allocation per op across the two
+ * sizes means probe cost does not grow with the fleet.
+ *
+ * <pre>java -jar routing-benchmarks/target/benchmarks.jar HealthCheckBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HealthCheckBenchmark {
+
+    private static final int PROBES_PER_INVOCATION = 500;
+
+    @Param({"50", "500"})
+    private int instances;
+
+    private StubBackend backend;
+    private HealthCheckService healthCheckService;
+
+    @Setup
+    public void setUp() {
+        backend = StubBackend.start();
+        List<String> urls = new ArrayList<>(instances);
+        for (int i = 0; i < instances; i++) {
+            urls.add(backend.baseUrl() + "/instance-" + i);
+        }
+        healthCheckService = new HealthCheckService(WebClient.create(), urls, List.of(),
+                new HealthCheckProperties(), new CircuitBreakerProperties(), event -> { }, new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        healthCheckService.stop();
+        backend.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES_PER_INVOCATION)
+    public int probe() {
+        for (int i = 0; i < PROBES_PER_INVOCATION / instances; i++) {
+            healthCheckService.sweep().block(Duration.ofSeconds(30));
+        }
+        return healthCheckService.getRoutingTable().size();
+    }
+}
@@ -0,0 +1,139 @@
+package com.coda.routingbenchmarks;
+
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import com.coda.routingapi.config.DeadlineProperties;
+import com.coda.routingapi.config.HealthCheckProperties;
+import com.coda.routingapi.config.HedgingProperties;
+import com.coda.routingapi.config.OutlierDetectionProperties;
+import com.coda.routingapi.config.RetryProperties;
+import com.coda.routingapi.loadbalancer.LoadBalancer;
+import com.coda.routingapi.loadbalancer.RoundRobinLoadBalancer;
+import com.coda.routingapi.service.AdaptiveConcurrencyLimiter;
+import com.coda.routingapi.service.HealthCheckService;
+import com.coda.routingapi.service.HedgingPolicy;
+import com.coda.routingapi.service.OutlierDetector;
+import com.coda.routingapi.service.RawPayload;
+import com.coda.routingapi.service.RetryPolicy;
+import com.coda.routingapi.service.RoutingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonNode forwarding versus raw-byte passthrough through the real {@link RoutingService} and WebClient,
+ * against an in-process echo backend. Sample mode gives the latency percentiles; run with {@code -prof gc}
+ * to compare allocation per request.
+ *
+ * <pre>java -jar routing-benchmarks/target/benchmarks.jar PassthroughBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PassthroughBenchmark {
+
+    @Param({"1024", "8192", "65536"})
+    private int payloadSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private StubBackend backend;
+    private RoutingService routingService;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws Exception {
+        backend = StubBackend.start();
+        WebClient.Builder builder = WebClient.builder();
+        HealthCheckService healthCheckService = new HealthCheckService(builder.build(), List.of(backend.baseUrl()),
+                List.of(), new HealthCheckProperties(), new CircuitBreakerProperties(), event -> { },
+                new SimpleMeterRegistry());
+        healthCheckService.init();
+        while (healthCheckService.getHealthyInstances().isEmpty()) {
+            Thread.sleep(10);
+        }
+        routingService = new RoutingService(builder, healthCheckService, new RoundRobinLoadBalancer(),
+                new OutlierDetector(healthCheckService, new OutlierDetectionProperties()),
+                new HedgingPolicy(new HedgingProperties()),
+                new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties()),
+                new RetryPolicy(new RetryProperties(), new SimpleMeterRegistry()), new DeadlineProperties());
+        payload = jsonPayload(payloadSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        backend.close();
+    }
+
+    /** Current /route path: bind the body to a tree, re-serialize it, parse the response into a tree. */
+    @Benchmark
+    public JsonNode jsonNode() throws Exception {
+        JsonNode tree = mapper.readTree(payload);
+        JsonNode response = routingService.forward(tree).block(Duration.ofSeconds(5));
+        // what the controller's encoder does with the result
+        mapper.writeValueAsBytes(response);
+        return response;
+    }
+
+    /** Passthrough path with the cache or coalescing on: pooled buffer out, the response back as a byte[]. */
+    @Benchmark
+    public byte[] passthrough() {
+        RawPayload raw = RawPayload.of(payload, MediaType.APPLICATION_JSON);
+        try {
+            ResponseEntity<byte[]> response = routingService.forwardRaw(raw).block(Duration.ofSeconds(5));
+            return response.getBody();
+        } finally {
+            raw.release();
+        }
+    }
+
+    /** Passthrough path otherwise: the response's pooled buffers are handed on and released once written. */
+    @Benchmark
+    public long streamed() {
+        RawPayload raw = RawPayload.of(payload, MediaType.APPLICATION_JSON);
+        try {
+            ResponseEntity<Flux<DataBuffer>> response = routingService
+                    .streamRaw(raw, LoadBalancer.NO_KEY, routingService.deadline(null))
+                    .block(Duration.ofSeconds(5));
+            // what the server does as it writes them out
+            return response.getBody()
+                    .map(buffer -> {
+                        int bytes = buffer.readableByteCount();
+                        DataBufferUtils.release(buffer);
+                        return (long) bytes;
+                    })
+                    .reduce(0L, Long::sum)
+                    .block(Duration.ofSeconds(5));
+        } finally {
+            raw.release();
+        }
+    }
+
+    private byte[] jsonPayload(int size) throws Exception {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        int i = 0;
+        while (json.length() < size - 64) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i).append(",\"game\":\"Mobile Legends\",\"score\":").append(i * 31 % 997).append('}');
+            i++;
+        }
+        json.append("]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,101 @@
+package com.coda.routingbenchmarks;
+
+import com.coda.routingapi.config.AdmissionProperties;
+import com.coda.routingapi.config.RateLimitProperties;
+import com.coda.routingapi.service.AdmissionGate;
+import com.coda.routingapi.service.ClientRateLimiter;
+import com.coda.routingapi.service.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-request cost of the admission checks in front of /route: the per-client rate limit, looked up among
+ * {@code clients} distinct API keys with {@code max-clients} at 100k, and the priority-aware admission gate.
+ * With 100k clients every key stays tracked, so this is the steady-state check; with 1M the map churns and
+ * the time includes evicting and re-creating clients. Run with {@code -prof gc}: a tracked client's check should
+ * show no allocation per op.
+ *
+ * <pre>java -jar routing-benchmarks/target/benchmarks.jar RateLimitBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RateLimitBenchmark {
+
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+
+    @Param({"100000", "1000000"})
+    private int clients;
+
+    private final AtomicInteger seeds = new AtomicInteger();
+    private ClientRateLimiter limiter;
+    private AdmissionGate gate;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setEnabled(true);
+        properties.setMaxClients(100_000);
+        limiter = new ClientRateLimiter(properties, new SimpleMeterRegistry());
+        gate = new AdmissionGate(new AdmissionProperties(), new SimpleMeterRegistry());
+        keys = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            keys[i] = "api-key-" + i;
+            // String caches its hash, as the header value of a real request computes it once
+            keys[i].hashCode();
+        }
+        for (String key : keys) {
+            limiter.tryAcquire(key);
+        }
+    }
+
+    /** One thread's uniformly drawn client sequence, drawn up front so sampling isn't part of the measurement. */
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private int[] sequence;
+        private int next;
+
+        @Setup
+        public void setUp(RateLimitBenchmark benchmark) {
+            SplittableRandom random = new SplittableRandom(benchmark.seeds.incrementAndGet());
+            sequence = new int[SEQUENCE_LENGTH];
+            for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+                sequence[i] = random.nextInt(benchmark.clients);
+            }
+        }
+
+        int next() {
+            int index = sequence[next];
+            next = (next + 1) & (SEQUENCE_LENGTH - 1);
+            return index;
+        }
+    }
+
+    @Benchmark
+    public long rateLimit(Requests requests) {
+        return limiter.tryAcquire(keys[requests.next()]);
+    }
+
+    /** Rate limit, then a slot at the gate and its release, as a /route request takes them. */
+    @Benchmark
+    public boolean admit(Requests requests) {
+        if (limiter.tryAcquire(keys[requests.next()]) > 0) {
+            return false;
+        }
+        if (!gate.tryAcquire(Priority.LOW)) {
+            return false;
+        }
+        gate.release();
+        return true;
+    }
+}
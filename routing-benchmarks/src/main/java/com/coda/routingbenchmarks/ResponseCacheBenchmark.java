@@ -0,0 +1,141 @@
+package com.coda.routingbenchmarks;
+
+import com.coda.routingapi.config.ResponseCacheProperties;
+import com.coda.routingapi.service.PayloadKey;
+import com.coda.routingapi.service.ResponseCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ResponseCache} lookups under a Zipf-distributed key skew: {@value #DISTINCT_PAYLOADS} distinct payloads,
+ * a cache that only fits a fraction of their responses, and four threads each walking its own pre-drawn request
+ * sequence. A miss stores the response as {@code RoutingController} would after a backend call, so the
+ * throughput includes eviction work. The hit ratio for each skew is printed at tear-down; run with
+ * {@code -prof gc} to see the allocation per lookup.
+ *
+ * <pre>java -jar routing-benchmarks/target/benchmarks.jar ResponseCacheBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class ResponseCacheBenchmark {
+
+    private static final int DISTINCT_PAYLOADS = 100_000;
+    private static final int SEQUENCE_LENGTH = 1 << 20;
+    private static final int RESPONSE_SIZE = 512;
+
+    /** Zipf exponent: 0.8 is a long-tailed mix, 1.2 is dominated by a few hot payloads. */
+    @Param({"0.8", "1.0", "1.2"})
+    private double skew;
+
+    private final AtomicInteger seeds = new AtomicInteger();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ResponseCache cache;
+    private ByteBuf[] rawPayloads;
+    private JsonNode[] jsonPayloads;
+    private byte[] response;
+    private double[] cumulative;
+
+    @Setup
+    public void setUp() throws Exception {
+        ResponseCacheProperties properties = new ResponseCacheProperties();
+        properties.setEnabled(true);
+        // room for roughly 10% of the distinct responses
+        properties.setMaxSize(DataSize.ofBytes((long) DISTINCT_PAYLOADS / 10 * (RESPONSE_SIZE + 96)));
+        cache = new ResponseCache(properties, mapper, new SimpleMeterRegistry());
+
+        rawPayloads = new ByteBuf[DISTINCT_PAYLOADS];
+        jsonPayloads = new JsonNode[DISTINCT_PAYLOADS];
+        for (int i = 0; i < DISTINCT_PAYLOADS; i++) {
+            String json = "{\"game\":\"game-" + (i % 50) + "\",\"player\":" + i
+                    + ",\"region\":\"ap-southeast-1\",\"items\":[1,2,3]}";
+            rawPayloads[i] = Unpooled.unreleasableBuffer(
+                    Unpooled.copiedBuffer(json, StandardCharsets.UTF_8).asReadOnly());
+            jsonPayloads[i] = mapper.readTree(json);
+        }
+        response = new byte[RESPONSE_SIZE];
+        Arrays.fill(response, (byte) ' ');
+        response[0] = '{';
+        response[RESPONSE_SIZE - 1] = '}';
+
+        cumulative = new double[DISTINCT_PAYLOADS];
+        double sum = 0;
+        for (int rank = 0; rank < DISTINCT_PAYLOADS; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < DISTINCT_PAYLOADS; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%nskew %.1f: hit ratio %.3f, evictions %d%n",
+                skew, cache.stats().hitRate(), cache.stats().evictionCount());
+    }
+
+    /** One thread's request sequence, drawn up front so sampling isn't part of the measurement. */
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private int[] sequence;
+        private int next;
+
+        @Setup
+        public void setUp(ResponseCacheBenchmark benchmark) {
+            SplittableRandom random = new SplittableRandom(benchmark.seeds.incrementAndGet());
+            sequence = new int[SEQUENCE_LENGTH];
+            for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+                int rank = Arrays.binarySearch(benchmark.cumulative, random.nextDouble());
+                sequence[i] = Math.min(rank < 0 ? -rank - 1 : rank, DISTINCT_PAYLOADS - 1);
+            }
+        }
+
+        int next() {
+            int index = sequence[next];
+            next = (next + 1) & (SEQUENCE_LENGTH - 1);
+            return index;
+        }
+    }
+
+    /** Passthrough path: hash the raw bytes, look up, store on a miss. */
+    @Benchmark
+    public Object raw(Requests requests) {
+        PayloadKey key = cache.key(null, rawPayloads[requests.next()]);
+        ResponseCache.CachedResponse cached = cache.get(key);
+        if (cached == null) {
+            cache.put(key, response, MediaType.APPLICATION_JSON);
+            return key;
+        }
+        return cached;
+    }
+
+    /** JsonNode path: canonical tree hash, look up, store on a miss. */
+    @Benchmark
+    public Object json(Requests requests) {
+        PayloadKey key = cache.key(null, jsonPayloads[requests.next()]);
+        ResponseCache.CachedResponse cached = cache.get(key);
+        if (cached == null) {
+            cache.put(key, response, MediaType.APPLICATION_JSON);
+            return key;
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,79 @@
+package com.coda.routingbenchmarks;
+
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import com.coda.routingapi.config.HealthCheckProperties;
+import com.coda.routingapi.service.HealthCheckService;
+import com.coda.routingapi.service.RoutingTable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Healthy-set snapshotting from 3 to 1000 instances. Reading the snapshot is what every request does and should
+ * stay flat and allocation-free at any fleet size; rebuilding it is what a health transition costs and grows
+ * with the fleet.
+ *
+ * <pre>java -jar routing-benchmarks/target/benchmarks.jar RoutingTableBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingTableBenchmark {
+
+    @Param({"3", "50", "1000"})
+    private int instances;
+
+    private StubBackend backend;
+    private HealthCheckService healthCheckService;
+
+    @Setup
+    public void setUp() {
+        backend = StubBackend.start();
+        List<String> urls = new ArrayList<>(instances);
+        for (int i = 0; i < instances; i++) {
+            urls.add(backend.baseUrl() + "/instance-" + i);
+        }
+        healthCheckService = new HealthCheckService(WebClient.create(), urls, List.of(),
+                new HealthCheckProperties(), new CircuitBreakerProperties(), event -> { }, new SimpleMeterRegistry());
+        // one probe each marks the whole fleet healthy
+        healthCheckService.sweep().block(Duration.ofSeconds(60));
+        if (healthCheckService.getRoutingTable().size() != instances) {
+            throw new IllegalStateException("Only " + healthCheckService.getRoutingTable().size() + " healthy");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        healthCheckService.stop();
+        backend.close();
+    }
+
+    /** What {@code RoutingService} does per request. */
+    @Benchmark
+    @Threads(8)
+    public RoutingTable snapshot() {
+        return healthCheckService.getRoutingTable();
+    }
+
+    /** The public healthy list, served from the same snapshot. */
+    @Benchmark
+    @Threads(8)
+    public List<String> healthyInstances() {
+        return healthCheckService.getHealthyInstances();
+    }
+
+    /** One health transition's rebuild. */
+    @Benchmark
+    public RoutingTable rebuild() {
+        healthCheckService.refreshRoutingTable();
+        return healthCheckService.getRoutingTable();
+    }
+}
@@ -0,0 +1,108 @@
+package com.coda.routingbenchmarks;
+
+import com.coda.routingapi.config.CircuitBreakerProperties;
+import com.coda.routingapi.config.ConcurrencyLimitProperties;
+import com.coda.routingapi.config.ConsistentHashProperties;
+import com.coda.routingapi.loadbalancer.ConsistentHashLoadBalancer;
+import com.coda.routingapi.loadbalancer.LeastOutstandingLoadBalancer;
+import com.coda.routingapi.loadbalancer.LoadBalancer;
+import com.coda.routingapi.loadbalancer.PeakEwmaLoadBalancer;
+import com.coda.routingapi.loadbalancer.PowerOfTwoChoicesLoadBalancer;
+import com.coda.routingapi.loadbalancer.RoundRobinLoadBalancer;
+import com.coda.routingapi.loadbalancer.WeightedRoundRobinLoadBalancer;
+import com.coda.routingapi.service.AdaptiveConcurrencyLimiter;
+import com.coda.routingapi.service.BackendInstance;
+import com.coda.routingapi.service.RoutingTable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of picking an instance as contention grows from 1 to 64 threads: each op selects from the
+ * table, takes the instance's in-flight slot through the concurrency limiter and gives it back, which is all
+ * the shared state a request touches before it goes on the wire. A strategy whose time climbs with the thread
+ * count is fighting over a shared counter or lock.
+ *
+ * <pre>java -jar routing-benchmarks/target/benchmarks.jar SelectionBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectionBenchmark {
+
+    @Param({"round-robin", "weighted-round-robin", "least-outstanding", "power-of-two-choices", "peak-ewma",
+            "consistent-hash"})
+    private String strategy;
+
+    @Param({"3", "50"})
+    private int instances;
+
+    private RoutingTable table;
+    private AdaptiveConcurrencyLimiter limiter;
+    private LoadBalancer loadBalancer;
+    private long[] keys;
+
+    @Setup
+    public void setUp() {
+        List<BackendInstance> backends = new ArrayList<>(instances);
+        for (int i = 0; i < instances; i++) {
+            backends.add(new BackendInstance("http://app-" + i + ":8081", 1 + i % 3, new CircuitBreakerProperties(),
+                    new SimpleMeterRegistry()));
+        }
+        table = RoutingTable.of(backends);
+        limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties());
+        loadBalancer = switch (strategy) {
+            case "round-robin" -> new RoundRobinLoadBalancer();
+            case "weighted-round-robin" -> new WeightedRoundRobinLoadBalancer();
+            case "least-outstanding" -> new LeastOutstandingLoadBalancer();
+            case "power-of-two-choices" -> new PowerOfTwoChoicesLoadBalancer();
+            case "peak-ewma" -> new PeakEwmaLoadBalancer(Duration.ofSeconds(10), Duration.ofSeconds(2));
+            case "consistent-hash" -> new ConsistentHashLoadBalancer(new ConsistentHashProperties(), limiter);
+            default -> throw new IllegalArgumentException(strategy);
+        };
+        keys = new long[1024];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = loadBalancer.routingKey("tenant-" + i, null);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int threads1(Cursor cursor) {
+        return pick(cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int threads8(Cursor cursor) {
+        return pick(cursor);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int threads64(Cursor cursor) {
+        return pick(cursor);
+    }
+
+    private int pick(Cursor cursor) {
+        long key = keys[cursor.next++ & (keys.length - 1)];
+        int index = loadBalancer.select(table, key);
+        BackendInstance instance = table.get(index);
+        if (limiter.tryAcquire(instance)) {
+            limiter.release(instance);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,57 @@
+package com.coda.routingbenchmarks;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+/**
+ * In-process stand-in for application-api: answers the health probe and echoes /api/echo and /api/echo/batch
+ * bodies back byte for byte, so benchmarks measure the router rather than the backend.
+ */
+public final class StubBackend implements AutoCloseable {
+
+    private final DisposableServer server;
+
+    private StubBackend(DisposableServer server) {
+        this.server = server;
+    }
+
+    public static StubBackend start() {
+        DisposableServer server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes
+                        .get("/actuator/health", StubBackend::health)
+                        // lets one stub stand in for many instances: http://host:port/<name> as base URL
+                        .get("/{instance}/actuator/health", StubBackend::health)
+                        .post("/api/echo", StubBackend::echo)
+                        .post("/api/echo/batch", StubBackend::echo))
+                .bindNow();
+        return new StubBackend(server);
+    }
+
+    private static Publisher<Void> echo(HttpServerRequest request, HttpServerResponse response) {
+        return response
+                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                .send(request.receive().retain());
+    }
+
+    private static Publisher<Void> health(HttpServerRequest request, HttpServerResponse response) {
+        return response
+                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                .sendString(Mono.just("{\"status\":\"UP\"}"));
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.port();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
@@ -0,0 +1,247 @@
+package com.coda.routingloadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * application-api on its own, without a router in front: starts it as a child process once per serving mode,
+ * sends open-model traffic straight at {@code /api/echo} at each rate in turn and reports the throughput and
+ * latency achieved at every step. A mode stops climbing at the first rate where p99 passes {@code --max-p99} or
+ * more than 1% of requests fail, so the last good step is its sustainable throughput.
+ *
+ * <pre>
+ * java -Dloader.main=com.coda.routingloadtest.BackendBenchmark -jar routing-loadtest/target/loadtest.jar
+ *     [--jar=application-api/target/application-api-0.0.1-SNAPSHOT.jar] [--modes=tree,streaming-virtual]
+ *     [--rates=500,1000,2000,4000,8000,16000] [--step=10s] [--payload-bytes=1024] [--max-p99=50ms]
+ *     [--out=loadtest-results]
+ * </pre>
+ *
+ * Virtual threads need the child JVM, the one running this, to be Java 21 or later; on older JVMs the
+ * {@code -virtual} modes are skipped.
+ */
+public final class BackendBenchmark {
+
+    private static final Duration WARMUP = Duration.ofSeconds(20);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(90);
+    private static final double MAX_FAILURE_RATIO = 0.01;
+
+    enum Mode {
+        TREE("tree", false, false, "JsonNode echo on Tomcat's platform thread pool (the original backend)"),
+        TREE_VIRTUAL("tree-virtual", false, true, "JsonNode echo on virtual threads"),
+        STREAMING("streaming", true, false, "byte-copy echo on Tomcat's platform thread pool"),
+        STREAMING_VIRTUAL("streaming-virtual", true, true, "byte-copy echo on virtual threads");
+
+        final String id;
+        final boolean streaming;
+        final boolean virtualThreads;
+        final String description;
+
+        Mode(String id, boolean streaming, boolean virtualThreads, String description) {
+            this.id = id;
+            this.streaming = streaming;
+            this.virtualThreads = virtualThreads;
+            this.description = description;
+        }
+
+        static Mode of(String id) {
+            return Arrays.stream(values()).filter(mode -> mode.id.equals(id)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown mode " + id + ", known: "
+                            + Arrays.stream(values()).map(mode -> mode.id).toList()));
+        }
+    }
+
+    record Step(int rate, double throughput, ScenarioReport.Requests requests, ScenarioReport.Latency latency,
+                boolean saturated) {
+    }
+
+    record ModeReport(String mode, String description, int payloadBytes, Integer sustainedRate,
+                      Double p99AtSustainedRate, List<Step> steps) {
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final Path jar;
+    private final List<Integer> rates;
+    private final Duration step;
+    private final byte[] payload;
+    private final double maxP99Millis;
+    private final Path out;
+
+    private BackendBenchmark(Path jar, List<Integer> rates, Duration step, byte[] payload, Duration maxP99,
+                             Path out) {
+        this.jar = jar;
+        this.rates = rates;
+        this.step = step;
+        this.payload = payload;
+        this.maxP99Millis = maxP99.toNanos() / 1e6;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        BackendBenchmark benchmark = new BackendBenchmark(
+                Path.of(options.getOrDefault("jar", "application-api/target/application-api-0.0.1-SNAPSHOT.jar")),
+                Arrays.stream(options.getOrDefault("rates", "500,1000,2000,4000,8000,16000").split(","))
+                        .map(Integer::parseInt).toList(),
+                DurationStyle.detectAndParse(options.getOrDefault("step", "10s")),
+                payload(Integer.parseInt(options.getOrDefault("payload-bytes", "1024"))),
+                DurationStyle.detectAndParse(options.getOrDefault("max-p99", "50ms")),
+                Path.of(options.getOrDefault("out", "loadtest-results")));
+        List<Mode> modes = Arrays.stream(options.getOrDefault("modes",
+                        "tree,tree-virtual,streaming,streaming-virtual").split(","))
+                .map(Mode::of)
+                .toList();
+        benchmark.runAll(modes);
+        // reactor-netty's event loops are not daemon threads
+        System.exit(0);
+    }
+
+    private void runAll(List<Mode> modes) throws Exception {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalArgumentException(jar + " not found; build application-api first or pass --jar");
+        }
+        Files.createDirectories(out);
+        List<ModeReport> reports = new ArrayList<>();
+        for (Mode mode : modes) {
+            if (mode.virtualThreads && Runtime.version().feature() < 21) {
+                System.out.printf("%s: skipped, virtual threads need Java 21 (running %s)%n", mode.id,
+                        Runtime.version());
+                continue;
+            }
+            reports.add(run(mode));
+        }
+        mapper.writeValue(out.resolve("backend-benchmark.json").toFile(), reports);
+
+        System.out.printf("%n%-18s %12s %14s%n", "mode", "sustained", "p99 at it");
+        for (ModeReport report : reports) {
+            System.out.printf("%-18s %8s/s %12s%n", report.mode(),
+                    report.sustainedRate() == null ? "-" : report.sustainedRate(),
+                    report.p99AtSustainedRate() == null ? "-" : String.format("%.1fms", report.p99AtSustainedRate()));
+        }
+        System.out.println("Report written to " + out.resolve("backend-benchmark.json").toAbsolutePath());
+    }
+
+    private ModeReport run(Mode mode) throws Exception {
+        System.out.printf("%s: %s, %d-byte payload%n", mode.id, mode.description, payload.length);
+        int port = freePort();
+        Process backend = start(mode, port);
+        try (OpenLoopGenerator generator = new OpenLoopGenerator("http://127.0.0.1:" + port, "/api/echo",
+                sequence -> payload)) {
+            awaitUp(backend, port);
+            generator.run(rates.get(0), WARMUP, new LatencyRecorder());
+
+            List<Step> steps = new ArrayList<>();
+            Step sustained = null;
+            for (int rate : rates) {
+                LatencyRecorder recorder = new LatencyRecorder();
+                generator.run(rate, step, recorder);
+                recorder.tick(1);
+                ScenarioReport.Requests requests = recorder.requests();
+                ScenarioReport.Latency latency = ScenarioReport.Latency.of(recorder.total());
+                boolean saturated = latency.p99() > maxP99Millis
+                        || requests.failed() > requests.total() * MAX_FAILURE_RATIO;
+                Step result = new Step(rate, requests.ok() / (step.toNanos() / 1e9), requests, latency, saturated);
+                steps.add(result);
+                System.out.printf("  %6d req/s offered  %8.0f ok/s  failed %6d  p50 %7.1fms  p99 %7.1fms  "
+                                + "max %7.1fms%s%n",
+                        rate, result.throughput(), requests.failed(), latency.p50(), latency.p99(),
+                        latency.max(), saturated ? "  saturated" : "");
+                if (saturated) {
+                    break;
+                }
+                sustained = result;
+            }
+            return new ModeReport(mode.id, mode.description, payload.length,
+                    sustained == null ? null : sustained.rate(),
+                    sustained == null ? null : sustained.latency().p99(), steps);
+        } finally {
+            backend.destroy();
+            backend.waitFor();
+        }
+    }
+
+    private Process start(Mode mode, int port) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<String> command = List.of(java, "-jar", jar.toString(),
+                "--server.port=" + port,
+                "--application.echo.streaming=" + mode.streaming,
+                "--spring.threads.virtual.enabled=" + mode.virtualThreads,
+                // the echo path is what's measured, not the access log writer
+                "--access-log.enabled=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(out.resolve("backend-" + mode.id + ".log").toFile())
+                .start();
+    }
+
+    private void awaitUp(Process backend, int port) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/actuator/health"))
+                .timeout(Duration.ofSeconds(2))
+                .build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!backend.isAlive()) {
+                throw new IllegalStateException("application-api exited with " + backend.exitValue()
+                        + ", see " + out.toAbsolutePath());
+            }
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("application-api not up after " + STARTUP_TIMEOUT.toSeconds() + "s");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * A JSON document of roughly {@code bytes} bytes with some nesting, so the tree mode has real parsing to do.
+     */
+    static byte[] payload(int bytes) {
+        StringBuilder json = new StringBuilder("{\"game\":\"Mobile Legends\",\"players\":[");
+        for (int i = 0; json.length() < bytes - 2; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i)
+                    .append(",\"name\":\"player-").append(i)
+                    .append("\",\"score\":").append(i * 37 % 1000)
+                    .append(",\"online\":").append(i % 2 == 0)
+                    .append('}');
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
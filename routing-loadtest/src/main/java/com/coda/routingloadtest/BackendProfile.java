@@ -0,0 +1,41 @@
+package com.coda.routingloadtest;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How a stub backend answers: log-normal latency fitted to a median and p99, a share of requests failed with
+ * 500, and a share that stall for {@code stall} before answering, long enough to run into the router's per-try
+ * timeout.
+ */
+public record BackendProfile(Duration median, Duration p99, double errorRate, double stallRate, Duration stall) {
+
+    /** z-score of the 99th percentile of a standard normal. */
+    private static final double Z_99 = 2.326;
+
+    public static final BackendProfile HEALTHY =
+            new BackendProfile(Duration.ofMillis(5), Duration.ofMillis(25), 0, 0, Duration.ZERO);
+
+    public static final BackendProfile SLOW =
+            new BackendProfile(Duration.ofMillis(150), Duration.ofMillis(1500), 0, 0, Duration.ZERO);
+
+    public static final BackendProfile FAILING =
+            new BackendProfile(Duration.ofMillis(2), Duration.ofMillis(10), 1.0, 0, Duration.ZERO);
+
+    public static final BackendProfile STALLING =
+            new BackendProfile(Duration.ofMillis(5), Duration.ofMillis(25), 0, 0.05, Duration.ofSeconds(10));
+
+    public boolean fails() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    public Duration delay() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (stallRate > 0 && random.nextDouble() < stallRate) {
+            return stall;
+        }
+        double medianNanos = median.toNanos();
+        double sigma = Math.log(Math.max(p99.toNanos(), medianNanos) / medianNanos) / Z_99;
+        return Duration.ofNanos((long) (medianNanos * Math.exp(sigma * random.nextGaussian())));
+    }
+}
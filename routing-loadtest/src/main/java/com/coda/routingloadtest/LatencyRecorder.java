@@ -0,0 +1,86 @@
+package com.coda.routingloadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Response times and outcomes for one scenario. Recording is lock-free from any thread; {@link #tick} is called
+ * once per second to cut an interval for the timeline and fold it into the scenario total.
+ */
+final class LatencyRecorder {
+
+    /** Anything slower is clamped; the harness gives up on a request long before this. */
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    /** Status recorded for a request that got no HTTP response at all. */
+    static final int NO_RESPONSE = 0;
+
+    private final Recorder recorder = new Recorder(HIGHEST_MICROS, 3);
+    private final Histogram total = new Histogram(HIGHEST_MICROS, 3);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder intervalOk = new LongAdder();
+    private final LongAdder intervalFailures = new LongAdder();
+    private final List<ScenarioReport.Interval> timeline = new ArrayList<>();
+    private Histogram interval;
+
+    /**
+     * @param shed the router turned the request away with a {@code Retry-After}
+     */
+    void record(long latencyNanos, int status, boolean shed) {
+        recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_MICROS));
+        statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+        if (shed) {
+            this.shed.increment();
+        } else if (status >= 200 && status < 300) {
+            intervalOk.increment();
+        } else {
+            intervalFailures.increment();
+        }
+    }
+
+    synchronized void tick(int second) {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        timeline.add(new ScenarioReport.Interval(second, interval.getTotalCount(), intervalOk.sumThenReset(),
+                intervalFailures.sumThenReset(), millis(interval.getValueAtPercentile(50)),
+                millis(interval.getValueAtPercentile(99)), millis(interval.getMaxValue())));
+    }
+
+    synchronized Histogram total() {
+        return total;
+    }
+
+    synchronized List<ScenarioReport.Interval> timeline() {
+        return List.copyOf(timeline);
+    }
+
+    ScenarioReport.Requests requests() {
+        Map<Integer, Long> counts = statuses();
+        long total = counts.values().stream().mapToLong(Long::longValue).sum();
+        long ok = counts.entrySet().stream()
+                .filter(entry -> entry.getKey() >= 200 && entry.getKey() < 300)
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+        long shedCount = shed.sum();
+        return new ScenarioReport.Requests(total, ok, shedCount, total - ok - shedCount);
+    }
+
+    Map<Integer, Long> statuses() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+
+    static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,245 @@
+package com.coda.routingloadtest;
+
+import com.coda.routingapi.RoutingApiApplication;
+import com.coda.routingapi.service.HealthCheckService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * End-to-end load test: for each scenario, starts N in-process stub backends and a real routing-api on a random
+ * port in this JVM, drives open-model traffic at it, plays the scenario's events against the backends and
+ * writes {@code <scenario>.json} and {@code <scenario>.hgrm} plus a {@code summary.json} to the output directory.
+ * Every scenario gets fresh backends and a fresh router, so circuit breakers and limits start from scratch.
+ *
+ * <pre>
+ * java -jar routing-loadtest/target/loadtest.jar [--scenarios=baseline,backend-dies] [--rate=500]
+ *     [--duration=60s] [--backends=3] [--out=loadtest-results] [--routing.load-balancer=peak-ewma ...]
+ * </pre>
+ *
+ * Any other {@code --key=value} is passed to routing-api as a property.
+ */
+public final class LoadTest {
+
+    private static final Duration WARMUP = Duration.ofSeconds(30);
+    private static final int WARMUP_STEPS = 6;
+    private static final Duration SETTLE = Duration.ofSeconds(3);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(30);
+
+    /** Fast enough probing that a dead backend leaves the table within a scenario, and no per-request logging. */
+    static final Map<String, String> ROUTER_DEFAULTS = Map.of(
+            "server.port", "0",
+            "spring.main.banner-mode", "off",
+            "logging.level.com.coda.routingapi", "OFF",
+            "healthcheck.interval", "2s",
+            "healthcheck.unhealthy-interval", "1s");
+
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final int rate;
+    private final Duration duration;
+    private final int backends;
+    private final Path out;
+    private final Map<String, String> routerProperties;
+
+    private LoadTest(int rate, Duration duration, int backends, Path out, Map<String, String> routerProperties) {
+        this.rate = rate;
+        this.duration = duration;
+        this.backends = backends;
+        this.out = out;
+        this.routerProperties = routerProperties;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int backends = Integer.parseInt(options.getOrDefault("backends", "3"));
+        String durationOption = options.remove("duration");
+        LoadTest loadTest = new LoadTest(
+                Integer.parseInt(options.getOrDefault("rate", "500")),
+                durationOption == null ? null : DurationStyle.detectAndParse(durationOption),
+                backends,
+                Path.of(options.getOrDefault("out", "loadtest-results")),
+                routerOptions(options));
+
+        List<Scenario> scenarios = Scenario.builtIn(backends);
+        String selected = options.get("scenarios");
+        if (selected != null) {
+            List<String> names = Arrays.asList(selected.split(","));
+            scenarios = scenarios.stream().filter(scenario -> names.contains(scenario.name())).toList();
+            if (scenarios.size() != names.size()) {
+                throw new IllegalArgumentException("Unknown scenario in " + selected + ", known: "
+                        + Scenario.builtIn(backends).stream().map(Scenario::name).collect(Collectors.joining(",")));
+            }
+        }
+        loadTest.runAll(scenarios);
+        // reactor-netty's event loops are not daemon threads
+        System.exit(0);
+    }
+
+    private static Map<String, String> routerOptions(Map<String, String> options) {
+        Map<String, String> router = new LinkedHashMap<>(options);
+        router.keySet().removeAll(List.of("scenarios", "rate", "backends", "out"));
+        return router;
+    }
+
+    private void runAll(List<Scenario> scenarios) throws Exception {
+        Files.createDirectories(out);
+        warmUp(scenarios.get(0));
+        List<Summary> summaries = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            ScenarioReport report = run(scenario);
+            mapper.writeValue(out.resolve(scenario.name() + ".json").toFile(), report);
+            summaries.add(new Summary(report.scenario(), report.requests(), report.latency()));
+            System.out.printf("%-18s %7d req  ok %7d  shed %6d  failed %6d  p50 %7.1fms  p99 %7.1fms  "
+                            + "p99.9 %7.1fms  max %7.1fms%n",
+                    report.scenario(), report.requests().total(), report.requests().ok(), report.requests().shed(),
+                    report.requests().failed(), report.latency().p50(), report.latency().p99(),
+                    report.latency().p999(), report.latency().max());
+        }
+        mapper.writeValue(out.resolve("summary.json").toFile(), summaries);
+        System.out.println("Reports written to " + out.toAbsolutePath());
+    }
+
+    /**
+     * One unreported run of the first scenario's shape, so the JIT is hot before anything is measured. Every
+     * scenario still gets its own router, but they all share this JVM's compiled code.
+     */
+    private void warmUp(Scenario scenario) throws Exception {
+        System.out.printf("warm-up: ramping to %d req/s over %ds%n", rate, WARMUP.toSeconds());
+        List<StubBackend> stubs = startBackends(scenario);
+        try (ConfigurableApplicationContext router = startRouter(routerProperties(stubs));
+             OpenLoopGenerator generator = new OpenLoopGenerator(routerUrl(router))) {
+            awaitHealthy(router.getBean(HealthCheckService.class), backends);
+            // ramped from a trickle, so the cold JVM isn't swamped before it has compiled anything
+            for (int step = 1; step <= WARMUP_STEPS; step++) {
+                generator.run(Math.max(1, rate * step * step / (WARMUP_STEPS * WARMUP_STEPS)),
+                        WARMUP.dividedBy(WARMUP_STEPS), new LatencyRecorder());
+            }
+        } finally {
+            stubs.forEach(StubBackend::close);
+        }
+    }
+
+    private ScenarioReport run(Scenario scenario) throws Exception {
+        Duration length = duration != null ? duration : scenario.duration();
+        System.out.printf("%s: %s (%d req/s for %ds)%n", scenario.name(), scenario.description(), rate,
+                length.toSeconds());
+
+        List<StubBackend> stubs = startBackends(scenario);
+        ScheduledExecutorService timer = Executors.newScheduledThreadPool(2);
+        try (ConfigurableApplicationContext router = startRouter(routerProperties(stubs));
+             OpenLoopGenerator generator = new OpenLoopGenerator(routerUrl(router))) {
+            HealthCheckService healthCheckService = router.getBean(HealthCheckService.class);
+            awaitHealthy(healthCheckService, backends);
+            // a new router's pools and limits, not the JIT, need a moment at full rate
+            generator.run(rate, SETTLE, new LatencyRecorder());
+            if (!allBreakersClosed(healthCheckService)) {
+                System.out.println("  WARNING: a circuit breaker opened before measuring started; "
+                        + "this machine can't sustain " + rate + " req/s, try a lower --rate");
+            }
+
+            LatencyRecorder recorder = new LatencyRecorder();
+            AtomicInteger second = new AtomicInteger();
+            timer.scheduleAtFixedRate(() -> recorder.tick(second.incrementAndGet()), 1, 1, TimeUnit.SECONDS);
+            List<ScenarioReport.EventMark> marks = new ArrayList<>();
+            for (Scenario.Event event : scenario.events()) {
+                long at = (long) (length.toMillis() * event.at());
+                marks.add(new ScenarioReport.EventMark(at / 1000.0, event.description()));
+                timer.schedule(() -> {
+                    System.out.printf("  %5.1fs %s%n", at / 1000.0, event.description());
+                    event.action().accept(stubs);
+                }, at, TimeUnit.MILLISECONDS);
+            }
+            generator.run(rate, length, recorder);
+            timer.shutdownNow();
+            recorder.tick(second.incrementAndGet());
+
+            writeDistribution(scenario, recorder);
+            return new ScenarioReport(scenario.name(), scenario.description(), rate, length.toSeconds(), backends,
+                    routerProperties, recorder.requests(), recorder.statuses(),
+                    ScenarioReport.Latency.of(recorder.total()), marks, recorder.timeline());
+        } finally {
+            timer.shutdownNow();
+            stubs.forEach(StubBackend::close);
+        }
+    }
+
+    private List<StubBackend> startBackends(Scenario scenario) {
+        List<StubBackend> stubs = new ArrayList<>();
+        for (int i = 0; i < backends; i++) {
+            stubs.add(StubBackend.start("backend-" + i, scenario.initialProfiles().get(i)));
+        }
+        return stubs;
+    }
+
+    private Map<String, String> routerProperties(List<StubBackend> stubs) {
+        Map<String, String> properties = new LinkedHashMap<>(ROUTER_DEFAULTS);
+        properties.putAll(routerProperties);
+        properties.put("application.api.instances",
+                stubs.stream().map(StubBackend::baseUrl).collect(Collectors.joining(",")));
+        return properties;
+    }
+
+    static String routerUrl(ConfigurableApplicationContext router) {
+        return "http://127.0.0.1:" + router.getEnvironment().getProperty("local.server.port");
+    }
+
+    static ConfigurableApplicationContext startRouter(Map<String, String> properties) {
+        // as command-line arguments, so they win over routing-api's own application.properties
+        return new SpringApplicationBuilder(RoutingApiApplication.class)
+                .logStartupInfo(false)
+                .run(properties.entrySet().stream()
+                        .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                        .toArray(String[]::new));
+    }
+
+    static void awaitHealthy(HealthCheckService healthCheckService, int backends) throws InterruptedException {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (healthCheckService.getRoutingTable().size() < backends) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Only " + healthCheckService.getRoutingTable().size() + " of "
+                        + backends + " backends healthy after " + STARTUP_TIMEOUT.toSeconds() + "s");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static boolean allBreakersClosed(HealthCheckService healthCheckService) {
+        return healthCheckService.getAllInstances().stream()
+                .allMatch(instance -> instance.circuitBreaker().getState() == CircuitBreaker.State.CLOSED);
+    }
+
+    private void writeDistribution(Scenario scenario, LatencyRecorder recorder) throws IOException {
+        try (PrintStream stream = new PrintStream(out.resolve(scenario.name() + ".hgrm").toFile())) {
+            // microseconds recorded, milliseconds out
+            recorder.total().outputPercentileDistribution(stream, 1000.0);
+        }
+    }
+
+    record Summary(String scenario, ScenarioReport.Requests requests, ScenarioReport.Latency latency) {
+    }
+}
@@ -0,0 +1,103 @@
+package com.coda.routingloadtest;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model traffic: requests are sent at a constant arrival rate whether or not earlier ones have answered,
+ * the way independent clients behave. Each request's latency is measured from when it was <em>scheduled</em> to
+ * go out, not from when the sender got round to it, so a router that stalls is charged for every request that
+ * queued up behind the stall instead of hiding them (coordinated omission).
+ */
+final class OpenLoopGenerator implements AutoCloseable {
+
+    private static final Duration GIVE_UP = Duration.ofSeconds(30);
+
+    private final ConnectionProvider connections;
+    private final HttpClient client;
+    private final String path;
+    private final LongFunction<byte[]> payloads;
+    private final AtomicLong outstanding = new AtomicLong();
+
+    /**
+     * Posts to the router's {@code /route}, every request with a different payload.
+     */
+    OpenLoopGenerator(String routerUrl) {
+        // distinct payloads so the response cache and coalescing, if enabled, don't flatter the numbers
+        this(routerUrl, "/route", sequence -> ("{\"game\":\"Mobile Legends\",\"request\":" + sequence + "}")
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param payloads body of the n-th request
+     */
+    OpenLoopGenerator(String baseUrl, String path, LongFunction<byte[]> payloads) {
+        this.path = path;
+        this.payloads = payloads;
+        // never the bottleneck: a request waiting for a client connection would be the harness's latency
+        this.connections = ConnectionProvider.builder("loadtest")
+                .maxConnections(8192)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(GIVE_UP)
+                .build();
+        this.client = HttpClient.create(connections)
+                .baseUrl(baseUrl)
+                .responseTimeout(GIVE_UP)
+                .headers(headers -> headers.set(HttpHeaderNames.CONTENT_TYPE, "application/json"));
+    }
+
+    /**
+     * Sends {@code rate} requests per second for {@code duration} from the calling thread, then waits for the
+     * stragglers to answer or give up.
+     */
+    void run(int rate, Duration duration, LatencyRecorder recorder) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long requests = duration.toNanos() / interval;
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long scheduled = start + i * interval;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(i, scheduled, recorder);
+        }
+        long deadline = System.nanoTime() + GIVE_UP.toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private void send(long sequence, long scheduled, LatencyRecorder recorder) {
+        byte[] payload = payloads.apply(sequence);
+        outstanding.incrementAndGet();
+        client.post()
+                .uri(path)
+                .send(Mono.fromSupplier(() -> Unpooled.wrappedBuffer(payload)))
+                .responseSingle((response, body) -> body.then(Mono.fromSupplier(() -> response)))
+                .subscribe(
+                        response -> complete(recorder, scheduled, response.status().code(),
+                                response.responseHeaders().contains(HttpHeaderNames.RETRY_AFTER)),
+                        error -> complete(recorder, scheduled, LatencyRecorder.NO_RESPONSE, false));
+    }
+
+    private void complete(LatencyRecorder recorder, long scheduled, int status, boolean shed) {
+        recorder.record(System.nanoTime() - scheduled, status, shed);
+        outstanding.decrementAndGet();
+    }
+
+    @Override
+    public void close() {
+        connections.disposeLater().block(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,134 @@
+package com.coda.routingloadtest;
+
+import com.coda.routingapi.service.HealthCheckService;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Load shedding under overload: backends that each serve {@code --workers} requests at a time in
+ * {@code --service-time} and queue the rest, driven through a real routing-api at twice their combined capacity.
+ * Without limits the queues grow until requests time out; with the concurrency limiter and admission gate the
+ * excess is shed at once and goodput stays at capacity. Checks that every full second after the first is served at
+ * 70% of capacity or more, that something was shed, that nothing failed and that p99 stays under
+ * {@code --max-p99} (ten service times by default), and exits 1 if any check fails.
+ *
+ * <pre>
+ * java -Dloader.main=com.coda.routingloadtest.OverloadTest -jar routing-loadtest/target/loadtest.jar
+ *     [--backends=2] [--workers=2] [--service-time=100ms] [--duration=6s] [--max-p99=1s]
+ *     [--routing.load-balancer=least-outstanding ...]
+ * </pre>
+ *
+ * Any other {@code --key=value} is passed to routing-api as a property. The backends, the router and the traffic
+ * share this JVM, so the defaults keep the offered rate low enough for one core; raise {@code --workers} on a bigger
+ * machine.
+ */
+public final class OverloadTest {
+
+    private static final Duration WARMUP = Duration.ofSeconds(12);
+    private static final int WARMUP_STEPS = 6;
+    private static final double MIN_GOODPUT_RATIO = 0.7;
+
+    private OverloadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int backends = Integer.parseInt(options.getOrDefault("backends", "2"));
+        int workers = Integer.parseInt(options.getOrDefault("workers", "2"));
+        Duration serviceTime = DurationStyle.detectAndParse(options.getOrDefault("service-time", "100ms"));
+        Duration duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "6s"));
+        // a few service times of queueing at the backend is what the limiter allows, not seconds of it
+        Duration maxP99 = options.containsKey("max-p99")
+                ? DurationStyle.detectAndParse(options.get("max-p99")) : serviceTime.multipliedBy(10);
+        Map<String, String> router = new LinkedHashMap<>(LoadTest.ROUTER_DEFAULTS);
+        router.put("routing.load-balancer", "least-outstanding");
+        router.put("routing.concurrency-limit.enabled", "true");
+        router.putAll(options);
+        router.keySet().removeAll(List.of("backends", "workers", "service-time", "duration", "max-p99"));
+
+        List<String> failures = run(backends, workers, serviceTime, duration, maxP99, router);
+        failures.forEach(failure -> System.out.println("FAILED: " + failure));
+        System.out.println(failures.isEmpty() ? "PASSED" : failures.size() + " check(s) failed");
+        // reactor-netty's event loops are not daemon threads
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    private static List<String> run(int backends, int workers, Duration serviceTime, Duration duration,
+                                    Duration maxP99, Map<String, String> routerProperties) throws Exception {
+        int capacity = (int) (backends * workers * TimeUnit.SECONDS.toNanos(1) / serviceTime.toNanos());
+        int rate = 2 * capacity;
+        BackendProfile profile = new BackendProfile(serviceTime, serviceTime, 0, 0, Duration.ZERO);
+        List<StubBackend> stubs = new ArrayList<>();
+        for (int i = 0; i < backends; i++) {
+            stubs.add(StubBackend.start("backend-" + i, profile, workers));
+        }
+        routerProperties.put("application.api.instances",
+                stubs.stream().map(StubBackend::baseUrl).collect(Collectors.joining(",")));
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try (ConfigurableApplicationContext router = LoadTest.startRouter(routerProperties);
+             OpenLoopGenerator generator = new OpenLoopGenerator(LoadTest.routerUrl(router))) {
+            LoadTest.awaitHealthy(router.getBean(HealthCheckService.class), backends);
+            // connections, the JIT and the limiters' no-load latency, ramped up to half capacity so the cold JVM
+            // doesn't time out and open the circuit breakers before anything is measured
+            for (int step = 1; step <= WARMUP_STEPS; step++) {
+                generator.run(Math.max(1, capacity / 2 * step * step / (WARMUP_STEPS * WARMUP_STEPS)),
+                        WARMUP.dividedBy(WARMUP_STEPS), new LatencyRecorder());
+            }
+
+            System.out.printf("offering %d req/s to %d backends serving %d req/s between them, for %ds%n",
+                    rate, backends, capacity, duration.toSeconds());
+            LatencyRecorder recorder = new LatencyRecorder();
+            AtomicInteger second = new AtomicInteger();
+            timer.scheduleAtFixedRate(() -> recorder.tick(second.incrementAndGet()), 1, 1, TimeUnit.SECONDS);
+            generator.run(rate, duration, recorder);
+            timer.shutdownNow();
+            recorder.tick(second.incrementAndGet());
+
+            List<String> failures = new ArrayList<>();
+            for (ScenarioReport.Interval interval : recorder.timeline()) {
+                System.out.printf("  %3ds  ok %6d  failed %5d  p50 %7.1fms  p99 %7.1fms%n", interval.second(),
+                        interval.ok(), interval.failed(), interval.p50(), interval.p99());
+                // the first second is the limits settling, and the last ones only see stragglers
+                if (interval.second() > 1 && interval.second() <= duration.toSeconds()
+                        && interval.ok() < capacity * MIN_GOODPUT_RATIO) {
+                    failures.add("second " + interval.second() + " goodput " + interval.ok() + " of " + capacity);
+                }
+            }
+            ScenarioReport.Requests requests = recorder.requests();
+            ScenarioReport.Latency latency = ScenarioReport.Latency.of(recorder.total());
+            System.out.printf("ok %d  shed %d  failed %d  p99 %.1fms%n", requests.ok(), requests.shed(),
+                    requests.failed(), latency.p99());
+            if (requests.shed() == 0) {
+                failures.add("nothing was shed at twice capacity");
+            }
+            if (requests.failed() > 0) {
+                failures.add(requests.failed() + " requests failed; only shedding with Retry-After is allowed");
+            }
+            // what does get through is never stuck behind a queue
+            if (latency.p99() > maxP99.toMillis()) {
+                failures.add("p99 " + latency.p99() + "ms over " + maxP99.toMillis() + "ms");
+            }
+            return failures;
+        } finally {
+            timer.shutdownNow();
+            stubs.forEach(StubBackend::close);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.coda.routingloadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * One load-test run: how many stub backends, what they start out as, how long traffic runs and what happens to
+ * the backends along the way. Event times are fractions of the duration, so a shorter {@code --duration} keeps
+ * the same shape.
+ */
+record Scenario(String name, String description, Duration duration, List<BackendProfile> initialProfiles,
+                List<Event> events) {
+
+    record Event(double at, String description, Consumer<List<StubBackend>> action) {
+    }
+
+    static List<Scenario> builtIn(int backends) {
+        return List.of(
+                new Scenario("baseline", "All backends healthy",
+                        Duration.ofSeconds(30), healthy(backends), List.of()),
+                new Scenario("backend-dies", "backend-0 crashes a third of the way in and restarts at two thirds",
+                        Duration.ofSeconds(60), healthy(backends), List.of(
+                        new Event(1 / 3.0, "backend-0 killed", stubs -> stubs.get(0).kill()),
+                        new Event(2 / 3.0, "backend-0 restarted", stubs -> stubs.get(0).revive()))),
+                new Scenario("slow-backend", "backend-0 answers with a 150ms median and a 1.5s p99 throughout",
+                        Duration.ofSeconds(30), withFirst(BackendProfile.SLOW, backends), List.of()),
+                new Scenario("stalling-backend", "5% of backend-0's requests stall for 10s",
+                        Duration.ofSeconds(30), withFirst(BackendProfile.STALLING, backends), List.of()),
+                // the circuit breaker waits 30s in OPEN, so recovery only shows with enough run left after it
+                new Scenario("circuit-recovery", "backend-0 fails every request from 10% to 30% of the run, then heals",
+                        Duration.ofSeconds(90), healthy(backends), List.of(
+                        new Event(0.1, "backend-0 failing", stubs -> stubs.get(0).profile(BackendProfile.FAILING)),
+                        new Event(0.3, "backend-0 healed", stubs -> stubs.get(0).profile(BackendProfile.HEALTHY)))));
+    }
+
+    private static List<BackendProfile> healthy(int backends) {
+        return Collections.nCopies(backends, BackendProfile.HEALTHY);
+    }
+
+    private static List<BackendProfile> withFirst(BackendProfile first, int backends) {
+        List<BackendProfile> profiles = new ArrayList<>(healthy(backends));
+        profiles.set(0, first);
+        return profiles;
+    }
+}
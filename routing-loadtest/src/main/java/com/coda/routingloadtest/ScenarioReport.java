@@ -0,0 +1,42 @@
+package com.coda.routingloadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Machine-readable result of one scenario, written as JSON next to the scenario's full HdrHistogram percentile
+ * distribution ({@code .hgrm}). Latencies are milliseconds from each request's scheduled send time.
+ */
+record ScenarioReport(String scenario, String description, int rate, long durationSeconds, int backends,
+                      Map<String, String> routerProperties, Requests requests, Map<Integer, Long> statuses,
+                      Latency latency, List<EventMark> events, List<Interval> timeline) {
+
+    /**
+     * @param shed turned away by the router's load shedding, i.e. answered with a {@code Retry-After}
+     * @param failed any other non-2xx answer, or no answer at all
+     */
+    record Requests(long total, long ok, long shed, long failed) {
+    }
+
+    record Latency(double p50, double p90, double p99, double p999, double max, double mean) {
+
+        static Latency of(Histogram histogram) {
+            return new Latency(
+                    LatencyRecorder.millis(histogram.getValueAtPercentile(50)),
+                    LatencyRecorder.millis(histogram.getValueAtPercentile(90)),
+                    LatencyRecorder.millis(histogram.getValueAtPercentile(99)),
+                    LatencyRecorder.millis(histogram.getValueAtPercentile(99.9)),
+                    LatencyRecorder.millis(histogram.getMaxValue()),
+                    histogram.getMean() / 1000.0);
+        }
+    }
+
+    record EventMark(double atSeconds, String description) {
+    }
+
+    /** One second of the run, by completion time; {@code failed} leaves out shed requests. */
+    record Interval(int second, long requests, long ok, long failed, double p50, double p99, double max) {
+    }
+}
@@ -0,0 +1,340 @@
+package com.coda.routingloadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * How soon a new routing-api replica is useful: starts the router as a child process, the way each Dockerfile image
+ * runs it, in front of in-process stub backends, and times how long after the process is launched the first /route
+ * succeeds and /actuator/health/readiness turns UP, then reads the process's resident memory. Each mode is started
+ * {@code --runs} times and reported by its medians.
+ *
+ * <pre>
+ * java -Dloader.main=com.coda.routingloadtest.StartupBenchmark -jar routing-loadtest/target/loadtest.jar
+ *     [--jar=routing-api/target/routing-api-0.0.1-SNAPSHOT-exec.jar] [--modes=jar,cds,lazy,fast-startup]
+ *     [--runs=3] [--backends=3] [--out=loadtest-results]
+ * </pre>
+ *
+ * The {@code cds} modes first unpack the jar and record a class-data sharing archive with a training start, as the
+ * fast-startup image build does; the archive only works with the JVM that recorded it, the one running this. RSS
+ * comes from {@code /proc} and is left out on other systems.
+ */
+public final class StartupBenchmark {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(120);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(20);
+    private static final String MAIN_CLASS = "com.coda.routingapi.RoutingApiApplication";
+    private static final String FAST_STARTUP_PROFILE = "fast-startup";
+
+    enum Mode {
+        JAR("jar", false, false, "java -jar on the executable jar (the default image)"),
+        CDS("cds", true, false, "unpacked class path with the class-data sharing archive"),
+        LAZY("lazy", false, true, "java -jar with the fast-startup profile's lazy initialization"),
+        FAST_STARTUP("fast-startup", true, true, "class-data sharing and lazy initialization (the fast-startup image)");
+
+        final String id;
+        final boolean cds;
+        final boolean lazy;
+        final String description;
+
+        Mode(String id, boolean cds, boolean lazy, String description) {
+            this.id = id;
+            this.cds = cds;
+            this.lazy = lazy;
+            this.description = description;
+        }
+
+        static Mode of(String id) {
+            return Arrays.stream(values()).filter(mode -> mode.id.equals(id)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown mode " + id + ", known: "
+                            + Arrays.stream(values()).map(mode -> mode.id).toList()));
+        }
+    }
+
+    /**
+     * @param rssMb resident memory once ready, null where {@code /proc} isn't available
+     */
+    record Run(double firstRouteMs, double readyMs, Double rssMb) {
+    }
+
+    record ModeReport(String mode, String description, double firstRouteMs, double readyMs, Double rssMb,
+                      List<Run> runs) {
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+    private final Path jar;
+    private final int runs;
+    private final int backends;
+    private final Path out;
+
+    private StartupBenchmark(Path jar, int runs, int backends, Path out) {
+        this.jar = jar;
+        this.runs = runs;
+        this.backends = backends;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        StartupBenchmark benchmark = new StartupBenchmark(
+                Path.of(options.getOrDefault("jar", "routing-api/target/routing-api-0.0.1-SNAPSHOT-exec.jar")),
+                Integer.parseInt(options.getOrDefault("runs", "3")),
+                Integer.parseInt(options.getOrDefault("backends", "3")),
+                Path.of(options.getOrDefault("out", "loadtest-results")));
+        List<Mode> modes = Arrays.stream(options.getOrDefault("modes", "jar,cds,lazy,fast-startup").split(","))
+                .map(Mode::of)
+                .toList();
+        benchmark.runAll(modes);
+        // reactor-netty's event loops are not daemon threads
+        System.exit(0);
+    }
+
+    private void runAll(List<Mode> modes) throws Exception {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalArgumentException(jar + " not found; build routing-api first or pass --jar");
+        }
+        Files.createDirectories(out);
+        List<StubBackend> stubs = new ArrayList<>();
+        for (int i = 0; i < backends; i++) {
+            stubs.add(StubBackend.start("backend-" + i, BackendProfile.HEALTHY));
+        }
+        try {
+            String instances = stubs.stream().map(StubBackend::baseUrl).collect(Collectors.joining(","));
+            Path unpacked = modes.stream().anyMatch(mode -> mode.cds) ? prepareCds(instances) : null;
+            List<ModeReport> reports = new ArrayList<>();
+            for (Mode mode : modes) {
+                reports.add(run(mode, instances, unpacked));
+            }
+            mapper.writeValue(out.resolve("startup-benchmark.json").toFile(), reports);
+
+            System.out.printf("%n%-14s %14s %10s %10s%n", "mode", "first route", "ready", "RSS");
+            for (ModeReport report : reports) {
+                System.out.printf("%-14s %12.0fms %8.0fms %10s%n", report.mode(), report.firstRouteMs(),
+                        report.readyMs(), report.rssMb() == null ? "-" : String.format("%.0fMB", report.rssMb()));
+            }
+            System.out.println("Report written to " + out.resolve("startup-benchmark.json").toAbsolutePath());
+        } finally {
+            stubs.forEach(StubBackend::close);
+        }
+    }
+
+    private ModeReport run(Mode mode, String instances, Path unpacked) throws Exception {
+        System.out.printf("%s: %s%n", mode.id, mode.description);
+        List<Run> results = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            Run result = startOnce(mode, instances, unpacked, i);
+            results.add(result);
+            System.out.printf("  run %d: first route %6.0fms  ready %6.0fms  RSS %s%n", i + 1, result.firstRouteMs(),
+                    result.readyMs(), result.rssMb() == null ? "-" : String.format("%.0fMB", result.rssMb()));
+        }
+        List<Run> measured = results.stream().filter(run -> run.rssMb() != null).toList();
+        return new ModeReport(mode.id, mode.description, median(results, Run::firstRouteMs),
+                median(results, Run::readyMs), measured.isEmpty() ? null : median(measured, Run::rssMb), results);
+    }
+
+    private Run startOnce(Mode mode, String instances, Path unpacked, int attempt) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(java());
+        if (mode.cds) {
+            command.addAll(List.of("-XX:SharedArchiveFile=" + unpacked.resolve("app.jsa"), "-Xlog:cds=off",
+                    "-cp", classPath(unpacked), MAIN_CLASS));
+        } else {
+            command.addAll(List.of("-jar", jar.toString()));
+        }
+        command.addAll(routerArguments(instances, port));
+        if (mode.lazy) {
+            command.add("--spring.profiles.active=" + FAST_STARTUP_PROFILE);
+        }
+
+        long startNanos = System.nanoTime();
+        Process router = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(out.resolve("startup-" + mode.id + "-" + (attempt + 1) + ".log").toFile())
+                .start();
+        try {
+            String base = "http://127.0.0.1:" + port;
+            HttpRequest route = HttpRequest.newBuilder(URI.create(base + "/route"))
+                    .timeout(Duration.ofSeconds(2))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"benchmark\":true}"))
+                    .build();
+            HttpRequest readiness = HttpRequest.newBuilder(URI.create(base + "/actuator/health/readiness"))
+                    .timeout(Duration.ofSeconds(2))
+                    .build();
+            long firstRoute = awaitOk(router, route, startNanos);
+            long ready = awaitOk(router, readiness, startNanos);
+            return new Run(firstRoute / 1e6, ready / 1e6, rssMb(router.pid()));
+        } finally {
+            router.destroy();
+            if (!router.waitFor(30, TimeUnit.SECONDS)) {
+                router.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    /** Polls until the request gets a 200; returns when, in nanoseconds after {@code startNanos}. */
+    private long awaitOk(Process router, HttpRequest request, long startNanos) throws Exception {
+        long deadline = startNanos + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!router.isAlive()) {
+                throw new IllegalStateException("routing-api exited with " + router.exitValue()
+                        + ", see " + out.toAbsolutePath());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return System.nanoTime() - startNanos;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(POLL_INTERVAL.toMillis());
+        }
+        throw new IllegalStateException(request.uri() + " not OK after " + STARTUP_TIMEOUT.toSeconds() + "s");
+    }
+
+    /**
+     * Unpacks the jar the way the fast-startup image does, with the application's classes jarred up again since
+     * the archive only covers classes loaded from jars, then records the archive from a start that stops once the
+     * context is refreshed.
+     */
+    private Path prepareCds(String instances) throws Exception {
+        Path unpacked = out.resolve("startup-cds");
+        System.out.printf("cds: unpacking %s and recording the archive in %s%n", jar, unpacked);
+        if (Files.exists(unpacked)) {
+            try (Stream<Path> paths = Files.walk(unpacked)) {
+                for (Path path : paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+        Files.createDirectories(unpacked.resolve("lib"));
+        try (JarFile source = new JarFile(jar.toFile());
+             JarOutputStream application = new JarOutputStream(
+                     Files.newOutputStream(unpacked.resolve("application.jar")))) {
+            Enumeration<JarEntry> entries = source.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.startsWith("BOOT-INF/classes/") && name.length() > "BOOT-INF/classes/".length()) {
+                    application.putNextEntry(new JarEntry(name.substring("BOOT-INF/classes/".length())));
+                    if (!entry.isDirectory()) {
+                        copy(source, entry, application);
+                    }
+                    application.closeEntry();
+                } else if (name.startsWith("BOOT-INF/lib/") && !entry.isDirectory()) {
+                    try (OutputStream lib = Files.newOutputStream(
+                            unpacked.resolve("lib").resolve(name.substring("BOOT-INF/lib/".length())))) {
+                        copy(source, entry, lib);
+                    }
+                }
+            }
+        }
+
+        List<String> command = new ArrayList<>(List.of(java(), "-XX:ArchiveClassesAtExit=app.jsa", "-Xlog:cds=off",
+                "-Dspring.context.exit=onRefresh", "-cp", classPath(unpacked), MAIN_CLASS));
+        command.addAll(routerArguments(instances, freePort()));
+        Process training = new ProcessBuilder(command)
+                .directory(unpacked.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(out.resolve("startup-cds-training.log").toFile())
+                .start();
+        if (!training.waitFor(STARTUP_TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+            training.destroyForcibly();
+            throw new IllegalStateException("CDS training start didn't finish in " + STARTUP_TIMEOUT.toSeconds()
+                    + "s, see " + out.resolve("startup-cds-training.log").toAbsolutePath());
+        }
+        if (!Files.isRegularFile(unpacked.resolve("app.jsa"))) {
+            throw new IllegalStateException("CDS training start exited with " + training.exitValue()
+                    + " and no archive, see " + out.resolve("startup-cds-training.log").toAbsolutePath());
+        }
+        return unpacked;
+    }
+
+    private static void copy(JarFile source, JarEntry entry, OutputStream target) throws IOException {
+        try (InputStream in = source.getInputStream(entry)) {
+            in.transferTo(target);
+        }
+    }
+
+    /** Absolute, and the same order every time: an archive is only used with the class path it was recorded on. */
+    private static String classPath(Path unpacked) throws IOException {
+        List<String> entries = new ArrayList<>();
+        entries.add(unpacked.resolve("application.jar").toAbsolutePath().toString());
+        try (Stream<Path> libs = Files.list(unpacked.resolve("lib"))) {
+            libs.map(lib -> lib.toAbsolutePath().toString()).sorted().forEach(entries::add);
+        }
+        return String.join(java.io.File.pathSeparator, entries);
+    }
+
+    private static List<String> routerArguments(String instances, int port) {
+        return List.of(
+                "--server.port=" + port,
+                "--application.api.instances=" + instances,
+                // startup is what's measured, not the access log writer
+                "--access-log.enabled=false",
+                // every mode is ready only once warmed up, not just the fast-startup profile that has it on
+                "--routing.warmup.enabled=true",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+    }
+
+    private static String java() {
+        return ProcessHandle.current().info().command().orElse("java");
+    }
+
+    private static Double rssMb(long pid) {
+        try (Stream<String> lines = Files.lines(Path.of("/proc", String.valueOf(pid), "status"))) {
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> Long.parseLong(line.replaceAll("\\D", "")) / 1024.0)
+                    .findFirst()
+                    .orElse(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static <T> double median(List<T> values, ToDoubleFunction<T> metric) {
+        double[] sorted = values.stream().mapToDouble(metric).sorted().toArray();
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.coda.routingloadtest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process application-api for load tests: answers the health probe and echoes /api/echo and /api/echo/batch
+ * bodies back, shaped by a {@link BackendProfile} that a scenario can swap at any time. {@link #kill()} takes the
+ * port down like a crashed process and {@link #revive()} binds it again, so the router sees the same URL come
+ * back. A backend started with a number of workers serves that many requests at a time, each blocking its worker
+ * for the profile's delay, and queues the rest like a thread-pool server.
+ */
+public final class StubBackend implements AutoCloseable {
+
+    private final String name;
+    private final Scheduler workers;
+    private volatile BackendProfile profile;
+    private volatile DisposableServer server;
+    private int port;
+
+    private StubBackend(String name, BackendProfile profile, Scheduler workers) {
+        this.name = name;
+        this.profile = profile;
+        this.workers = workers;
+    }
+
+    public static StubBackend start(String name, BackendProfile profile) {
+        StubBackend backend = new StubBackend(name, profile, null);
+        backend.bind(0);
+        return backend;
+    }
+
+    public static StubBackend start(String name, BackendProfile profile, int workers) {
+        StubBackend backend = new StubBackend(name, profile,
+                Schedulers.fromExecutorService(Executors.newFixedThreadPool(workers)));
+        backend.bind(0);
+        return backend;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + port;
+    }
+
+    public void profile(BackendProfile profile) {
+        this.profile = profile;
+    }
+
+    public synchronized void kill() {
+        if (server != null) {
+            server.disposeNow();
+            server = null;
+        }
+    }
+
+    public synchronized void revive() {
+        if (server == null) {
+            bind(port);
+        }
+    }
+
+    @Override
+    public void close() {
+        kill();
+        if (workers != null) {
+            workers.dispose();
+        }
+    }
+
+    private synchronized void bind(int port) {
+        server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(port)
+                .route(routes -> routes
+                        .get("/actuator/health", (request, response) -> response
+                                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                                .sendString(Mono.just("{\"status\":\"UP\"}")))
+                        .post("/api/echo", this::echo)
+                        .post("/api/echo/batch", this::echo))
+                .bindNow();
+        this.port = server.port();
+    }
+
+    private Publisher<Void> echo(HttpServerRequest request, HttpServerResponse response) {
+        BackendProfile current = profile;
+        if (current.fails()) {
+            return Mono.delay(current.delay())
+                    .then(Mono.defer(() -> response
+                            .status(HttpResponseStatus.INTERNAL_SERVER_ERROR)
+                            .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                            .sendString(Mono.just("{\"status\":\"error\",\"backend\":\"" + name + "\"}"))
+                            .then()));
+        }
+        Mono<ByteBuf> received = request.receive().aggregate().retain();
+        Mono<ByteBuf> served = workers == null
+                ? received.delayElement(current.delay())
+                : received.publishOn(workers).doOnNext(body -> busy(current.delay()));
+        return served
+                .flatMap(body -> response
+                        .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                        .send(Mono.just(body))
+                        .then())
+                // a body still waiting out its delay when the connection drops
+                .doOnDiscard(ByteBuf.class, ByteBuf::release);
+    }
+
+    /** Holds the calling worker for {@code time}, the way a request handler holds its thread. */
+    private static void busy(Duration time) {
+        long end = System.nanoTime() + time.toNanos();
+        long wait;
+        while ((wait = end - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+}